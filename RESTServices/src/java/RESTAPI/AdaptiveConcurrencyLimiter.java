@@ -0,0 +1,130 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive Concurrency Limiter - Caps in-flight requests to one dependency (AIMD)
+ *
+ * A fixed thread pool cannot tell a healthy OSRM from a slow one: when latency
+ * rises, every thread ends up waiting and the service stops answering at all.
+ * This limiter learns how many requests a dependency can take at once from the
+ * latency it measures, and rejects requests beyond that immediately
+ *
+ * How it works (additive increase, multiplicative decrease):
+ * - A request may start while fewer than limit requests are in flight
+ * - The no-load latency is the lowest latency seen in the current or previous
+ *   WINDOW_MS window (windows let it follow a permanent change of the dependency)
+ * - A response slower than slowFactor x no-load latency (at least SLOW_FLOOR_MS),
+ *   or a failed one, means the dependency is queueing: limit x 0.9. Only
+ *   requests that started after the last decrease can decrease again, so one
+ *   burst of slow responses counts as one signal
+ * - A fast response while at least half the limit is in use: limit + 1/limit,
+ *   about +1 per limit's worth of requests
+ * - The limit stays within [min, max]
+ *
+ * All methods hold the limiter's lock for a few arithmetic operations only
+ *
+ * Used by ConcurrencyLimitFilter, one limiter per EndpointCost
+ *
+ * @author N1237155
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private static final long WINDOW_MS = 30_000L;
+    private static final long SLOW_FLOOR_MS = 100L;
+    private static final double BACKOFF = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double slowFactor;
+
+    private double limit;
+    private int inFlight;
+    private long lastDecrease;   // nanoTime of the last decrease
+    private long windowStart;
+    private long windowMin = Long.MAX_VALUE;
+    private long previousWindowMin = Long.MAX_VALUE;
+
+    /**
+     * @param name Dependency name, used in log messages
+     * @param initialLimit Limit before any latency has been measured
+     * @param minLimit Lowest limit (requests always get through at this concurrency)
+     * @param maxLimit Highest limit
+     * @param slowFactor How many times the no-load latency counts as slow
+     */
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, double slowFactor) {
+        if (minLimit < 1 || maxLimit < minLimit || !(slowFactor > 1)) {
+            throw new IllegalArgumentException("Invalid concurrency limits for " + name);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.slowFactor = slowFactor;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.windowStart = System.nanoTime();
+        this.lastDecrease = windowStart;
+    }
+
+    /**
+     * Start a request if the limit allows it
+     *
+     * @return nanoTime start of the request (pass it to release), or -1 if the
+     *         request must be rejected
+     */
+    public synchronized long tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return -1;
+        }
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    /**
+     * Finish a request started with tryAcquire and adjust the limit
+     *
+     * @param startedAt Value returned by tryAcquire
+     * @param failed true if the dependency failed or timed out
+     */
+    public synchronized void release(long startedAt, boolean failed) {
+        long now = System.nanoTime();
+        long latency = now - startedAt;
+        inFlight--;
+
+        if (now - windowStart > TimeUnit.MILLISECONDS.toNanos(WINDOW_MS)) {
+            previousWindowMin = windowMin;
+            windowMin = Long.MAX_VALUE;
+            windowStart = now;
+        }
+        if (!failed) {
+            windowMin = Math.min(windowMin, latency);
+        }
+        long noLoad = Math.min(windowMin, previousWindowMin);
+        long slow = Math.max((long) (noLoad * slowFactor), TimeUnit.MILLISECONDS.toNanos(SLOW_FLOOR_MS));
+
+        if (failed || (noLoad != Long.MAX_VALUE && latency > slow)) {
+            if (startedAt - lastDecrease > 0) {
+                double previous = limit;
+                limit = Math.max(minLimit, limit * BACKOFF);
+                lastDecrease = now;
+                if ((int) previous != (int) limit) {
+                    System.out.println("Concurrency limit " + name + " lowered to " + (int) limit);
+                }
+            }
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
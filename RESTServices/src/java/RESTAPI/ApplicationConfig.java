@@ -58,12 +58,31 @@ public class ApplicationConfig extends javax.ws.rs.core.Application {
      * - RESTServices.class: Main orchestrator for CycleNest rental platform
      *   Handles item search, distance calculation, and request management
      * 
+     * Current Registered Providers:
+     * - JsonStreamingWriter.class: Streams typed response entities as JSON
+     *   directly to the response OutputStream
+     * - CompressionInterceptor.class: gzip/deflate compression of large responses
+     * - RateLimitFilter.class: per-client token buckets, 429 when exceeded
+     * - ConcurrencyLimitFilter.class: adaptive in-flight limits for OSRM and
+     *   Cosmos DB endpoints, 503 when a dependency is saturated
+     * - ResponseTimingFilter.class: time to the first fast response after deploy
+     * - BinaryFormatFilter.class: 406 when only undeployed binary encodings are accepted
+     * 
+     * Start-up warm-up and shutdown are handled by ServiceLifecycle (@WebListener)
+     * 
      * @param resources The set to populate with REST resource classes
    */
     private void addRestResourceClasses(Set<Class<?>> resources) {
         // Register our RESTServices class so the server knows it exists
         // Without this line, clients wouldn't be able to access our REST service
         resources.add(RESTAPI.RESTServices.class);
+        // Providers are registered the same way - this one serializes our response entities
+        resources.add(RESTAPI.JsonStreamingWriter.class);
+        resources.add(RESTAPI.CompressionInterceptor.class);
+        resources.add(RESTAPI.RateLimitFilter.class);
+        resources.add(RESTAPI.ConcurrencyLimitFilter.class);
+        resources.add(RESTAPI.ResponseTimingFilter.class);
+        resources.add(RESTAPI.BinaryFormatFilter.class);
     }
     
 }
@@ -0,0 +1,50 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.io.IOException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Binary Format Filter - 406 for clients that only accept an undeployed binary encoding
+ *
+ * RESTServices declares CBOR and Smile in @Produces. Their Jackson dataformat
+ * jars ship with the service but are loaded by name (see JsonMappers), so a
+ * deployment can leave them out. A client whose Accept header lists only
+ * formats that are not deployed is answered 406 Not Acceptable here, instead of
+ * receiving JSON it did not ask for
+ *
+ * If the Accept header also allows JSON (or any other type, e.g. a wildcard), the
+ * request goes ahead and JsonStreamingWriter falls back to JSON
+ *
+ * Registered in ApplicationConfig
+ *
+ * @author N1237155
+ */
+@Provider
+public class BinaryFormatFilter implements ContainerRequestFilter {
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        for (MediaType accepted : request.getAcceptableMediaTypes()) {
+            String format = accepted.getType() + "/" + accepted.getSubtype();
+            boolean binary = JsonMappers.APPLICATION_CBOR.equalsIgnoreCase(format)
+                    || JsonMappers.APPLICATION_SMILE.equalsIgnoreCase(format);
+            if (!binary || JsonMappers.isAvailable(format.toLowerCase())) {
+                return;
+            }
+        }
+
+        request.abortWith(Response.status(Response.Status.NOT_ACCEPTABLE)
+                .type(MediaType.APPLICATION_JSON_TYPE)
+                .entity(new ErrorResponse("NOT_ACCEPTABLE",
+                        "Requested encoding is not available - accept application/json"))
+                .build());
+    }
+}
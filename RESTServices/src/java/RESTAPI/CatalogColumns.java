@@ -0,0 +1,287 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalog Columns - Struct-of-arrays storage for one catalog snapshot
+ *
+ * Replaces the List<items> an ItemCatalog snapshot used to keep. Each field is
+ * stored in its own array, indexed by catalog position:
+ * - category, city, condition: int codes into a per-column dictionary, so every
+ *   distinct value is stored once instead of once per item
+ * - latitude, longitude, daily rate: primitive double[] (no Location object, no boxing)
+ * - available, has-location: one bit per item
+ * - id, owner, name, description: String[] (unique per item)
+ *
+ * items/Location objects are only created by itemAt(), i.e. for the items a
+ * response actually returns; indexes and scans read the arrays directly
+ *
+ * IDs are found through an open-addressing int[] table (no boxed Integer per item)
+ *
+ * @author N1237155
+ */
+public final class CatalogColumns {
+
+    private static final int NO_VALUE = -1;
+
+    private final int size;
+    private final String[] ids;
+    private final String[] ownerIds;
+    private final String[] names;
+    private final String[] descriptions;
+    private final int[] categories;
+    private final int[] cities;
+    private final int[] conditions;
+    private final String[] categoryDictionary;
+    private final String[] cityDictionary;
+    private final String[] conditionDictionary;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] rates;
+    private final BitSet available;
+    private final BitSet located;
+    private final int[] idTable; // position + 1, or 0 for an empty slot
+
+    /**
+     * Encode a list of items (positions follow list order)
+     *
+     * @param items Items as read from Cosmos DB
+     */
+    public CatalogColumns(List<items> items) {
+        size = items.size();
+        ids = new String[size];
+        ownerIds = new String[size];
+        names = new String[size];
+        descriptions = new String[size];
+        categories = new int[size];
+        cities = new int[size];
+        conditions = new int[size];
+        latitudes = new double[size];
+        longitudes = new double[size];
+        rates = new double[size];
+        available = new BitSet(size);
+        located = new BitSet(size);
+
+        Map<String, Integer> categoryCodes = new HashMap<>();
+        Map<String, Integer> cityCodes = new HashMap<>();
+        Map<String, Integer> conditionCodes = new HashMap<>();
+        List<String> categoryValues = new ArrayList<>();
+        List<String> cityValues = new ArrayList<>();
+        List<String> conditionValues = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            items item = items.get(i);
+            ids[i] = item.getId();
+            ownerIds[i] = item.getOwnerId();
+            names[i] = item.getName();
+            descriptions[i] = item.getDescription();
+            categories[i] = encode(item.getCategory(), categoryCodes, categoryValues);
+            cities[i] = encode(item.getCity(), cityCodes, cityValues);
+            conditions[i] = encode(item.getCondition(), conditionCodes, conditionValues);
+            latitudes[i] = item.getLatitude();
+            longitudes[i] = item.getLongitude();
+            rates[i] = item.getDailyRate();
+            available.set(i, item.isAvailable());
+            located.set(i, item.getLocation() != null);
+        }
+
+        categoryDictionary = categoryValues.toArray(new String[0]);
+        cityDictionary = cityValues.toArray(new String[0]);
+        conditionDictionary = conditionValues.toArray(new String[0]);
+        idTable = buildIdTable();
+    }
+
+    private static int encode(String value, Map<String, Integer> codes, List<String> dictionary) {
+        if (value == null) {
+            return NO_VALUE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = dictionary.size();
+            codes.put(value, code);
+            dictionary.add(value);
+        }
+        return code;
+    }
+
+    // Linear probing over a power-of-two table at most half full; duplicate IDs keep the first position
+    private int[] buildIdTable() {
+        int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+        int[] table = new int[Math.max(capacity, 2)];
+        int mask = table.length - 1;
+        for (int position = 0; position < size; position++) {
+            if (ids[position] == null) {
+                continue;
+            }
+            int slot = mix(ids[position].hashCode()) & mask;
+            while (table[slot] != 0 && !ids[table[slot] - 1].equals(ids[position])) {
+                slot = (slot + 1) & mask;
+            }
+            if (table[slot] == 0) {
+                table[slot] = position + 1;
+            }
+        }
+        return table;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find an item's position by ID
+     *
+     * @return Position, or -1 if the ID is not in this snapshot
+     */
+    public int positionOf(String id) {
+        if (id == null) {
+            return -1;
+        }
+        int mask = idTable.length - 1;
+        int slot = mix(id.hashCode()) & mask;
+        while (idTable[slot] != 0) {
+            int position = idTable[slot] - 1;
+            if (ids[position].equals(id)) {
+                return position;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Materialize the item at a position (a new object on every call)
+     */
+    public items itemAt(int position) {
+        Location location = located.get(position)
+                ? new Location(value(cityDictionary, cities[position]), longitudes[position], latitudes[position])
+                : null;
+        return new items(ids[position], ownerIds[position], names[position],
+                value(categoryDictionary, categories[position]), location, rates[position],
+                available.get(position), value(conditionDictionary, conditions[position]), descriptions[position]);
+    }
+
+    private static String value(String[] dictionary, int code) {
+        return code == NO_VALUE ? null : dictionary[code];
+    }
+
+    public String id(int position) {
+        return ids[position];
+    }
+
+    public String name(int position) {
+        return names[position];
+    }
+
+    public String description(int position) {
+        return descriptions[position];
+    }
+
+    public double latitude(int position) {
+        return latitudes[position];
+    }
+
+    public double longitude(int position) {
+        return longitudes[position];
+    }
+
+    public double rate(int position) {
+        return rates[position];
+    }
+
+    /**
+     * @return true if the item has a location (latitude/longitude are 0 otherwise)
+     */
+    public boolean isLocated(int position) {
+        return located.get(position);
+    }
+
+    /**
+     * Items that have a location
+     *
+     * @return Positions with coordinates, ready to AND with the other filters
+     */
+    public ItemBitmap locatedItems() {
+        long[] words = Arrays.copyOf(located.toLongArray(), (size + 63) >>> 6);
+        return ItemBitmap.ofWords(words, located.cardinality(), size);
+    }
+
+    /**
+     * Items located inside a latitude/longitude box (see GeoKernels.boxMask)
+     *
+     * Items without a location never match
+     *
+     * @return Matching positions, ready to AND with the other filters
+     */
+    public ItemBitmap withinBox(double minLat, double maxLat, double minLon, double maxLon) {
+        long[] mask = new long[(size + 63) >>> 6];
+        GeoKernels.boxMask(minLat, maxLat, minLon, maxLon, latitudes, longitudes, size, mask);
+        long[] locatedWords = located.toLongArray();
+        int cardinality = 0;
+        for (int i = 0; i < mask.length; i++) {
+            mask[i] &= i < locatedWords.length ? locatedWords[i] : 0L;
+            cardinality += Long.bitCount(mask[i]);
+        }
+        return ItemBitmap.ofWords(mask, cardinality, size);
+    }
+
+    /**
+     * Value of a dictionary-encoded attribute (null if the item has none)
+     */
+    public String value(CatalogIndex.Attribute attribute, int position) {
+        return value(dictionary(attribute), codes(attribute)[position]);
+    }
+
+    /**
+     * Code of a dictionary-encoded attribute (-1 if the item has none)
+     */
+    public int code(CatalogIndex.Attribute attribute, int position) {
+        return codes(attribute)[position];
+    }
+
+    /**
+     * Distinct values of an attribute, indexed by code
+     */
+    public String dictionaryValue(CatalogIndex.Attribute attribute, int code) {
+        return dictionary(attribute)[code];
+    }
+
+    public int dictionarySize(CatalogIndex.Attribute attribute) {
+        return dictionary(attribute).length;
+    }
+
+    private int[] codes(CatalogIndex.Attribute attribute) {
+        switch (attribute) {
+            case CATEGORY:
+                return categories;
+            case CITY:
+                return cities;
+            default:
+                return conditions;
+        }
+    }
+
+    private String[] dictionary(CatalogIndex.Attribute attribute) {
+        switch (attribute) {
+            case CATEGORY:
+                return categoryDictionary;
+            case CITY:
+                return cityDictionary;
+            default:
+                return conditionDictionary;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Catalog Index - Inverted index over category, city and condition
+ *
+ * Built once per ItemCatalog snapshot. Maps each normalized (lower-case)
+ * attribute value to an ItemBitmap of the catalog positions that have it
+ * (built from the dictionary codes in CatalogColumns, one pass per attribute)
+ *
+ * Query Cost:
+ * - Before: up to three linear passes with equalsIgnoreCase on every item
+ * - Now: one hash lookup per filter + bitmap AND; totalItems is the bitmap
+ *   cardinality and the page is selected by rank, so no item is visited
+ *   unless it is returned
+ *
+ * @author N1237155
+ */
+public final class CatalogIndex {
+
+    private final int size;
+    private final ItemBitmap all;
+    private final Map<String, ItemBitmap> byCategory;
+    private final Map<String, ItemBitmap> byCity;
+    private final Map<String, ItemBitmap> byCondition;
+
+    /**
+     * Build the index for a snapshot's columns
+     *
+     * @param columns The snapshot's items
+     */
+    public CatalogIndex(CatalogColumns columns) {
+        this.size = columns.size();
+        this.all = ItemBitmap.all(size);
+        this.byCategory = build(columns, Attribute.CATEGORY);
+        this.byCity = build(columns, Attribute.CITY);
+        this.byCondition = build(columns, Attribute.CONDITION);
+    }
+
+    /**
+     * Indexed item attributes (also the facets reported by FacetCounts)
+     */
+    public enum Attribute { CATEGORY, CITY, CONDITION }
+
+    // Collect positions per value (already ascending), then freeze them into bitmaps
+    // Dictionary codes that differ only in case share one key ("London"/"LONDON")
+    private static Map<String, ItemBitmap> build(CatalogColumns columns, Attribute attribute) {
+        int dictionarySize = columns.dictionarySize(attribute);
+        Map<String, Integer> keyIndex = new HashMap<>();
+        List<String> keys = new ArrayList<>();
+        int[] codeToKey = new int[dictionarySize];
+        for (int code = 0; code < dictionarySize; code++) {
+            String key = normalize(columns.dictionaryValue(attribute, code));
+            Integer index = keyIndex.get(key);
+            if (index == null) {
+                index = keys.size();
+                keyIndex.put(key, index);
+                keys.add(key);
+            }
+            codeToKey[code] = index;
+        }
+
+        int[][] postings = new int[keys.size()][];
+        int[] counts = new int[keys.size()];
+        for (int position = 0; position < columns.size(); position++) {
+            int code = columns.code(attribute, position);
+            if (code < 0) {
+                continue; // items without a value never match a filter
+            }
+            int key = codeToKey[code];
+            int[] list = postings[key];
+            if (list == null) {
+                list = new int[8];
+                postings[key] = list;
+            } else if (counts[key] == list.length) {
+                list = Arrays.copyOf(list, counts[key] * 2);
+                postings[key] = list;
+            }
+            list[counts[key]++] = position;
+        }
+
+        Map<String, ItemBitmap> index = new HashMap<>(keys.size() * 2);
+        for (int key = 0; key < keys.size(); key++) {
+            if (counts[key] > 0) {
+                index.put(keys.get(key), ItemBitmap.of(postings[key], counts[key], columns.size()));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Normalize a filter or attribute value (case-insensitive matching)
+     */
+    public static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find the items matching every supplied filter
+     *
+     * Null or empty filters are ignored, exactly like the previous stream filters
+     *
+     * @param category Category filter (optional)
+     * @param city City filter (optional)
+     * @param condition Condition filter (optional)
+     * @return Matching catalog positions
+     */
+    public ItemBitmap match(String category, String city, String condition) {
+        ItemBitmap result = all;
+        result = and(result, byCategory, category);
+        result = and(result, byCity, city);
+        result = and(result, byCondition, condition);
+        return result;
+    }
+
+    private ItemBitmap and(ItemBitmap current, Map<String, ItemBitmap> index, String filter) {
+        if (filter == null || filter.isEmpty()) {
+            return current;
+        }
+        ItemBitmap values = index.get(normalize(filter));
+        if (values == null) {
+            return ItemBitmap.empty(size);
+        }
+        return current == all ? values : current.and(values);
+    }
+
+    /**
+     * Every indexed value of an attribute with its matching positions
+     *
+     * @param attribute The attribute
+     * @return Read-only map from normalized value to bitmap
+     */
+    public Map<String, ItemBitmap> postings(Attribute attribute) {
+        switch (attribute) {
+            case CATEGORY:
+                return Collections.unmodifiableMap(byCategory);
+            case CITY:
+                return Collections.unmodifiableMap(byCity);
+            default:
+                return Collections.unmodifiableMap(byCondition);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * Response Compression Interceptor
+ *
+ * JAX-RS WriterInterceptor that compresses response bodies with gzip or deflate
+ * when the client advertises support in its Accept-Encoding header
+ *
+ * Size Threshold:
+ * - The first COMPRESSION_THRESHOLD bytes are buffered
+ * - Bodies that end before the threshold are sent uncompressed (compression
+ *   would cost CPU and can even make tiny bodies larger)
+ * - Once the threshold is crossed, Content-Encoding is set and the rest of the
+ *   body is compressed as it streams, so large responses are never fully buffered
+ *
+ * Streaming responses (NDJSON export) keep working: flush() pushes compressed
+ * data out with a sync flush instead of waiting for the end of the stream
+ *
+ * Configuration:
+ * - System property cyclenest.compression.thresholdBytes (default 1024)
+ *
+ * Registered in ApplicationConfig
+ *
+ * @author N1237155
+ */
+@Provider
+public class CompressionInterceptor implements WriterInterceptor {
+
+    private static final int COMPRESSION_THRESHOLD =
+            Integer.getInteger("cyclenest.compression.thresholdBytes", 1024);
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    public static final String IDENTITY = "identity";
+
+    @Context
+    private HttpHeaders headers;
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        String encoding = negotiateEncoding(headers);
+
+        // Caches must keep compressed and uncompressed variants apart
+        context.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (IDENTITY.equals(encoding) || context.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            context.proceed();
+            return;
+        }
+
+        ThresholdCompressingStream compressing =
+                new ThresholdCompressingStream(context.getOutputStream(), encoding, context.getHeaders());
+        context.setOutputStream(compressing);
+        try {
+            context.proceed();
+        } finally {
+            compressing.finish();
+        }
+    }
+
+    /**
+     * Pick the response encoding from the client's Accept-Encoding header
+     *
+     * gzip is preferred over deflate; encodings listed with q=0 are ignored
+     * Also used by RESTServices so ETags differ between encoded variants
+     *
+     * @param headers The request headers (may be null outside a request)
+     * @return GZIP, DEFLATE or IDENTITY
+     */
+    public static String negotiateEncoding(HttpHeaders headers) {
+        if (headers == null) {
+            return IDENTITY;
+        }
+        String acceptEncoding = headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return IDENTITY;
+        }
+
+        boolean gzip = false;
+        boolean deflate = false;
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String name = parts[0].trim().toLowerCase();
+            if (parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?")) {
+                continue;
+            }
+            if (GZIP.equals(name) || "x-gzip".equals(name) || "*".equals(name)) {
+                gzip = true;
+            } else if (DEFLATE.equals(name)) {
+                deflate = true;
+            }
+        }
+        return gzip ? GZIP : deflate ? DEFLATE : IDENTITY;
+    }
+
+    /**
+     * Output stream that buffers up to the threshold, then switches to compression
+     */
+    private static final class ThresholdCompressingStream extends OutputStream {
+
+        private final OutputStream target;
+        private final String encoding;
+        private final MultivaluedMap<String, Object> responseHeaders;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream(COMPRESSION_THRESHOLD);
+        private DeflaterOutputStream compressor;
+        private Deflater deflater;
+
+        ThresholdCompressingStream(OutputStream target, String encoding, MultivaluedMap<String, Object> responseHeaders) {
+            this.target = target;
+            this.encoding = encoding;
+            this.responseHeaders = responseHeaders;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (compressor != null) {
+                compressor.write(bytes, offset, length);
+                return;
+            }
+            buffer.write(bytes, offset, length);
+            if (buffer.size() >= COMPRESSION_THRESHOLD) {
+                startCompressing();
+            }
+        }
+
+        // Headers are still uncommitted here because nothing has reached the target yet
+        private void startCompressing() throws IOException {
+            responseHeaders.putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+            responseHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+
+            OutputStream nonClosing = new FilterOutputStream(target) {
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    out.write(bytes, offset, length);
+                }
+
+                // The container owns the response stream
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+
+            if (GZIP.equals(encoding)) {
+                compressor = new GZIPOutputStream(nonClosing, 8192, true);
+            } else {
+                deflater = new Deflater();
+                compressor = new DeflaterOutputStream(nonClosing, deflater, 8192, true);
+            }
+            buffer.writeTo(compressor);
+            buffer = null;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // Below the threshold we keep buffering - the size decision is not made yet
+            if (compressor != null) {
+                compressor.flush();
+            }
+        }
+
+        // Write out whatever is left; never closes the container's stream
+        void finish() throws IOException {
+            try {
+                if (compressor != null) {
+                    compressor.close();
+                } else if (buffer != null) {
+                    buffer.writeTo(target);
+                    buffer = null;
+                }
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // finish() is called by the interceptor once the entity has been written
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Concurrency Limit Filter - Sheds load before RESTServices when a dependency slows down
+ *
+ * Requests that wait on OSRM or Cosmos DB each pass an AdaptiveConcurrencyLimiter
+ * for their dependency (see EndpointCost). When the limit is reached the request
+ * is answered 503 OVERLOADED with Retry-After straight away, instead of taking a
+ * Tomcat thread and waiting behind the others. Catalog endpoints are not limited,
+ * so they keep answering while OSRM or Cosmos DB is slow
+ *
+ * Separate limits:
+ * - routing: OSRM-backed endpoints - a slow OSRM lowers only this limit
+ * - database: Cosmos DB-only endpoints (request creation, cancellation, listings)
+ *
+ * Latency is measured from the request filter to the response filter. Responses
+ * 502/503/504 (OSRM or database failure) count as failures. A streamed export
+ * releases its slot when the stream starts
+ *
+ * Configuration:
+ * - System property cyclenest.concurrency.enabled (default true)
+ * - System property cyclenest.concurrency.routing.initial / .min / .max (default 20 / 2 / 200)
+ * - System property cyclenest.concurrency.database.initial / .min / .max (default 50 / 5 / 500)
+ * - System property cyclenest.concurrency.slowFactor (default 3)
+ *
+ * Metrics: concurrency.routing.rejected, concurrency.database.rejected;
+ * gauges concurrency.{routing,database}.limit and .inFlight
+ *
+ * Registered in ApplicationConfig
+ *
+ * @author N1237155
+ */
+@Provider
+public class ConcurrencyLimitFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("cyclenest.concurrency.enabled", "true"));
+    private static final int SLOW_FACTOR = Integer.getInteger("cyclenest.concurrency.slowFactor", 3);
+
+    private static final AdaptiveConcurrencyLimiter ROUTING = limiter("routing", 20, 2, 200);
+    private static final AdaptiveConcurrencyLimiter DATABASE = limiter("database", 50, 5, 500);
+
+    private static final LongAdder ROUTING_REJECTED = ServiceMetrics.counter("concurrency.routing.rejected");
+    private static final LongAdder DATABASE_REJECTED = ServiceMetrics.counter("concurrency.database.rejected");
+
+    // Request properties carrying the acquired slot to the response filter
+    private static final String LIMITER_PROPERTY = "cyclenest.concurrency.limiter";
+    private static final String STARTED_PROPERTY = "cyclenest.concurrency.started";
+
+    private static AdaptiveConcurrencyLimiter limiter(String name, int initial, int min, int max) {
+        String prefix = "cyclenest.concurrency." + name;
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(name,
+                Integer.getInteger(prefix + ".initial", initial),
+                Integer.getInteger(prefix + ".min", min),
+                Integer.getInteger(prefix + ".max", max),
+                SLOW_FACTOR);
+        ServiceMetrics.gauge(prefix.substring("cyclenest.".length()) + ".limit", limiter::getLimit);
+        ServiceMetrics.gauge(prefix.substring("cyclenest.".length()) + ".inFlight", limiter::getInFlight);
+        return limiter;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        if (!ENABLED) {
+            return;
+        }
+        EndpointCost cost = EndpointCost.of(request);
+        if (cost == EndpointCost.CATALOG) {
+            return;
+        }
+        AdaptiveConcurrencyLimiter limiter = cost == EndpointCost.ROUTING ? ROUTING : DATABASE;
+        long startedAt = limiter.tryAcquire();
+        if (startedAt != -1) {
+            request.setProperty(LIMITER_PROPERTY, limiter);
+            request.setProperty(STARTED_PROPERTY, startedAt);
+            return;
+        }
+
+        (cost == EndpointCost.ROUTING ? ROUTING_REJECTED : DATABASE_REJECTED).increment();
+        request.abortWith(Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, 1)
+                .entity(new ErrorResponse("OVERLOADED",
+                        "Too many requests waiting on the " + (cost == EndpointCost.ROUTING ? "routing service" : "database")
+                        + " - retry shortly"))
+                .build());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+        Object limiter = request.getProperty(LIMITER_PROPERTY);
+        if (limiter == null) {
+            return;
+        }
+        // Remove first, so the slot is released exactly once
+        request.removeProperty(LIMITER_PROPERTY);
+        int status = response.getStatus();
+        boolean failed = status == 502 || status == 503 || status == 504;
+        ((AdaptiveConcurrencyLimiter) limiter).release((Long) request.getProperty(STARTED_PROPERTY), failed);
+    }
+}
@@ -8,10 +8,23 @@ import com.azure.cosmos.CosmosClient;
 import com.azure.cosmos.CosmosClientBuilder;
 import com.azure.cosmos.CosmosContainer;
 import com.azure.cosmos.CosmosDatabase;
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosBatch;
+import com.azure.cosmos.models.CosmosBatchItemRequestOptions;
+import com.azure.cosmos.models.CosmosBatchOperationResult;
+import com.azure.cosmos.models.CosmosBatchResponse;
+import com.azure.cosmos.models.CosmosItemResponse;
 import com.azure.cosmos.models.CosmosQueryRequestOptions;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.SqlParameter;
+import com.azure.cosmos.models.SqlQuerySpec;
 import com.azure.cosmos.util.CosmosPagedIterable;
+import com.fasterxml.jackson.databind.JsonNode;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
 import com.azure.cosmos.models.PartitionKey;
 import com.azure.cosmos.models.CosmosItemRequestOptions;
 
@@ -26,7 +39,15 @@ import com.azure.cosmos.models.CosmosItemRequestOptions;
  * 
  * Database Structure:
  * - Database: "Coursework"
- * - Containers: "items" (partition key: /item_id), "Requests" (partition key: /item_id)
+ * - Containers: "items" (partition key: /item_id), "Requests" (partition key: /item_id),
+ *   "UserRequests" (partition key: /user_id)
+ * - Requests also holds one reservation marker per item with a pending request
+ *   (id "ACTIVE-{item_id}", type "reservation"); it lives in the item's partition,
+ *   so it is created and deleted in the same transaction as the request
+ * - Requests also holds idempotency records (type "idempotency") for requests
+ *   created with an Idempotency-Key header
+ * - UserRequests is a copy of the requests partitioned by user, kept in sync
+ *   from the Requests change feed by RequestViewSync (never written by requests)
  * 
  * @author N1237155
  */
@@ -39,15 +60,21 @@ public class CosmosDBConnection {
     private static final String DATABASE_NAME = "Coursework"; 
     private static final String CONTAINER_NAME = "items"; 
     private static final String REQUESTS_CONTAINER_NAME = "Requests";
+    private static final String USER_REQUESTS_CONTAINER_NAME = "UserRequests";
     
     // Singleton instance - shared across all threads
     private static volatile CosmosDBConnection instance;
     
+    // Guards the first connection - a lock rather than synchronized, so virtual
+    // threads waiting for the (network-bound) client build do not pin their carriers
+    private static final ReentrantLock INSTANCE_LOCK = new ReentrantLock();
+    
     // Azure Cosmos DB client objects - shared across all requests
     private final CosmosClient client;
     private final CosmosDatabase database;
     public final CosmosContainer container;
     public final CosmosContainer requestsContainer;
+    public final CosmosContainer userRequestsContainer;
     
     /**
      * Constructor - Establishes connection to Azure Cosmos DB
@@ -56,6 +83,7 @@ public class CosmosDBConnection {
      * 1. The Coursework database
      * 2. The items container (for rental items)
      * 3. The Requests container (for rental requests)
+     * 4. The UserRequests container (requests by user, see RequestViewSync)
      * 
      * This connection is established once per CosmosDBConnection instance
      * and should be closed after use via the close() method
@@ -69,6 +97,7 @@ public class CosmosDBConnection {
         this.database = client.getDatabase(DATABASE_NAME);
         this.container = database.getContainer(CONTAINER_NAME);
         this.requestsContainer = database.getContainer(REQUESTS_CONTAINER_NAME);
+        this.userRequestsContainer = database.getContainer(USER_REQUESTS_CONTAINER_NAME);
     }
     
     /**
@@ -81,11 +110,14 @@ public class CosmosDBConnection {
  */
 public static CosmosDBConnection getInstance() {
     if (instance == null) {
-        synchronized (CosmosDBConnection.class) {
+        INSTANCE_LOCK.lock();
+        try {
             if (instance == null) {
                 instance = new CosmosDBConnection();
                 System.out.println("CosmosDB Connection initialized (singleton)");
             }
+        } finally {
+            INSTANCE_LOCK.unlock();
         }
     }
     return instance;
@@ -138,23 +170,7 @@ public static CosmosDBConnection getInstance() {
      */
     public List<items> getAllItems(){
         try{
-            // Query to select all documents in the container
-            String query="SELECT * FROM c";
-            
-            // Execute query and get paginated results
-            CosmosPagedIterable<items>itemsList = container.queryItems(
-                    query, 
-                    new CosmosQueryRequestOptions(), 
-                    items.class
-            );
-            
-            // Convert paginated results into standard Java List
-            List<items> allItems = new ArrayList<>();
-            for (items item : itemsList){
-                allItems.add(item);
-            }
-            
-            return allItems;
+            return queryAllItems();
             
         }catch (Exception e){
             System.err.println("Database error: " + e.getMessage());
@@ -162,6 +178,36 @@ public static CosmosDBConnection getInstance() {
         }
     }
     
+    /**
+     * Retrieve all rental items, reporting failures to the caller
+     * 
+     * Same query as getAllItems(), but a database error is thrown instead of
+     * being turned into an empty list. Used by ItemCatalog so a failed refresh
+     * never replaces a good in-memory catalog with an empty one
+     * 
+     * @return List of all items in the database
+     * @throws RuntimeException if the query fails
+     */
+    public List<items> queryAllItems(){
+        // Query to select all documents in the container
+        String query="SELECT * FROM c";
+        
+        // Execute query and get paginated results
+        CosmosPagedIterable<items>itemsList = container.queryItems(
+                query, 
+                new CosmosQueryRequestOptions(), 
+                items.class
+        );
+        
+        // Convert paginated results into standard Java List
+        List<items> allItems = new ArrayList<>();
+        for (items item : itemsList){
+            allItems.add(item);
+        }
+        
+        return allItems;
+    }
+    
     /**
      * Create a new rental request in the Requests container
      * 
@@ -197,6 +243,175 @@ public static CosmosDBConnection getInstance() {
         }
     }
     
+    /**
+     * Create a rental request and reserve its item in one transaction
+     * 
+     * The request and the item's reservation marker ("ACTIVE-{item_id}") are
+     * created in a transactional batch in the item's partition. Creating the
+     * marker fails with 409 if it already exists, which rolls back the request,
+     * so Cosmos DB itself guarantees at most one pending request per item -
+     * even across several service instances
+     * 
+     * @param request The new request (status "pending")
+     * @return CREATED, ITEM_RESERVED if the item already has a pending request,
+     *         FAILED if the write failed
+     */
+    public ReservationResult createReservedRequest(Request request){
+        return createReservedRequest(request, null);
+    }
+    
+    /**
+     * Result of createReservedRequest - which document (if any) already existed
+     */
+    public enum ReservationResult {
+        CREATED,        // request, marker (and idempotency record) written
+        ITEM_RESERVED,  // the ACTIVE-{item_id} marker exists - the item has a pending request
+        KEY_USED,       // the idempotency record exists - this key was already used for the item
+        FAILED          // the write failed for another reason - nothing was written
+    }
+    
+    /**
+     * Create a rental request and reserve its item, recording the client's Idempotency-Key
+     * 
+     * With a key, an idempotency record ("IDEMPOTENCY-{hash}", type "idempotency")
+     * holding a copy of the new request is created in the same transaction. A
+     * retry with the same key then fails with 409 because the record exists,
+     * and findIdempotentRequest() returns the original request
+     * 
+     * The record carries a ttl of IdempotencyCache.TTL_SECONDS; it expires only if
+     * Time to Live is switched on for the Requests container
+     * 
+     * @param request The new request (status "pending")
+     * @param idempotencyKey Idempotency-Key header value, or null
+     * @return CREATED, ITEM_RESERVED if the item already has a pending request,
+     *         KEY_USED if only the idempotency record conflicted, FAILED otherwise
+     */
+    public ReservationResult createReservedRequest(Request request, String idempotencyKey){
+        try{
+            CosmosBatch batch = CosmosBatch.createCosmosBatch(new PartitionKey(request.getItem_id()));
+            batch.createItemOperation(reservationDocument(request));
+            batch.createItemOperation(request);
+            if (idempotencyKey != null){
+                batch.createItemOperation(idempotencyDocument(request, idempotencyKey));
+            }
+            CosmosBatchResponse response = requestsContainer.executeCosmosBatch(batch);
+            
+            if (response.isSuccessStatusCode()){
+                System.out.println("Successfully created request: " + request.getId());
+                return ReservationResult.CREATED;
+            }
+            //results follow the operation order: marker, request, idempotency record
+            List<CosmosBatchOperationResult> results = response.getResults();
+            if (!results.isEmpty() && results.get(0).getStatusCode() == 409){
+                return ReservationResult.ITEM_RESERVED;
+            }
+            if (idempotencyKey != null && results.size() > 2 && results.get(2).getStatusCode() == 409){
+                return ReservationResult.KEY_USED;
+            }
+            System.err.println("Error creating request " + request.getId() + ": status " + batchStatus(response)
+                    + " " + response.getErrorMessage());
+            return ReservationResult.FAILED;
+            
+        }catch(Exception e){
+            System.err.println("Error creating request: "+ e.getMessage());
+            System.err.println("Request ID was: " + request.getId());
+            return ReservationResult.FAILED;
+        }
+    }
+    
+    /**
+     * Find the request currently holding an item's reservation
+     * 
+     * A single point read in the item's partition (no query)
+     * 
+     * @param itemId The item to check
+     * @return ID of the pending request holding the item, or null if the item is free
+     * @throws CosmosException if the read fails
+     */
+    public String findReservation(String itemId){
+        CosmosItemResponse<JsonNode> reservation = readReservation(itemId);
+        return reservation != null ? reservation.getItem().path("request_id").asText(null) : null;
+    }
+    
+    public static String reservationId(String itemId){
+        return "ACTIVE-" + itemId;
+    }
+    
+    private static Map<String, Object> reservationDocument(Request request){
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("id", reservationId(request.getItem_id()));
+        document.put("item_id", request.getItem_id());
+        document.put("type", "reservation");
+        document.put("request_id", request.getId());
+        document.put("created_at", request.getCreated_at());
+        return document;
+    }
+    
+    /**
+     * Find the request created by an earlier submission with the same Idempotency-Key
+     * 
+     * A single point read of the idempotency record in the item's partition
+     * 
+     * @param itemId The item the submission was for
+     * @param userId The user who sent the key
+     * @param idempotencyKey Idempotency-Key header value
+     * @return The request as it was created, or null if the key was not used for this item
+     * @throws CosmosException if the read fails
+     */
+    public Request findIdempotentRequest(String itemId, String userId, String idempotencyKey){
+        try{
+            JsonNode record = requestsContainer.readItem(idempotencyId(userId, idempotencyKey),
+                    new PartitionKey(itemId), JsonNode.class).getItem();
+            return JsonMappers.REQUEST_READER.readValue(record.path("response"));
+        }catch(CosmosException e){
+            if (e.getStatusCode() == 404){
+                return null;
+            }
+            throw e;
+        }catch(java.io.IOException e){
+            throw new IllegalStateException("Unreadable idempotency record for item " + itemId, e);
+        }
+    }
+    
+    // Keys are client supplied - hashing keeps the document id short and free of characters Cosmos rejects
+    private static String idempotencyId(String userId, String idempotencyKey){
+        try{
+            byte[] digest = java.security.MessageDigest.getInstance("SHA-256")
+                    .digest((userId + "\n" + idempotencyKey).getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            StringBuilder id = new StringBuilder("IDEMPOTENCY-");
+            for (byte b : digest){
+                id.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return id.toString();
+        }catch(java.security.NoSuchAlgorithmException e){
+            throw new IllegalStateException(e); // every JVM ships SHA-256
+        }
+    }
+    
+    private static Map<String, Object> idempotencyDocument(Request request, String idempotencyKey){
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("id", idempotencyId(request.getUser_id(), idempotencyKey));
+        document.put("item_id", request.getItem_id());
+        document.put("type", "idempotency");
+        document.put("request_id", request.getId());
+        document.put("response", request);
+        document.put("created_at", request.getCreated_at());
+        document.put("ttl", IdempotencyCache.TTL_SECONDS);
+        return document;
+    }
+    
+    // Point read of the reservation marker, or null if the item has none
+    private CosmosItemResponse<JsonNode> readReservation(String itemId){
+        try{
+            return requestsContainer.readItem(reservationId(itemId), new PartitionKey(itemId), JsonNode.class);
+        }catch(CosmosException e){
+            if (e.getStatusCode() == 404){
+                return null;
+            }
+            throw e;
+        }
+    }
+    
     /**
      * Cancel a rental request by updating its status to "cancelled"
      * 
@@ -210,14 +425,25 @@ public static CosmosDBConnection getInstance() {
      * - This is critical: using wrong partition key causes operation to fail
      * - Must match the partition key used during createRequest()
      * 
+     * Reservation:
+     * - If the request holds its item's reservation marker, the status update and
+     *   the marker's deletion run as one transactional batch
+     * - The marker is deleted only if it has not changed since it was read (ETag)
+     * 
      * @param requestId The unique request ID to cancel (e.g., "REQ-1736694123456-7845")
      * @return Updated Request object with status="cancelled", or null if not found
+     * @throws DatabaseWriteException if the cancel batch was not committed (e.g. 412
+     *         when the reservation changed meanwhile, 429 when throttled)
+     * @throws CosmosException if the query or the update fails
      */
     
     public Request cancelRequest(String requestId){
         try{
-            //query to find the request by request id
-            String query = "SELECT * FROM c WHERE c.id = '" +  requestId + "'";
+            //query to find the request by request id (reservation markers are not requests)
+            //the id is a parameter, so it can never change the query itself
+            SqlQuerySpec query = new SqlQuerySpec(
+                    "SELECT * FROM c WHERE c.id = @id AND NOT IS_DEFINED(c.type)",
+                    new SqlParameter("@id", requestId));
             
             // Execute query against Requests container
             CosmosPagedIterable<Request> requests = requestsContainer.queryItems(
@@ -228,16 +454,32 @@ public static CosmosDBConnection getInstance() {
             
             //find the request
             for(Request request : requests){
+                boolean wasPending = "pending".equals(request.getStatus());
                 request.setStatus("cancelled"); // Update status field
                 
-                // Save changes back to database using replaceItem()
-                // Must provide correct partition key
-                requestsContainer.replaceItem(
-                        request,                           
-                        request.getId(),                  
-                        new PartitionKey(request.getItem_id()),// Partition by item_id
-                        new CosmosItemRequestOptions()
-                );
+                CosmosItemResponse<JsonNode> reservation = wasPending ? readReservation(request.getItem_id()) : null;
+                if (reservation != null && request.getId().equals(reservation.getItem().path("request_id").asText())){
+                    // Cancel and release the item together
+                    CosmosBatch batch = CosmosBatch.createCosmosBatch(new PartitionKey(request.getItem_id()));
+                    batch.replaceItemOperation(request.getId(), request);
+                    batch.deleteItemOperation(reservationId(request.getItem_id()),
+                            new CosmosBatchItemRequestOptions().setIfMatchETag(reservation.getETag()));
+                    CosmosBatchResponse response = requestsContainer.executeCosmosBatch(batch);
+                    if (!response.isSuccessStatusCode()){
+                        System.err.println("Error cancelling request " + requestId + ": " + response.getErrorMessage());
+                        throw new DatabaseWriteException(batchStatus(response),
+                                "Request " + requestId + " could not be cancelled (status " + batchStatus(response) + ")");
+                    }
+                }else{
+                    // Save changes back to database using replaceItem()
+                    // Must provide correct partition key
+                    requestsContainer.replaceItem(
+                            request,                           
+                            request.getId(),                  
+                            new PartitionKey(request.getItem_id()),// Partition by item_id
+                            new CosmosItemRequestOptions()
+                    );
+                }
                 
                 System.out.println("Successfully cancelled request: " + requestId);
                 return request;
@@ -246,17 +488,74 @@ public static CosmosDBConnection getInstance() {
             System.err.println("Request not found: " + requestId);
             return null;
             
-        }catch(Exception e){
+        }catch(CosmosException e){
             System.err.println("Error cancelling request: " + e.getMessage());
-            e.printStackTrace();
-            return null;
+            throw e;
+        }
+    }
+    
+    // A failed batch reports 424 for the operations that were only rolled back - use the one that failed
+    private static int batchStatus(CosmosBatchResponse response){
+        for (CosmosBatchOperationResult result : response.getResults()){
+            if (result.getStatusCode() >= 400 && result.getStatusCode() != 424){
+                return result.getStatusCode();
+            }
         }
+        return response.getStatusCode();
+    }
+    
+    /**
+     * Get one page of a user's rental requests, newest first
+     * 
+     * Served from the UserRequests container, so the query stays inside the
+     * user's partition. The container is updated from the Requests change feed,
+     * so a request shows up here a few seconds after it was created or cancelled
+     * 
+     * @param userId The user whose requests are listed
+     * @param continuation Continuation token of the previous page, or null for the first page
+     * @param limit Maximum number of requests on the page
+     * @return The page; nextCursor holds the raw Cosmos continuation token (null on the last page)
+     * @throws CosmosException if the query fails (status 400 for an invalid continuation token)
+     */
+    public RequestListResponse getUserRequests(String userId, String continuation, int limit){
+        return queryRequestPage(userRequestsContainer, "user_id", userId, continuation, limit);
+    }
+    
+    /**
+     * Get one page of an item's rental requests, newest first
+     * 
+     * Requests are partitioned by item_id, so this is a single-partition query
+     * on the Requests container (reservation markers are excluded)
+     * 
+     * @param itemId The item whose requests are listed
+     * @param continuation Continuation token of the previous page, or null for the first page
+     * @param limit Maximum number of requests on the page
+     * @return The page; nextCursor holds the raw Cosmos continuation token (null on the last page)
+     * @throws CosmosException if the query fails (status 400 for an invalid continuation token)
+     */
+    public RequestListResponse getItemRequests(String itemId, String continuation, int limit){
+        return queryRequestPage(requestsContainer, "item_id", itemId, continuation, limit);
+    }
+    
+    // One page of a partition's requests - the partition key field is also the filter
+    private RequestListResponse queryRequestPage(CosmosContainer target, String keyField, String key,
+            String continuation, int limit){
+        SqlQuerySpec query = new SqlQuerySpec(
+                "SELECT * FROM c WHERE c." + keyField + " = @key AND NOT IS_DEFINED(c.type) ORDER BY c.created_at DESC",
+                new SqlParameter("@key", key));
+        CosmosQueryRequestOptions options = new CosmosQueryRequestOptions();
+        options.setPartitionKey(new PartitionKey(key));
+        
+        for (FeedResponse<Request> page : target.queryItems(query, options, Request.class)
+                .iterableByPage(continuation, limit)){
+            return new RequestListResponse(new ArrayList<>(page.getResults()), limit, page.getContinuationToken());
+        }
+        return new RequestListResponse(new ArrayList<>(), limit, null);
     }
     
     /**
     * Close the database connection and release resources
     * 
-    * Should be called in a finally block after database operations complete
     * Ensures proper cleanup of Azure Cosmos DB client connections
     * Prevents resource leaks and connection pool exhaustion
     */
@@ -265,4 +564,22 @@ public static CosmosDBConnection getInstance() {
             client.close();
         }
     }
+    
+    /**
+     * Close the shared connection, if one was created (called on undeploy by ServiceLifecycle)
+     * 
+     * A later getInstance() call creates a new connection
+     */
+    public static void shutdown() {
+        INSTANCE_LOCK.lock();
+        try {
+            if (instance != null) {
+                instance.close();
+                instance = null;
+                System.out.println("CosmosDB Connection closed");
+            }
+        } finally {
+            INSTANCE_LOCK.unlock();
+        }
+    }
 }
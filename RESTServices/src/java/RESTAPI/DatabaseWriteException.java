@@ -0,0 +1,35 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+/**
+ * Database Write Exception - A Cosmos DB transactional batch was not committed
+ *
+ * Batches report failure through their response instead of throwing, so the
+ * batch's status code is carried here for the resource layer to answer with:
+ * - 409 / 412: a document in the batch changed concurrently (409 Conflict)
+ * - 429: throttled (503 with Retry-After)
+ * - anything else: 503
+ *
+ * @author N1237155
+ */
+public class DatabaseWriteException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public DatabaseWriteException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * @return Status code of the failed batch (e.g. 412, 429)
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
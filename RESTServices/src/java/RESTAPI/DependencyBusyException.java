@@ -0,0 +1,33 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+/**
+ * Dependency Busy Exception - A DependencyExecutor could not take another call
+ *
+ * Raised when the dependency's threads and queue are all taken. The resource
+ * layer answers 503 Service Unavailable with Retry-After, so clients back off
+ * instead of piling more work onto a dependency that is already behind
+ *
+ * @author N1237155
+ */
+public class DependencyBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String dependency;
+
+    public DependencyBusyException(String dependency, String message) {
+        super(message);
+        this.dependency = dependency;
+    }
+
+    /**
+     * @return Name of the busy dependency ("osrm", "cosmos")
+     */
+    public String getDependency() {
+        return dependency;
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dependency Executor - A bounded thread pool per outbound dependency
+ *
+ * Outbound calls (OSRM, Cosmos DB) run on their dependency's pool instead of
+ * on the request thread that needs them. Each pool has a fixed number of threads
+ * and a bounded queue; when both are full the call is rejected at once with
+ * DependencyBusyException (answered 503 with Retry-After). A slow OSRM can then
+ * hold at most the OSRM pool, and Cosmos-only endpoints such as cancelRequest
+ * keep their own threads
+ *
+ * Bounds:
+ * - Threads plus queue stay well below Tomcat's 200 request threads, so the
+ *   request threads blocked waiting on one dependency are a small share
+ * - A call that has not finished timeoutMillis after it was submitted is
+ *   cancelled (its thread interrupted) and fails with DependencyTimeoutException
+ *   (answered 504), so neither the request thread nor the pool thread waits on
+ *   a stuck dependency for longer
+ *
+ * Pools:
+ * - OSRM: route and table calls, including the per-item routing fan-out
+ * - COSMOS: request-path Cosmos DB reads and writes (request creation,
+ *   cancellation, request listings)
+ *
+ * Threads:
+ * - By default a fixed pool of daemon platform threads with a bounded queue
+ * - With virtual threads enabled (see VirtualThreads) every call gets its own
+ *   virtual thread, and a semaphore of `permits` is the bulkhead instead of the
+ *   pool size and queue: a call that finds no permit is rejected at once. There
+ *   is no queue, so calls never wait for a thread
+ *
+ * Configuration:
+ * - System property cyclenest.executor.osrm.threads / .queue (default 16 / 16)
+ * - System property cyclenest.executor.cosmos.threads / .queue (default 16 / 16)
+ * - System property cyclenest.executor.{name}.permits - calls in flight on
+ *   virtual threads (default threads + queue, the platform pool's bound)
+ * - System property cyclenest.executor.{name}.timeoutMillis (default 10000)
+ *
+ * Metrics per pool ({name} = osrm, cosmos): executor.{name}.submitted,
+ * executor.{name}.rejected, executor.{name}.timedOut; gauges executor.{name}.queued,
+ * executor.{name}.active (calls running) and executor.{name}.avgWaitMillis
+ * (time tasks spent queued)
+ *
+ * @author N1237155
+ */
+public final class DependencyExecutor {
+
+    public static final DependencyExecutor OSRM = new DependencyExecutor("osrm", 16, 16);
+    public static final DependencyExecutor COSMOS = new DependencyExecutor("cosmos", 16, 16);
+
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10_000L;
+
+    private final String name;
+    private final ExecutorService executor;
+    private final ThreadPoolExecutor pool;   // platform threads, null on virtual threads
+    private final Semaphore permits;         // virtual threads, null on platform threads
+    private final long timeoutMillis;
+
+    private final LongAdder submitted;
+    private final LongAdder rejected;
+    private final LongAdder timedOut;
+    private final LongAdder started = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+
+    /**
+     * A call to run on the pool
+     */
+    public interface Call<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private DependencyExecutor(String name, int defaultThreads, int defaultQueue) {
+        this(name, Integer.getInteger("cyclenest.executor." + name + ".threads", defaultThreads),
+                Integer.getInteger("cyclenest.executor." + name + ".queue", defaultQueue),
+                Integer.getInteger("cyclenest.executor." + name + ".permits", 0),
+                Long.getLong("cyclenest.executor." + name + ".timeoutMillis", DEFAULT_TIMEOUT_MILLIS),
+                VirtualThreads.newThreadPerTaskExecutor(name));
+    }
+
+    /**
+     * @param permits Calls in flight on virtual threads, or 0 for threads + queue
+     * @param virtual Thread-per-task executor on virtual threads, or null for a platform pool
+     */
+    DependencyExecutor(String name, int threads, int queue, int permits, long timeoutMillis, ExecutorService virtual) {
+        this.name = name;
+        threads = Math.max(1, threads);
+        queue = Math.max(1, queue);
+        this.timeoutMillis = Math.max(1L, timeoutMillis);
+
+        if (virtual != null) {
+            pool = null;
+            executor = virtual;
+            this.permits = new Semaphore(permits > 0 ? permits : threads + queue);
+        } else {
+            AtomicInteger threadNumber = new AtomicInteger();
+            pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queue), task -> {
+                        Thread thread = new Thread(task, name + "-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }, new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+            this.permits = null;
+        }
+        int maxInFlight = this.permits == null ? threads : this.permits.availablePermits();
+
+        String prefix = "executor." + name;
+        submitted = ServiceMetrics.counter(prefix + ".submitted");
+        rejected = ServiceMetrics.counter(prefix + ".rejected");
+        timedOut = ServiceMetrics.counter(prefix + ".timedOut");
+        ServiceMetrics.gauge(prefix + ".queued", () -> pool == null ? 0 : pool.getQueue().size());
+        ServiceMetrics.gauge(prefix + ".active", () -> pool == null
+                ? maxInFlight - this.permits.availablePermits() : pool.getActiveCount());
+        ServiceMetrics.gauge(prefix + ".avgWaitMillis", () -> {
+            long count = started.sum();
+            return count == 0 ? 0.0 : waitNanos.sum() / 1e6 / count;
+        });
+    }
+
+    /**
+     * A call in the pool - completes its CompletableFuture when it finishes or
+     * is cancelled, and can be interrupted through cancel(true)
+     */
+    private final class Task<T> extends FutureTask<T> {
+
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        private final long queuedAt = System.nanoTime();
+
+        Task(Call<T, ? extends Exception> call) {
+            super(call::run);
+        }
+
+        @Override
+        public void run() {
+            started.increment();
+            waitNanos.add(System.nanoTime() - queuedAt);
+            try {
+                super.run(); // does nothing if cancelled while queued
+            } finally {
+                if (permits != null) {
+                    permits.release();
+                }
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                result.completeExceptionally(timeout());
+                return;
+            }
+            try {
+                result.complete(get());
+            } catch (ExecutionException e) {
+                result.completeExceptionally(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt(); // not reached - the task is done
+            }
+        }
+
+        // Cancel the call if it is still queued or running, interrupting its thread
+        void expire() {
+            if (cancel(true)) {
+                timedOut.increment();
+            }
+        }
+    }
+
+    /**
+     * @return Milliseconds a call may take from submission before it is cancelled
+     */
+    public long timeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Run a call on the pool and wait for its result, at most timeoutMillis()
+     *
+     * @return The call's result
+     * @throws E The call's own exception
+     * @throws DependencyBusyException if the pool and its queue are full
+     * @throws DependencyTimeoutException if the call did not finish in time (it is cancelled)
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> T call(Call<T, E> call) throws E {
+        Task<T> task = start(call);
+        try {
+            return task.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            task.expire();
+            throw timeout();
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new DependencyBusyException(name, "Interrupted while waiting for " + name);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException && e.getCause().getCause() != null
+                    ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (E) cause;
+        }
+    }
+
+    /**
+     * Start a call on the pool without waiting for it
+     *
+     * The call is cancelled if it has not finished timeoutMillis() after
+     * submission, and also when the caller cancels the returned future
+     *
+     * @return Future completing with the call's result, or exceptionally with
+     *         its exception or a DependencyTimeoutException
+     * @throws DependencyBusyException if the pool and its queue are full
+     */
+    public <T> CompletableFuture<T> submit(Call<T, ? extends Exception> call) {
+        Task<T> task = start(call);
+        CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS).execute(task::expire);
+        task.result.whenComplete((value, error) -> {
+            if (task.result.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return task.result;
+    }
+
+    private <T> Task<T> start(Call<T, ? extends Exception> call) {
+        if (permits != null && !permits.tryAcquire()) {
+            throw busy();
+        }
+        Task<T> task = new Task<>(call);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (permits != null) {
+                permits.release();
+            }
+            throw busy();
+        }
+        submitted.increment();
+        return task;
+    }
+
+    private DependencyBusyException busy() {
+        rejected.increment();
+        return new DependencyBusyException(name, "Too many calls waiting for " + name + " - retry shortly");
+    }
+
+    private DependencyTimeoutException timeout() {
+        return new DependencyTimeoutException(name, "No response from " + name + " within " + timeoutMillis + " ms");
+    }
+
+    /**
+     * Stop the pool - running calls are interrupted and queued calls discarded
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
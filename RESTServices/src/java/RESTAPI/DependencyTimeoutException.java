@@ -0,0 +1,23 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+/**
+ * Dependency Timeout Exception - A call on a DependencyExecutor did not finish in time
+ *
+ * Raised when a call waited in the queue and ran for longer than the pool's
+ * timeout. The call is cancelled (its thread interrupted) so it does not keep
+ * holding the pool. The resource layer answers 504 Gateway Timeout
+ *
+ * @author N1237155
+ */
+public class DependencyTimeoutException extends DependencyBusyException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DependencyTimeoutException(String dependency, String message) {
+        super(dependency, message);
+    }
+}
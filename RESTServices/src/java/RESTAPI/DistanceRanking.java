@@ -0,0 +1,267 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distance Ranking - Global sort-by-distance for GET /items?sort=distance
+ *
+ * Sorting every matching item by road distance would need one OSRM call per item,
+ * so ranking is done in two phases:
+ *
+ * Phase 1 - Straight-line prefilter:
+ * - All matching items are ordered by great-circle distance using the catalog's
+ *   SpatialIndex. A road is (practically) never shorter than the straight line,
+ *   so this is a cheap lower bound for the road distance
+ *
+ * Phase 2 - OSRM refinement of the top K:
+ * - Candidates are routed concurrently in lower-bound order (first the top K, then
+ *   small waves) until the K-th best road distance is no larger than the next
+ *   candidate's lower bound - at that point no unrouted item can enter the top K
+ * - Refinement stops early after REFINE_MAX_CALLS routes, keeping the OSRM cost
+ *   of a page bounded even in dense areas, or when the request's deadline passes
+ *   (routes still running then only finish into the RouteCache)
+ *
+ * Final order:
+ * - Ranks 1..K: the refined items ordered by road distance
+ * - Ranks K+1..: every other item in straight-line order
+ * - Items without a road distance carry the straight-line distance with status
+ *   "estimated" or "pending", as in routeWithin
+ * - Ties are broken by catalog position and routes come from the RouteCache, so the
+ *   same query returns the same order on every page (stable page boundaries)
+ *
+ * Configuration:
+ * - System property cyclenest.sort.refineTopK (default 20, i.e. the first 4 pages)
+ * - System property cyclenest.sort.refineMaxCalls (default 40)
+ *
+ * @author N1237155
+ */
+public final class DistanceRanking {
+
+    private static final int REFINE_TOP_K = Math.max(1, Integer.getInteger("cyclenest.sort.refineTopK", 20));
+    private static final int REFINE_MAX_CALLS =
+            Math.max(REFINE_TOP_K, Integer.getInteger("cyclenest.sort.refineMaxCalls", 40));
+
+    // Routes per follow-up wave once the first K candidates have been routed
+    private static final int REFINE_WAVE = 10;
+
+    // Status of a straight-line estimate standing in for a road distance (see routeWithin)
+    public static final String STATUS_ESTIMATED = "estimated";
+    public static final String STATUS_PENDING = "pending";
+
+    private static final LongAdder ESTIMATED = ServiceMetrics.counter("distance.estimated");
+    private static final LongAdder PENDING = ServiceMetrics.counter("distance.pending");
+
+    private DistanceRanking() {
+    }
+
+    /**
+     * Build one page of the distance-sorted result
+     *
+     * @param catalog The catalog snapshot being queried
+     * @param matches Items matching the request filters
+     * @param lat User latitude
+     * @param lon User longitude
+     * @param startIndex Rank of the first item on the page (0-based)
+     * @param pageSize Number of items per page
+     * @param osrm Client used for the refinement and page routes
+     * @param deadlineNanos System.nanoTime() by which to answer, or Long.MAX_VALUE
+     *                      to wait for every route
+     * @return The page, nearest first
+     */
+    public static List<ItemDistanceResponse> page(ItemCatalog.Snapshot catalog, ItemBitmap matches,
+                                                  double lat, double lon, int startIndex, int pageSize,
+                                                  OSRMClient osrm, long deadlineNanos) {
+        int total = matches.cardinality();
+        int end = Math.min(total, startIndex + pageSize);
+        if (startIndex >= end) {
+            return new ArrayList<>();
+        }
+
+        SpatialIndex spatial = catalog.getSpatialIndex();
+        CatalogColumns columns = catalog.getColumns();
+        ItemBitmap filter = total == catalog.getIndex().size() ? null : matches;
+
+        // Phase 1 - straight-line order, deep enough for the refinement window and this page
+        int candidateCount = Math.min(total, REFINE_MAX_CALLS);
+        int[] ordered = spatial.nearest(lat, lon, Math.max(candidateCount, end), Double.POSITIVE_INFINITY, filter);
+        double[] lowerBound = spatial.distancesKm(ordered, ordered.length, lat, lon);
+
+        // Phase 2 - refine until the top K is certain, the call budget is spent or the deadline passes
+        int k = Math.min(REFINE_TOP_K, total);
+        RouteResponse[] routes = new RouteResponse[candidateCount];    // road distances only
+        RouteResponse[] estimates = new RouteResponse[candidateCount]; // stand-ins where routing failed or is pending
+        int routed = 0;
+        while (routed < candidateCount && (routed == 0 || System.nanoTime() < deadlineNanos)) {
+            int wave = routed == 0 ? k : Math.min(REFINE_WAVE, candidateCount - routed);
+            RouteResponse[] results = routeWithin(osrm, catalog, lat, lon,
+                    Arrays.copyOfRange(ordered, routed, routed + wave), deadlineNanos);
+            for (int i = 0; i < wave; i++) {
+                if (isEstimate(results[i])) {
+                    estimates[routed + i] = results[i];
+                } else {
+                    routes[routed + i] = results[i];
+                }
+            }
+            routed += wave;
+            if (isCertain(routes, routed, k, routed < ordered.length ? lowerBound[routed] : Double.POSITIVE_INFINITY)) {
+                break;
+            }
+        }
+
+        // Top K by road distance (ties broken by straight-line rank)
+        Integer[] refined = new Integer[routed];
+        int refinedCount = 0;
+        for (int i = 0; i < routed; i++) {
+            if (routes[i] != null) {
+                refined[refinedCount++] = i;
+            }
+        }
+        Arrays.sort(refined, 0, refinedCount, (a, b) -> {
+            int byRoad = Double.compare(routes[a].getDistanceKm(), routes[b].getDistanceKm());
+            return byRoad != 0 ? byRoad : Integer.compare(a, b);
+        });
+        int topCount = Math.min(k, refinedCount);
+        boolean[] inTop = new boolean[routed];
+        for (int i = 0; i < topCount; i++) {
+            inTop[refined[i]] = true;
+        }
+
+        // Map each rank on the page to its candidate index
+        int[] pageCandidates = new int[end - startIndex];
+        int filled = 0;
+        for (int rank = startIndex; rank < Math.min(end, topCount); rank++) {
+            pageCandidates[filled++] = refined[rank];
+        }
+        int tailRank = topCount;
+        for (int i = 0; i < ordered.length && filled < pageCandidates.length; i++) {
+            if (i < routed && inTop[i]) {
+                continue;
+            }
+            if (tailRank++ >= startIndex) {
+                pageCandidates[filled++] = i;
+            }
+        }
+
+        // Route the page items that were not routed during refinement (failed or
+        // pending ones keep their estimate rather than calling OSRM a second time)
+        int[] missing = new int[filled];
+        int missingCount = 0;
+        for (int i = 0; i < filled; i++) {
+            int candidate = pageCandidates[i];
+            if (candidate >= routed) {
+                missing[missingCount++] = ordered[candidate];
+            }
+        }
+        RouteResponse[] missingRoutes = routeWithin(osrm, catalog, lat, lon,
+                Arrays.copyOf(missing, missingCount), deadlineNanos);
+
+        List<ItemDistanceResponse> page = new ArrayList<>(filled);
+        int next = 0;
+        for (int i = 0; i < filled; i++) {
+            int candidate = pageCandidates[i];
+            RouteResponse route;
+            if (candidate >= routed) {
+                route = missingRoutes[next++];
+            } else {
+                route = routes[candidate] != null ? routes[candidate] : estimates[candidate];
+            }
+            page.add(ItemDistanceResponse.of(columns.itemAt(ordered[candidate]), route));
+        }
+        return page;
+    }
+
+    /**
+     * @return true if the route is a straight-line stand-in ("estimated" or "pending")
+     *         rather than an OSRM road distance
+     */
+    public static boolean isEstimate(RouteResponse route) {
+        return STATUS_ESTIMATED.equals(route.getStatus()) || STATUS_PENDING.equals(route.getStatus());
+    }
+
+    // No unrouted candidate can beat the current K-th best road distance
+    private static boolean isCertain(RouteResponse[] routes, int routed, int k, double nextLowerBound) {
+        double[] distances = new double[routed];
+        int count = 0;
+        for (int i = 0; i < routed; i++) {
+            if (routes[i] != null) {
+                distances[count++] = routes[i].getDistanceKm();
+            }
+        }
+        if (count < k) {
+            return nextLowerBound == Double.POSITIVE_INFINITY;
+        }
+        Arrays.sort(distances, 0, count);
+        return distances[k - 1] <= nextLowerBound;
+    }
+
+    /**
+     * Route a page of items, answering by a deadline
+     *
+     * Every item gets a RouteResponse: the OSRM route where it finished in time,
+     * otherwise the straight-line distance (durationMinutes 0) with status
+     * - "pending": OSRM was still working at the deadline. The call keeps running
+     *   in the background and its route goes into the RouteCache, so the next
+     *   request for the page finds it there
+     * - "estimated": OSRM failed for the item (or the routing pool was full)
+     *
+     * Metrics: distance.pending, distance.estimated
+     *
+     * @param osrm Client used for the routes
+     * @param catalog Snapshot the positions refer to
+     * @param lat User latitude
+     * @param lon User longitude
+     * @param positions Catalog positions to route
+     * @param deadlineNanos System.nanoTime() by which to answer, or Long.MAX_VALUE
+     *                      to wait for every route
+     * @return One route or estimate per position
+     */
+    public static RouteResponse[] routeWithin(OSRMClient osrm, ItemCatalog.Snapshot catalog, double lat, double lon,
+                                              int[] positions, long deadlineNanos) {
+        CatalogColumns columns = catalog.getColumns();
+        List<CompletableFuture<RouteResponse>> futures = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            futures.add(osrm.routeAsync(lon, lat, columns.longitude(position), columns.latitude(position)));
+        }
+
+        RouteResponse[] routes = new RouteResponse[positions.length];
+        double[] straightLine = null;
+        for (int i = 0; i < positions.length; i++) {
+            CompletableFuture<RouteResponse> future = futures.get(i);
+            String status = STATUS_ESTIMATED;
+            try {
+                routes[i] = deadlineNanos == Long.MAX_VALUE
+                        ? future.get()
+                        : future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+                continue;
+            } catch (TimeoutException e) {
+                status = STATUS_PENDING; // left running - completes into the RouteCache
+                PENDING.increment();
+            } catch (ExecutionException e) {
+                ESTIMATED.increment();
+                System.err.println("Failed to calculate distance for item "
+                        + columns.id(positions[i]) + ": " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                deadlineNanos = 0; // answer the rest with estimates
+                status = STATUS_PENDING;
+                PENDING.increment();
+            }
+            if (straightLine == null) {
+                straightLine = catalog.getSpatialIndex().distancesKm(positions, positions.length, lat, lon);
+            }
+            routes[i] = new RouteResponse(Math.round(straightLine[i] * 100.0) / 100.0, 0, status);
+        }
+        return routes;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import javax.ws.rs.container.ContainerRequestContext;
+
+/**
+ * Endpoint Cost - Which downstream dependency a request will wait on
+ *
+ * Used by the request filters to pick a limit per kind of work:
+ * - ROUTING: calls OSRM per request - /direct, /items/{id}/distance and item
+ *   listings or exports with userLat (road distances)
+ * - DATABASE: reads or writes Cosmos DB per request - anything that is not a
+ *   GET, request listings and the export without userLat
+ * - CATALOG: served from the in-memory ItemCatalog (everything else)
+ *
+ * @author N1237155
+ */
+public enum EndpointCost {
+
+    CATALOG,
+    DATABASE,
+    ROUTING;
+
+    /**
+     * Classify a request by method, path and query parameters
+     *
+     * @param request The incoming request
+     * @return The dependency the request will wait on
+     */
+    public static EndpointCost of(ContainerRequestContext request) {
+        String path = request.getUriInfo().getPath();
+        boolean withDistances = request.getUriInfo().getQueryParameters().containsKey("userLat");
+
+        if (path.endsWith("/direct") || path.endsWith("/distance")
+                || (withDistances && (path.endsWith("/items") || path.endsWith("/export")))) {
+            return ROUTING;
+        }
+        if (!"GET".equals(request.getMethod()) || path.endsWith("/requests") || path.endsWith("/export")) {
+            return DATABASE;
+        }
+        return CATALOG;
+    }
+}
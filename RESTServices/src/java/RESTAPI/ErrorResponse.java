@@ -0,0 +1,60 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+/**
+ * Error Response Model - Consistent error body for every endpoint
+ *
+ * Replaces the hand-formatted error strings previously built with String.format
+ * Sent together with a proper HTTP status code (400, 404, 502, etc.)
+ *
+ * JSON Format:
+ * {"status": "error", "errorCode": "ITEM_NOT_FOUND", "message": "Item with ID 'i999' not found"}
+ *
+ * Because Jackson serializes this object, quotes and special characters in
+ * the message are escaped correctly instead of being replaced
+ *
+ * @author N1237155
+ */
+public class ErrorResponse {
+
+    private String status = "error";
+    private String errorCode;
+    private String message;
+
+    // Empty constructor for Jackson
+    public ErrorResponse() {
+    }
+
+    // Constructor with error code and human-readable message
+    public ErrorResponse(String errorCode, String message) {
+        this.errorCode = errorCode;
+        this.message = message;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(String errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
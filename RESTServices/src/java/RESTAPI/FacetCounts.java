@@ -0,0 +1,182 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Facet Counts - Item counts per category, city and condition
+ *
+ * Owned by ItemCatalog and updated incrementally on every catalog refresh:
+ * only items that were added, removed, or whose category/city/condition changed
+ * adjust the counters, so the catalog is never rescanned to rebuild them
+ *
+ * Each refresh publishes an immutable Totals object with the unfiltered
+ * FacetsResponse already built, so GET /items/facets without filters is O(1)
+ *
+ * Values are counted case-insensitively (same keys as CatalogIndex) and shown
+ * with the spelling of the first item that used them
+ *
+ * @author N1237155
+ */
+public final class FacetCounts {
+
+    private final Map<CatalogIndex.Attribute, Map<String, Integer>> counts =
+            new EnumMap<>(CatalogIndex.Attribute.class);
+    private final Map<CatalogIndex.Attribute, Map<String, String>> labels =
+            new EnumMap<>(CatalogIndex.Attribute.class);
+    private int totalItems;
+
+    public FacetCounts() {
+        for (CatalogIndex.Attribute attribute : CatalogIndex.Attribute.values()) {
+            counts.put(attribute, new HashMap<>());
+            labels.put(attribute, new HashMap<>());
+        }
+    }
+
+    /**
+     * Immutable counts for one catalog version
+     */
+    public static final class Totals {
+
+        private final FacetsResponse unfiltered;
+        private final Map<CatalogIndex.Attribute, Map<String, String>> labels;
+
+        private Totals(FacetsResponse unfiltered, Map<CatalogIndex.Attribute, Map<String, String>> labels) {
+            this.unfiltered = unfiltered;
+            this.labels = labels;
+        }
+
+        /**
+         * Counts over the whole catalog (pre-built)
+         */
+        public FacetsResponse unfiltered() {
+            return unfiltered;
+        }
+
+        /**
+         * Counts restricted to a set of matching items
+         *
+         * One AND-cardinality per facet value; no item is visited
+         *
+         * @param index The snapshot's CatalogIndex
+         * @param matches Items matching the request filters
+         * @return Counts per facet value
+         */
+        public FacetsResponse filtered(CatalogIndex index, ItemBitmap matches) {
+            Map<CatalogIndex.Attribute, Map<String, Integer>> result = new EnumMap<>(CatalogIndex.Attribute.class);
+            for (CatalogIndex.Attribute attribute : CatalogIndex.Attribute.values()) {
+                Map<String, Integer> values = new HashMap<>();
+                for (Map.Entry<String, ItemBitmap> entry : index.postings(attribute).entrySet()) {
+                    int count = matches.andCardinality(entry.getValue());
+                    if (count > 0) {
+                        values.put(labels.get(attribute).getOrDefault(entry.getKey(), entry.getKey()), count);
+                    }
+                }
+                result.put(attribute, values);
+            }
+            return toResponse(matches.cardinality(), result, null);
+        }
+    }
+
+    /**
+     * Apply the difference between two catalog versions
+     *
+     * @param previous Columns of the previous snapshot (null on first load)
+     * @param current Columns of the new snapshot
+     * @return Counts for the new version
+     */
+    public Totals update(CatalogColumns previous, CatalogColumns current) {
+        for (int position = 0; position < current.size(); position++) {
+            String id = current.id(position);
+            if (id == null || current.positionOf(id) != position) {
+                continue; // duplicate IDs keep their first occurrence
+            }
+            int old = previous == null ? -1 : previous.positionOf(id);
+            if (old < 0) {
+                apply(current, position, 1);
+            } else if (!sameFacets(previous, old, current, position)) {
+                apply(previous, old, -1);
+                apply(current, position, 1);
+            }
+        }
+        if (previous != null) {
+            for (int old = 0; old < previous.size(); old++) {
+                String id = previous.id(old);
+                if (id != null && current.positionOf(id) < 0 && previous.positionOf(id) == old) {
+                    apply(previous, old, -1);
+                }
+            }
+        }
+
+        Map<CatalogIndex.Attribute, Map<String, String>> labelCopy = new EnumMap<>(CatalogIndex.Attribute.class);
+        for (CatalogIndex.Attribute attribute : CatalogIndex.Attribute.values()) {
+            labelCopy.put(attribute, Collections.unmodifiableMap(new HashMap<>(labels.get(attribute))));
+        }
+        return new Totals(toResponse(totalItems, counts, labelCopy), labelCopy);
+    }
+
+    private static boolean sameFacets(CatalogColumns a, int positionA, CatalogColumns b, int positionB) {
+        for (CatalogIndex.Attribute attribute : CatalogIndex.Attribute.values()) {
+            if (!Objects.equals(a.value(attribute, positionA), b.value(attribute, positionB))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void apply(CatalogColumns columns, int position, int delta) {
+        totalItems += delta;
+        for (CatalogIndex.Attribute attribute : CatalogIndex.Attribute.values()) {
+            String value = columns.value(attribute, position);
+            if (value == null) {
+                continue;
+            }
+            String key = CatalogIndex.normalize(value);
+            Map<String, Integer> values = counts.get(attribute);
+            int count = values.getOrDefault(key, 0) + delta;
+            if (count > 0) {
+                values.put(key, count);
+                labels.get(attribute).putIfAbsent(key, value);
+            } else {
+                values.remove(key);
+                labels.get(attribute).remove(key);
+            }
+        }
+    }
+
+    // Order every facet by count (highest first), then by label; keys are relabelled when labels are given
+    private static FacetsResponse toResponse(int total, Map<CatalogIndex.Attribute, Map<String, Integer>> source,
+                                             Map<CatalogIndex.Attribute, Map<String, String>> labels) {
+        Map<CatalogIndex.Attribute, Map<String, Integer>> ordered = new EnumMap<>(CatalogIndex.Attribute.class);
+        for (CatalogIndex.Attribute attribute : CatalogIndex.Attribute.values()) {
+            List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : source.get(attribute).entrySet()) {
+                String label = labels != null ? labels.get(attribute).getOrDefault(entry.getKey(), entry.getKey()) : entry.getKey();
+                entries.add(Map.entry(label, entry.getValue()));
+            }
+            entries.sort((a, b) -> a.getValue().equals(b.getValue())
+                    ? a.getKey().compareTo(b.getKey())
+                    : Integer.compare(b.getValue(), a.getValue()));
+
+            Map<String, Integer> values = new LinkedHashMap<>();
+            for (Map.Entry<String, Integer> entry : entries) {
+                values.put(entry.getKey(), entry.getValue());
+            }
+            ordered.put(attribute, Collections.unmodifiableMap(values));
+        }
+        return new FacetsResponse(total,
+                ordered.get(CatalogIndex.Attribute.CATEGORY),
+                ordered.get(CatalogIndex.Attribute.CITY),
+                ordered.get(CatalogIndex.Attribute.CONDITION));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.Map;
+
+/**
+ * Facets Response Model - Item counts per category, city and condition
+ *
+ * Returned by GET /items/facets so the UI can show how many items each filter
+ * value would return without paging through /items
+ *
+ * JSON Format:
+ * {"totalItems": 42,
+ *  "category": {"Sports": 20, "Camping": 22},
+ *  "city": {"London": 30, "Nottingham": 12},
+ *  "condition": {"Excellent": 25, "Good": 17}}
+ *
+ * Each map is ordered by count (highest first), then by value
+ * Values with no matching items are left out
+ *
+ * @author N1237155
+ */
+public class FacetsResponse {
+
+    private int totalItems;
+    private Map<String, Integer> category;
+    private Map<String, Integer> city;
+    private Map<String, Integer> condition;
+
+    // Empty constructor for Jackson
+    public FacetsResponse() {
+    }
+
+    public FacetsResponse(int totalItems, Map<String, Integer> category,
+                          Map<String, Integer> city, Map<String, Integer> condition) {
+        this.totalItems = totalItems;
+        this.category = category;
+        this.city = city;
+        this.condition = condition;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public void setTotalItems(int totalItems) {
+        this.totalItems = totalItems;
+    }
+
+    public Map<String, Integer> getCategory() {
+        return category;
+    }
+
+    public void setCategory(Map<String, Integer> category) {
+        this.category = category;
+    }
+
+    public Map<String, Integer> getCity() {
+        return city;
+    }
+
+    public void setCity(Map<String, Integer> city) {
+        this.city = city;
+    }
+
+    public Map<String, Integer> getCondition() {
+        return condition;
+    }
+
+    public void setCondition(Map<String, Integer> condition) {
+        this.condition = condition;
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+/**
+ * Geo Kernels - Batch distance and bounding-box loops over coordinate arrays
+ *
+ * Used where one location is compared with many items at once (distance ranking,
+ * nearby results, the bbox filter) instead of converting coordinates item by item
+ *
+ * How it works:
+ * - Every loop reads contiguous double[] columns and writes a primitive array,
+ *   with no objects, calls or branches in the loop body
+ * - chordSquared() and boxMask() are plain arithmetic and comparisons, which the
+ *   JIT compiles to SIMD instructions (SSE/AVX/NEON) on its own - no incubator
+ *   module or extra JVM flags are needed
+ * - Trigonometry is kept out of the hot loops: the user's location is converted
+ *   once, items are compared as unit vectors (see SpatialIndex), and asin is only
+ *   applied to the distances that are actually reported
+ *
+ * @author N1237155
+ */
+public final class GeoKernels {
+
+    private GeoKernels() {
+    }
+
+    /**
+     * Unit-sphere vector of a location
+     *
+     * @return {x, y, z}
+     */
+    public static double[] unitVector(double lat, double lon) {
+        double latRad = Math.toRadians(lat);
+        double lonRad = Math.toRadians(lon);
+        double cosLat = Math.cos(latRad);
+        return new double[] { cosLat * Math.cos(lonRad), cosLat * Math.sin(lonRad), Math.sin(latRad) };
+    }
+
+    /**
+     * Convert locations to unit-sphere vectors
+     *
+     * @param lats Latitudes in degrees
+     * @param lons Longitudes in degrees
+     * @param count Number of locations to convert
+     * @param xs Output x coordinates
+     * @param ys Output y coordinates
+     * @param zs Output z coordinates
+     */
+    public static void unitVectors(double[] lats, double[] lons, int count, double[] xs, double[] ys, double[] zs) {
+        for (int i = 0; i < count; i++) {
+            double latRad = Math.toRadians(lats[i]);
+            double lonRad = Math.toRadians(lons[i]);
+            double cosLat = Math.cos(latRad);
+            xs[i] = cosLat * Math.cos(lonRad);
+            ys[i] = cosLat * Math.sin(lonRad);
+            zs[i] = Math.sin(latRad);
+        }
+    }
+
+    /**
+     * Squared chord length from one unit vector to many (vectorizable)
+     *
+     * Grows with great-circle distance, so it can be compared or ranked directly
+     *
+     * @param count Number of vectors to compare
+     * @param out Output squared chord lengths
+     */
+    public static void chordSquared(double qx, double qy, double qz,
+                                    double[] xs, double[] ys, double[] zs, int count, double[] out) {
+        for (int i = 0; i < count; i++) {
+            double dx = xs[i] - qx;
+            double dy = ys[i] - qy;
+            double dz = zs[i] - qz;
+            out[i] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    /**
+     * Convert squared chord lengths to great-circle distances, in place
+     *
+     * @param values Squared chord lengths on input, kilometres on output
+     * @param count Number of values to convert
+     */
+    public static void chordSquaredToKm(double[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            values[i] = chordToKm(values[i]);
+        }
+    }
+
+    public static double chordToKm(double chordSquared) {
+        return 2 * SpatialIndex.EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(chordSquared) / 2));
+    }
+
+    // Squared chord length on the unit sphere for a great-circle distance
+    public static double kmToChordSquared(double km) {
+        double chord = 2 * Math.sin(km / (2 * SpatialIndex.EARTH_RADIUS_KM));
+        return chord * chord;
+    }
+
+    /**
+     * Great-circle distances from one location to many (haversine formula)
+     *
+     * For raw latitude/longitude columns; precomputed unit vectors should use
+     * chordSquared() instead, which needs no trigonometry per point
+     *
+     * @param lat Origin latitude
+     * @param lon Origin longitude
+     * @param lats Latitudes in degrees
+     * @param lons Longitudes in degrees
+     * @param count Number of points
+     * @param out Output distances in kilometres
+     */
+    public static void haversineKm(double lat, double lon, double[] lats, double[] lons, int count, double[] out) {
+        double latRad = Math.toRadians(lat);
+        double cosLat = Math.cos(latRad);
+        for (int i = 0; i < count; i++) {
+            double pointLat = Math.toRadians(lats[i]);
+            double sinLat = Math.sin((pointLat - latRad) / 2);
+            double sinLon = Math.sin(Math.toRadians(lons[i] - lon) / 2);
+            double h = sinLat * sinLat + cosLat * Math.cos(pointLat) * sinLon * sinLon;
+            out[i] = 2 * SpatialIndex.EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(h)));
+        }
+    }
+
+    /**
+     * Mark the points inside a latitude/longitude box
+     *
+     * Bounds are inclusive. When minLon is greater than maxLon the box crosses the
+     * date line (e.g. 170 to -170)
+     *
+     * @param lats Latitudes in degrees
+     * @param lons Longitudes in degrees
+     * @param count Number of points
+     * @param mask Output bits, one per point (at least (count + 63) / 64 words, overwritten)
+     * @return Number of points inside the box
+     */
+    public static int boxMask(double minLat, double maxLat, double minLon, double maxLon,
+                              double[] lats, double[] lons, int count, long[] mask) {
+        boolean wraps = minLon > maxLon;
+        int inside = 0;
+        for (int word = 0; word << 6 < count; word++) {
+            int from = word << 6;
+            int to = Math.min(count, from + 64);
+            long bits = 0;
+            for (int i = from; i < to; i++) {
+                double lat = lats[i];
+                double lon = lons[i];
+                boolean inLon = wraps ? (lon >= minLon | lon <= maxLon) : (lon >= minLon & lon <= maxLon);
+                long hit = (lat >= minLat & lat <= maxLat & inLon) ? 1L : 0L;
+                bits |= hit << (i - from);
+            }
+            mask[word] = bits;
+            inside += Long.bitCount(bits);
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Idempotency Cache - Remembers the responses of recent POST /items/{item_id}/request calls
+ *
+ * Clients that retry a request after a timeout send the same Idempotency-Key
+ * header. A retry that finds its key here gets the original response back
+ * without a database call, so a retry never creates a second request
+ *
+ * How it works:
+ * - Keys are scoped per user: the same key from two users are two entries
+ * - begin() claims a key before the request is processed. A duplicate that
+ *   arrives while the first submission is still running sees the claim and is
+ *   told to retry later instead of writing a second time
+ * - complete() stores the final response; abandon() drops the claim when the
+ *   submission failed on our side (5xx), so the client's retry runs again
+ * - Entries are also persisted as idempotency records in Cosmos DB (see
+ *   CosmosDBConnection.createReservedRequest), which covers retries that reach
+ *   another instance or arrive after a restart
+ *
+ * Limits:
+ * - At most MAX_ENTRIES keys; the oldest completed key is evicted first. Claims
+ *   still in progress are never evicted (a retry would then write a second
+ *   request); when every key is in progress, new claims are refused with
+ *   DependencyBusyException (503 with Retry-After) until one completes
+ * - Keys expire TTL_MS after they were claimed
+ *
+ * Configuration:
+ * - System property cyclenest.idempotency.maxEntries (default 10000)
+ * - System property cyclenest.idempotency.ttlSeconds (default 86400, also the record TTL)
+ *
+ * Metrics: idempotency.replayed (answered from memory), idempotency.recovered
+ * (answered from the persisted record), idempotency.inProgress, idempotency.keyReused,
+ * idempotency.evicted; gauge idempotency.entries
+ *
+ * @author N1237155
+ */
+public final class IdempotencyCache {
+
+    private static final int MAX_ENTRIES = Math.max(1, Integer.getInteger("cyclenest.idempotency.maxEntries", 10000));
+    public static final long TTL_SECONDS = Long.getLong("cyclenest.idempotency.ttlSeconds", 86400L);
+    private static final long TTL_MS = TTL_SECONDS * 1000L;
+
+    public static final LongAdder REPLAYED = ServiceMetrics.counter("idempotency.replayed");
+    public static final LongAdder RECOVERED = ServiceMetrics.counter("idempotency.recovered");
+    public static final LongAdder IN_PROGRESS = ServiceMetrics.counter("idempotency.inProgress");
+    public static final LongAdder KEY_REUSED = ServiceMetrics.counter("idempotency.keyReused");
+    private static final LongAdder EVICTED = ServiceMetrics.counter("idempotency.evicted");
+
+    private static final IdempotencyCache INSTANCE = new IdempotencyCache(MAX_ENTRIES);
+
+    static {
+        ServiceMetrics.gauge("idempotency.entries", () -> INSTANCE.size());
+    }
+
+    private final int maxEntries;
+
+    // Insertion order - entries expire in the order they were claimed
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    // Shared instance via getInstance(); tests use their own bound
+    IdempotencyCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get the shared cache
+     *
+     * @return The single IdempotencyCache instance
+     */
+    public static IdempotencyCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * The response stored for a key (or a claim that has no response yet)
+     */
+    public static final class Entry {
+
+        private final String target;
+        private final long createdAt;
+        private int status;     // 0 while the first submission is still running
+        private Object entity;
+
+        private Entry(String target, long createdAt) {
+            this.target = target;
+            this.createdAt = createdAt;
+        }
+
+        /**
+         * @return What the key was first used for (e.g. the item ID)
+         */
+        public String getTarget() {
+            return target;
+        }
+
+        public boolean isComplete() {
+            return status != 0;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public Object getEntity() {
+            return entity;
+        }
+    }
+
+    private static String scoped(String userId, String key) {
+        return userId + "\n" + key;
+    }
+
+    /**
+     * Claim a key, or find the entry of an earlier submission
+     *
+     * @param userId The user sending the key
+     * @param key Idempotency-Key header value
+     * @param target What this submission is for (e.g. the item ID)
+     * @return null if the key was free and is now claimed by the caller,
+     *         otherwise the existing entry (completed or still running)
+     * @throws DependencyBusyException if the cache is full of claims still in progress
+     */
+    public synchronized Entry begin(String userId, String key, String target) {
+        long now = System.currentTimeMillis();
+        expire(now);
+        String id = scoped(userId, key);
+        Entry existing = entries.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        if (entries.size() >= maxEntries && !evictCompleted(entries.size() - maxEntries + 1)) {
+            throw new DependencyBusyException("idempotency",
+                    "Too many requests with an Idempotency-Key in progress - retry shortly");
+        }
+        entries.put(id, new Entry(target, now));
+        return null;
+    }
+
+    /**
+     * Store the final response of a claimed key
+     *
+     * @param status HTTP status that was returned
+     * @param entity Response body that was returned
+     */
+    public synchronized void complete(String userId, String key, int status, Object entity) {
+        Entry entry = entries.get(scoped(userId, key));
+        if (entry != null) {
+            entry.status = status;
+            entry.entity = entity;
+        }
+    }
+
+    /**
+     * Release a claimed key without a response, so a retry is processed again
+     */
+    public synchronized void abandon(String userId, String key) {
+        Entry entry = entries.get(scoped(userId, key));
+        if (entry != null && !entry.isComplete()) {
+            entries.remove(scoped(userId, key));
+        }
+    }
+
+    // Evict up to count completed keys, oldest first - in-progress claims stay
+    private boolean evictCompleted(int count) {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (count > 0 && eldest.hasNext()) {
+            if (eldest.next().isComplete()) {
+                eldest.remove();
+                EVICTED.increment();
+                count--;
+            }
+        }
+        return count == 0;
+    }
+
+    // Drop expired keys - oldest first, so stop at the first live one
+    private void expire(long now) {
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext() && now - eldest.next().createdAt > TTL_MS) {
+            eldest.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.Arrays;
+
+/**
+ * Item Bitmap - Immutable set of catalog positions
+ *
+ * Used by CatalogIndex to represent "which items have this category/city/condition"
+ * Position i refers to the i-th item of an ItemCatalog snapshot
+ *
+ * Storage (chosen automatically per set, like the containers of a Roaring bitmap):
+ * - Dense: one bit per catalog position in a long[] (universe / 8 bytes)
+ * - Sparse: sorted int[] of positions (4 bytes per member) when that is smaller,
+ *   so rare values (e.g. a city with a handful of items) stay tiny
+ *
+ * Operations:
+ * - and(): intersection of two filters (word-level AND for dense sets)
+ * - cardinality(): O(1), computed once when the set is built
+ * - andCardinality(): size of an intersection without allocating it (facet counts)
+ * - slice(): select a page of positions by rank using word popcounts
+ *
+ * @author N1237155
+ */
+public final class ItemBitmap {
+
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final int universe;
+    private final int cardinality;
+    private final long[] words;    // dense form, or null
+    private final int[] positions; // sparse form, or null
+
+    private ItemBitmap(int universe, int cardinality, long[] words, int[] positions) {
+        this.universe = universe;
+        this.cardinality = cardinality;
+        this.words = words;
+        this.positions = positions;
+    }
+
+    /**
+     * Build a set from sorted positions, picking the smaller representation
+     *
+     * @param sorted Ascending, distinct positions (only the first count entries are used)
+     * @param count Number of positions
+     * @param universe Number of items in the catalog snapshot
+     * @return The set
+     */
+    public static ItemBitmap of(int[] sorted, int count, int universe) {
+        if (isSparse(count, universe)) {
+            return new ItemBitmap(universe, count, null, Arrays.copyOf(sorted, count));
+        }
+        long[] words = new long[wordCount(universe)];
+        for (int i = 0; i < count; i++) {
+            words[sorted[i] >>> 6] |= 1L << sorted[i];
+        }
+        return new ItemBitmap(universe, count, words, null);
+    }
+
+    /**
+     * Build a set from distinct positions in any order (e.g. full-text matches)
+     *
+     * Dense sets just set bits, so only sparse sets pay for sorting
+     *
+     * @param positions Distinct positions (only the first count entries are used)
+     * @param count Number of positions
+     * @param universe Number of items in the catalog snapshot
+     * @return The set
+     */
+    public static ItemBitmap ofUnsorted(int[] positions, int count, int universe) {
+        if (isSparse(count, universe)) {
+            int[] sorted = Arrays.copyOf(positions, count);
+            Arrays.sort(sorted);
+            return new ItemBitmap(universe, count, null, sorted);
+        }
+        return of(positions, count, universe);
+    }
+
+    /**
+     * Build a set from a bit mask (e.g. GeoKernels.boxMask), one bit per position
+     *
+     * @param words Bits of positions 0..universe-1 (taken over, not copied)
+     * @param cardinality Number of set bits
+     * @param universe Number of items in the catalog snapshot
+     * @return The set
+     */
+    public static ItemBitmap ofWords(long[] words, int cardinality, int universe) {
+        if (isSparse(cardinality, universe)) {
+            return new ItemBitmap(universe, cardinality, null, toPositions(words, cardinality));
+        }
+        return new ItemBitmap(universe, cardinality, words, null);
+    }
+
+    /**
+     * Set containing every position (used when no filter is applied)
+     */
+    public static ItemBitmap all(int universe) {
+        long[] words = new long[wordCount(universe)];
+        Arrays.fill(words, -1L);
+        int tail = universe & 63;
+        if (tail != 0) {
+            words[words.length - 1] = (1L << tail) - 1;
+        }
+        return new ItemBitmap(universe, universe, words, null);
+    }
+
+    /**
+     * Empty set (used for filter values that no item has)
+     */
+    public static ItemBitmap empty(int universe) {
+        return new ItemBitmap(universe, 0, null, NO_POSITIONS);
+    }
+
+    // Sparse when 32 bits per member is cheaper than 1 bit per catalog position
+    private static boolean isSparse(int count, int universe) {
+        return (long) count * 32 < universe;
+    }
+
+    private static int wordCount(int universe) {
+        return (universe + 63) >>> 6;
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public int universe() {
+        return universe;
+    }
+
+    /**
+     * Approximate memory held by the set's storage
+     */
+    public long sizeInBytes() {
+        return words != null ? 8L * words.length : 4L * positions.length;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Check whether a catalog position is in the set
+     */
+    public boolean contains(int position) {
+        if (words != null) {
+            return (words[position >>> 6] & (1L << position)) != 0;
+        }
+        return Arrays.binarySearch(positions, position) >= 0;
+    }
+
+    /**
+     * Intersect two sets (multi-filter queries)
+     *
+     * @param other Set built over the same catalog snapshot
+     * @return Positions present in both sets
+     */
+    public ItemBitmap and(ItemBitmap other) {
+        if (cardinality == 0 || other.cardinality == 0) {
+            return empty(universe);
+        }
+
+        // Sparse side drives the intersection - cost is proportional to the smaller set
+        if (positions != null || other.positions != null) {
+            ItemBitmap sparse = positions != null ? this : other;
+            ItemBitmap probe = sparse == this ? other : this;
+            int[] result = new int[Math.min(sparse.cardinality, probe.cardinality)];
+            int count = 0;
+            for (int position : sparse.positions) {
+                if (probe.contains(position)) {
+                    result[count++] = position;
+                }
+            }
+            return new ItemBitmap(universe, count, null, count == result.length ? result : Arrays.copyOf(result, count));
+        }
+
+        long[] result = new long[words.length];
+        int count = 0;
+        for (int i = 0; i < result.length; i++) {
+            result[i] = words[i] & other.words[i];
+            count += Long.bitCount(result[i]);
+        }
+        if (isSparse(count, universe)) {
+            return new ItemBitmap(universe, count, null, toPositions(result, count));
+        }
+        return new ItemBitmap(universe, count, result, null);
+    }
+
+    /**
+     * Size of the intersection of two sets, without building it
+     *
+     * @param other Set built over the same catalog snapshot
+     * @return Number of positions present in both sets
+     */
+    public int andCardinality(ItemBitmap other) {
+        if (cardinality == 0 || other.cardinality == 0) {
+            return 0;
+        }
+        if (positions != null || other.positions != null) {
+            ItemBitmap sparse = positions != null ? this : other;
+            ItemBitmap probe = sparse == this ? other : this;
+            int count = 0;
+            for (int position : sparse.positions) {
+                if (probe.contains(position)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        int count = 0;
+        for (int i = 0; i < words.length; i++) {
+            count += Long.bitCount(words[i] & other.words[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Select up to count positions starting at the given rank (0-based)
+     *
+     * Dense sets skip whole words using popcounts, so reaching a deep page costs
+     * universe / 64 operations instead of visiting every earlier member
+     *
+     * @param fromRank Rank of the first position to return
+     * @param count Maximum number of positions to return
+     * @return Positions in ascending order
+     */
+    public int[] slice(int fromRank, int count) {
+        int size = Math.max(0, Math.min(count, cardinality - fromRank));
+        if (size == 0) {
+            return NO_POSITIONS;
+        }
+        if (positions != null) {
+            return Arrays.copyOfRange(positions, fromRank, fromRank + size);
+        }
+
+        int[] result = new int[size];
+        int remaining = fromRank;
+        int filled = 0;
+        for (int w = 0; w < words.length && filled < size; w++) {
+            long word = words[w];
+            int bits = Long.bitCount(word);
+            if (remaining >= bits) {
+                remaining -= bits;
+                continue;
+            }
+            while (word != 0 && filled < size) {
+                int bit = Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                if (remaining > 0) {
+                    remaining--;
+                } else {
+                    result[filled++] = (w << 6) + bit;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * All positions in ascending order
+     */
+    public int[] toArray() {
+        return slice(0, cardinality);
+    }
+
+    private static int[] toPositions(long[] words, int count) {
+        int[] result = new int[count];
+        int filled = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                result[filled++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-Memory Item Catalog
+ *
+ * Keeps an immutable snapshot of the items container in memory so read endpoints
+ * (GET /items, GET /items/{id}/distance) no longer query Cosmos DB on every request
+ *
+ * Refresh Strategy:
+ * - The first request loads the catalog synchronously
+ * - After REFRESH_INTERVAL_MS, the next request starts a reload on the background
+ *   "catalog-refresh" thread and, like every request until the reload finishes,
+ *   is served the previous snapshot - no request thread waits for the Cosmos DB scan
+ * - A failed refresh keeps the previous snapshot (and retries after the next interval)
+ *
+ * Full-Text Search:
+ * - Each snapshot has its own TextIndex, derived from the previous snapshot's
+ *   with only the items whose name or description changed (unchanged postings
+ *   are shared), so an older snapshot still searches its own version of the text
+ *
+ * Facets:
+ * - FacetCounts is adjusted with the same per-item difference and publishes
+ *   the unfiltered counts with every snapshot
+ *
+ * Versioning:
+ * - A snapshot's version is a fingerprint over all item fields, so it only changes
+ *   when the catalog content actually changes, and the same content has the same
+ *   version after a restart and on every instance
+ * - Used to build ETags, so conditional requests can be answered with 304 without
+ *   touching Cosmos DB or OSRM
+ *
+ * Configuration:
+ * - System property cyclenest.catalog.refreshSeconds (default 30)
+ *
+ * @author N1237155
+ */
+public class ItemCatalog {
+
+    private static final long REFRESH_INTERVAL_MS =
+            Long.getLong("cyclenest.catalog.refreshSeconds", 30L) * 1000L;
+
+    private static final ItemCatalog INSTANCE = new ItemCatalog();
+
+    // Current snapshot - replaced atomically, never modified in place
+    private volatile Snapshot snapshot;
+
+    // First load - a lock rather than synchronized, so virtual threads waiting
+    // for the Cosmos DB query do not pin their carrier threads
+    private final ReentrantLock firstLoad = new ReentrantLock();
+
+    // Ensures only one refresh is started at a time
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    // Runs the refreshes, off the request threads
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "catalog-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Facet counters - adjusted by the same per-item difference on each refresh
+    private final FacetCounts facets = new FacetCounts();
+
+    private ItemCatalog() {
+    }
+
+    /**
+     * Get the shared catalog
+     *
+     * @return The single ItemCatalog instance
+     */
+    public static ItemCatalog getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the current catalog snapshot, loading or refreshing it if needed
+     *
+     * @return The current snapshot
+     * @throws RuntimeException if the catalog has never been loaded and Cosmos DB is unavailable
+     */
+    public Snapshot current() {
+        Snapshot current = snapshot;
+
+        // First load - every caller has to wait for it
+        if (current == null) {
+            firstLoad.lock();
+            try {
+                if (snapshot == null) {
+                    snapshot = load(null);
+                }
+                return snapshot;
+            } finally {
+                firstLoad.unlock();
+            }
+        }
+
+        // Stale - refresh in the background, everyone keeps using the previous snapshot meanwhile
+        if (System.currentTimeMillis() - current.loadedAt > REFRESH_INTERVAL_MS
+                && refreshing.compareAndSet(false, true)) {
+            try {
+                refresher.execute(() -> refresh(current));
+            } catch (RejectedExecutionException e) {
+                refreshing.set(false); // shut down on undeploy
+            }
+        }
+        return snapshot;
+    }
+
+    // Runs on the refresh thread only
+    private void refresh(Snapshot current) {
+        try {
+            snapshot = load(current);
+        } catch (Exception e) {
+            System.err.println("Catalog refresh failed, serving previous snapshot: " + e.getMessage());
+            snapshot = current.touch();
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Force the next access to reload the catalog from Cosmos DB
+     */
+    public void invalidate() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            snapshot = current.expire();
+        }
+    }
+
+    /**
+     * Stop the refresh thread - a refresh in progress is interrupted (called on
+     * undeploy by ServiceLifecycle)
+     */
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    // Read the items container and build a new snapshot
+    private Snapshot load(Snapshot previous) {
+        List<items> loaded = CosmosDBConnection.getInstance().queryAllItems();
+        long fingerprint = fingerprint(loaded);
+
+        // Unchanged content keeps its version so client ETags stay valid
+        if (previous != null && previous.fingerprint == fingerprint) {
+            return previous.touch();
+        }
+
+        // The loaded objects are only needed until they are encoded into columns
+        CatalogColumns columns = new CatalogColumns(loaded);
+        CatalogColumns previousColumns = previous == null ? null : previous.columns;
+        TextIndex text = (previous == null ? new TextIndex() : previous.text).update(previousColumns, columns);
+        FacetCounts.Totals facetTotals = facets.update(previousColumns, columns);
+        System.out.println("Item catalog loaded: " + loaded.size() + " items (version "
+                + Long.toHexString(fingerprint) + ")");
+        return new Snapshot(columns, fingerprint, System.currentTimeMillis(), text, facetTotals);
+    }
+
+    // 64-bit fingerprint over every field a response can expose - only uses hash codes
+    // defined by value (String, Double, Boolean), so it is the same in every JVM
+    private static long fingerprint(List<items> loaded) {
+        long hash = 1125899906842597L;
+        for (items item : loaded) {
+            int itemHash = Objects.hash(item.getId(), item.getOwnerId(), item.getName(), item.getCategory(),
+                    item.getCity(), item.getLatitude(), item.getLongitude(), item.getDailyRate(),
+                    item.isAvailable(), item.getCondition(), item.getDescription());
+            hash = 31 * hash + itemHash;
+        }
+        return 31 * hash + loaded.size();
+    }
+
+    /**
+     * Snapshot - Immutable view of the catalog at one version
+     *
+     * Items are held in CatalogColumns in the order returned by Cosmos DB, which
+     * is the order /items has always paginated in. A position in the columns is
+     * the item's position in the snapshot's CatalogIndex bitmaps, SpatialIndex and
+     * RateIndex. items objects are materialized only for the positions a response
+     * returns (itemAt / getById)
+     */
+    public static final class Snapshot {
+
+        private final CatalogColumns columns;
+        private final CatalogIndex index;
+        private final SpatialIndex spatial;
+        private final RateIndex rates;
+        private final TextIndex text;
+        private final int[] docPositions; // text index document -> position in items
+        private final FacetCounts.Totals facets;
+        private final long fingerprint;
+        private final long loadedAt;
+
+        private Snapshot(CatalogColumns columns, long fingerprint, long loadedAt,
+                         TextIndex text, FacetCounts.Totals facets) {
+            this.columns = columns;
+            this.fingerprint = fingerprint;
+            this.loadedAt = loadedAt;
+            this.index = new CatalogIndex(columns);
+            this.spatial = new SpatialIndex(columns);
+            this.rates = new RateIndex(columns);
+            this.text = text;
+            this.docPositions = text.positionsOf(columns);
+            this.facets = facets;
+        }
+
+        // Same content, but a failed/unchanged refresh resets the refresh timer
+        private Snapshot(Snapshot source, long loadedAt) {
+            this.columns = source.columns;
+            this.index = source.index;
+            this.spatial = source.spatial;
+            this.rates = source.rates;
+            this.text = source.text;
+            this.docPositions = source.docPositions;
+            this.facets = source.facets;
+            this.fingerprint = source.fingerprint;
+            this.loadedAt = loadedAt;
+        }
+
+        private Snapshot touch() {
+            return new Snapshot(this, System.currentTimeMillis());
+        }
+
+        private Snapshot expire() {
+            return new Snapshot(this, 0L);
+        }
+
+        /**
+         * Number of items in the snapshot
+         */
+        public int size() {
+            return columns.size();
+        }
+
+        /**
+         * Materialize the item at a catalog position
+         */
+        public items itemAt(int position) {
+            return columns.itemAt(position);
+        }
+
+        /**
+         * Materialize an item by ID
+         *
+         * @return The item, or null if it is not in this snapshot
+         */
+        public items getById(String itemId) {
+            int position = columns.positionOf(itemId);
+            return position < 0 ? null : columns.itemAt(position);
+        }
+
+        public CatalogColumns getColumns() {
+            return columns;
+        }
+
+        public CatalogIndex getIndex() {
+            return index;
+        }
+
+        public SpatialIndex getSpatialIndex() {
+            return spatial;
+        }
+
+        public RateIndex getRateIndex() {
+            return rates;
+        }
+
+        /**
+         * Full-text search over item name and description
+         *
+         * Uses this snapshot's own TextIndex, so the results never change while
+         * the snapshot is in use; matches are reported as positions in this snapshot
+         *
+         * @param query Free text (every word must match)
+         * @return Matching positions with relevance scores
+         */
+        public TextIndex.Result search(String query) {
+            return text.search(query, docPositions);
+        }
+
+        /**
+         * Autocomplete the last word of a prefix
+         */
+        public List<Suggestion> suggest(String prefix, int limit) {
+            return text.suggest(prefix, limit);
+        }
+
+        public FacetCounts.Totals getFacets() {
+            return facets;
+        }
+
+        /**
+         * Catalog version - the content fingerprint, identical across restarts and
+         * instances for identical content
+         */
+        public long getVersion() {
+            return fingerprint;
+        }
+    }
+}
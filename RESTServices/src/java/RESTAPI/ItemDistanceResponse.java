@@ -18,11 +18,16 @@ package RESTAPI;
  * Data Sources:
  * - Item fields (id, name, category, etc.): From Cosmos DB items container
  * - Distance fields (distanceKm, durationMinutes): Calculated via OSRM API
- * - Status field: Indicates routing calculation success/failure
+ * - Status field: Indicates routing calculation success/failure, or "straight_line"
+ *   when distanceKm is a great-circle distance (durationMinutes is then 0)
+ * - "estimated" / "pending": route failed / not ready by the deadline - distanceKm
+ *   is then the straight-line distance (see DistanceRanking.routeWithin)
  * 
  * Used By:
  * - GET /items/{id}/distance - Single item with distance
  * - GET /items?userLat=X&userLon=Y - Multiple items with distances (paginated)
+ * - GET /items?userLat=X&userLon=Y&sort=distance - Same, nearest first
+ * - GET /items/nearby - Nearest items with straight-line distances
  * 
  * Design Pattern:
  * - Follows Data Transfer Object (DTO) pattern
@@ -64,6 +69,28 @@ public class ItemDistanceResponse {
         this.status = status;
     }
 
+    /**
+     * Combine an item with its calculated route
+     *
+     * @param item The item from the catalog
+     * @param route The OSRM route (or straight-line estimate) from the user to the item
+     * @return Response carrying the route's status (e.g. "success")
+     */
+    public static ItemDistanceResponse of(items item, RouteResponse route) {
+        return new ItemDistanceResponse(
+                item.getId(),
+                item.getName(),
+                item.getCategory(),
+                item.getDailyRate(),
+                item.getCity(),
+                item.getCondition(),
+                item.getDescription(),
+                route.getDistanceKm(),
+                route.getDurationMinutes(),
+                route.getStatus()
+        );
+    }
+
     // Getters and Setters
     public String getItemId() {
         return itemId;
@@ -0,0 +1,209 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared Jackson Serialization Registry
+ *
+ * Holds the single ObjectMapper used by the service together with pre-built
+ * ObjectReader/ObjectWriter instances for every DTO we send or receive.
+ *
+ * Why Shared:
+ * - Creating a new ObjectMapper per request throws away its serializer caches,
+ *   so every request paid the cost of introspecting our classes again
+ * - ObjectReader and ObjectWriter are immutable and fully thread-safe once built,
+ *   so one instance can be shared by every request thread
+ *
+ * Output Format:
+ * - Compact JSON is the default (smaller payloads, less CPU)
+ * - Pretty printing is opt-in per request (?pretty=true or Accept: application/json;pretty=true)
+ *
+ * Registered Types:
+ * - items, ItemDistanceResponse, RouteResponse, Request, ErrorResponse, Suggestion, FacetsResponse,
+ *   MetricsResponse
+ * - PaginatedResponse (element serializers are resolved from the runtime type)
+ * - OSRMResponse (read only - external API format)
+ *
+ * Binary Formats (content negotiation):
+ * - application/cbor (jackson-dataformat-cbor)
+ * - application/x-jackson-smile (jackson-dataformat-smile)
+ * - Both jars ship in WEB-INF/lib. The factory is still loaded by name, so the
+ *   service starts (JSON only for that format) if a jar is left out of a deployment
+ *
+ * Generators created from these writers never close the target stream,
+ * so JsonStreamingWriter can write into the container's response stream
+ *
+ * @author N1237155
+ */
+public final class JsonMappers {
+
+    // Media types for the optional binary encodings
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+    // The only ObjectMapper in the application - configuration must not change after startup
+    private static final ObjectMapper MAPPER = new ObjectMapper(JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .build());
+
+    // Readers for the payloads we parse
+    public static final ObjectReader OSRM_RESPONSE_READER = MAPPER.readerFor(OSRMResponse.class);
+    public static final ObjectReader OSRM_TABLE_READER = MAPPER.readerFor(OSRMTableResponse.class);
+    public static final ObjectReader ROUTE_RESPONSE_READER = MAPPER.readerFor(RouteResponse.class);
+    public static final ObjectReader ITEM_READER = MAPPER.readerFor(items.class);
+    public static final ObjectReader REQUEST_READER = MAPPER.readerFor(Request.class);
+
+    // Writers keyed by DTO class - compact and pretty variants built up front
+    private static final Map<Class<?>, ObjectWriter> COMPACT_WRITERS = new HashMap<>();
+    private static final Map<Class<?>, ObjectWriter> PRETTY_WRITERS = new HashMap<>();
+    private static final Map<Class<?>, ObjectWriter> NDJSON_WRITERS = new HashMap<>();
+
+    // Binary writers keyed by media type, then DTO class - only present for deployed formats
+    private static final Map<String, Map<Class<?>, ObjectWriter>> BINARY_WRITERS = new HashMap<>();
+
+    static {
+        register(items.class);
+        register(ItemDistanceResponse.class);
+        register(RouteResponse.class);
+        register(Request.class);
+        register(ErrorResponse.class);
+        register(PaginatedResponse.class);
+        register(Suggestion.class);
+        register(FacetsResponse.class);
+        register(MetricsResponse.class);
+        register(RequestListResponse.class);
+
+        registerBinaryFormat(APPLICATION_CBOR, "com.fasterxml.jackson.dataformat.cbor.CBORFactory");
+        registerBinaryFormat(APPLICATION_SMILE, "com.fasterxml.jackson.dataformat.smile.SmileFactory");
+    }
+
+    // Static registry only
+    private JsonMappers() {
+    }
+
+    private static void register(Class<?> type) {
+        ObjectWriter writer = MAPPER.writerFor(type);
+        COMPACT_WRITERS.put(type, writer);
+        PRETTY_WRITERS.put(type, writer.withDefaultPrettyPrinter());
+        // One document per line, flushed by the caller in chunks rather than after every value
+        NDJSON_WRITERS.put(type, writer
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE));
+    }
+
+    /**
+     * Build writers for a binary format if its Jackson dataformat module is on the classpath
+     *
+     * Each format gets its own ObjectMapper (a mapper is bound to one JsonFactory),
+     * created once and shared just like the JSON mapper
+     */
+    private static void registerBinaryFormat(String mediaType, String factoryClassName) {
+        JsonFactory factory;
+        try {
+            factory = (JsonFactory) Class.forName(factoryClassName).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            System.out.println("Binary format " + mediaType + " not available (" + factoryClassName + " not deployed)");
+            return;
+        }
+        factory.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+        ObjectMapper binaryMapper = new ObjectMapper(factory);
+        Map<Class<?>, ObjectWriter> writers = new HashMap<>();
+        for (Class<?> type : COMPACT_WRITERS.keySet()) {
+            writers.put(type, binaryMapper.writerFor(type));
+        }
+        BINARY_WRITERS.put(mediaType, writers);
+    }
+
+    /**
+     * Get the shared writer for a registered DTO type
+     *
+     * Unregistered types fall back to a writer created from the shared mapper,
+     * which still reuses the mapper's serializer cache
+     *
+     * @param type The DTO class being serialized
+     * @param pretty true to indent the output, false for compact JSON
+     * @return Thread-safe ObjectWriter for the type
+     */
+    public static ObjectWriter writerFor(Class<?> type, boolean pretty) {
+        ObjectWriter writer = pretty ? PRETTY_WRITERS.get(type) : COMPACT_WRITERS.get(type);
+        if (writer != null) {
+            return writer;
+        }
+        return pretty ? MAPPER.writerWithDefaultPrettyPrinter() : MAPPER.writer();
+    }
+
+    /**
+     * Get the shared newline-delimited JSON writer for a registered DTO type
+     *
+     * Generators created from this writer put each root value on its own line
+     * and do not flush after every value, so the caller controls chunking
+     *
+     * @param type The DTO class being streamed
+     * @return Thread-safe ObjectWriter for NDJSON output
+     */
+    public static ObjectWriter ndjsonWriterFor(Class<?> type) {
+        ObjectWriter writer = NDJSON_WRITERS.get(type);
+        if (writer != null) {
+            return writer;
+        }
+        return MAPPER.writer()
+                .withRootValueSeparator("\n")
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Get the shared binary writer for a DTO type
+     *
+     * @param mediaType APPLICATION_CBOR or APPLICATION_SMILE (without parameters)
+     * @param type The DTO class being serialized
+     * @return Thread-safe ObjectWriter, or null if the format is not deployed
+     */
+    public static ObjectWriter binaryWriterFor(String mediaType, Class<?> type) {
+        Map<Class<?>, ObjectWriter> writers = BINARY_WRITERS.get(mediaType);
+        return writers != null ? writers.get(type) : null;
+    }
+
+    /**
+     * Check whether a binary format's Jackson module is deployed
+     *
+     * @param mediaType APPLICATION_CBOR or APPLICATION_SMILE (without parameters)
+     * @return true if responses can be written in the format
+     */
+    public static boolean isAvailable(String mediaType) {
+        return BINARY_WRITERS.containsKey(mediaType);
+    }
+
+    /**
+     * Check whether a type has pre-built writers
+     *
+     * @param type The entity class
+     * @return true if the type is one of our registered DTOs
+     */
+    public static boolean isRegistered(Class<?> type) {
+        return COMPACT_WRITERS.containsKey(type);
+    }
+
+    /**
+     * Access the shared mapper for cases not covered by the pre-built readers/writers
+     *
+     * Callers must never reconfigure the returned mapper
+     *
+     * @return The application-wide ObjectMapper
+     */
+    public static ObjectMapper mapper() {
+        return MAPPER;
+    }
+}
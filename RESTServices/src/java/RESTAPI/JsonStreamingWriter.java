@@ -0,0 +1,123 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Streaming JSON Message Body Writer
+ *
+ * JAX-RS provider that serializes our typed response entities directly to the
+ * HTTP response OutputStream through a Jackson JsonGenerator
+ *
+ * Supported Encodings (chosen from the client's Accept header):
+ * - application/json (default)
+ * - application/cbor and application/x-jackson-smile - binary encodings that are
+ *   smaller and faster to parse; if the format's jar is not deployed the entity
+ *   is written as JSON and Content-Type is corrected accordingly (only reached
+ *   when the client also accepts JSON - BinaryFormatFilter answers 406 otherwise)
+ *
+ * Why:
+ * - Resource methods used to build the full JSON as a String, which the
+ *   container then re-encoded into bytes - two full copies per response
+ * - Writing through a JsonGenerator streams UTF-8 bytes straight to the socket buffer
+ *
+ * Handled Types:
+ * - Every DTO registered in JsonMappers (items, ItemDistanceResponse, RouteResponse,
+ *   Request, ErrorResponse, PaginatedResponse)
+ * - Plain Strings and other types are left to the container's default providers
+ *
+ * Pretty printing follows the same opt-in rules as before:
+ * ?pretty=true or Accept: application/json;pretty=true
+ *
+ * Registered in ApplicationConfig
+ *
+ * @author N1237155
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, JsonMappers.APPLICATION_CBOR, JsonMappers.APPLICATION_SMILE})
+public class JsonStreamingWriter implements MessageBodyWriter<Object> {
+
+    // Injected per request by the JAX-RS runtime (thread-local proxies)
+    @Context
+    private UriInfo uriInfo;
+
+    @Context
+    private HttpHeaders headers;
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return JsonMappers.isRegistered(type);
+    }
+
+    // Length is unknown until the entity has been streamed
+    @Override
+    public long getSize(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations,
+                        MediaType mediaType, MultivaluedMap<String, Object> httpHeaders,
+                        OutputStream entityStream) throws IOException, WebApplicationException {
+
+        // Binary encodings when negotiated and deployed
+        String format = mediaType.getType() + "/" + mediaType.getSubtype();
+        if (!MediaType.APPLICATION_JSON.equals(format)) {
+            ObjectWriter binaryWriter = JsonMappers.binaryWriterFor(format, type);
+            if (binaryWriter != null) {
+                try (JsonGenerator generator = binaryWriter.createGenerator(entityStream)) {
+                    binaryWriter.writeValue(generator, entity);
+                }
+                return;
+            }
+            // Format library not deployed - fall back to JSON so the client still gets a usable body
+            httpHeaders.putSingle(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_TYPE);
+        }
+
+        boolean pretty = isPrettyRequested(mediaType);
+
+        ObjectWriter writer = JsonMappers.writerFor(type, pretty);
+
+        // The generator does not close the container's stream (AUTO_CLOSE_TARGET is disabled)
+        try (JsonGenerator generator = writer.createGenerator(entityStream)) {
+            writer.writeValue(generator, entity);
+        }
+    }
+
+    /**
+     * Pretty printing is opt-in through a query parameter or an Accept parameter
+     */
+    private boolean isPrettyRequested(MediaType mediaType) {
+        if (mediaType != null && "true".equalsIgnoreCase(mediaType.getParameters().get("pretty"))) {
+            return true;
+        }
+        if (uriInfo != null && "true".equalsIgnoreCase(uriInfo.getQueryParameters().getFirst("pretty"))) {
+            return true;
+        }
+        if (headers != null) {
+            for (MediaType accepted : headers.getAcceptableMediaTypes()) {
+                if ("true".equalsIgnoreCase(accepted.getParameters().get("pretty"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.Map;
+
+/**
+ * Metrics Response Model - Current counters and gauges of the service
+ *
+ * Returned by GET /metrics (see ServiceMetrics)
+ *
+ * JSON Format:
+ * {"counters": {"paging.sessions.hits": 120, "paging.sessions.misses": 8},
+ *  "gauges": {"paging.sessions.active": 14.0, "paging.sessions.hitRate": 0.9375}}
+ *
+ * Counters only ever grow (since startup); gauges are read when the response is built
+ *
+ * @author N1237155
+ */
+public class MetricsResponse {
+
+    private Map<String, Long> counters;
+    private Map<String, Double> gauges;
+
+    // Empty constructor for Jackson
+    public MetricsResponse() {
+    }
+
+    public MetricsResponse(Map<String, Long> counters, Map<String, Double> gauges) {
+        this.counters = counters;
+        this.gauges = gauges;
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public void setCounters(Map<String, Long> counters) {
+        this.counters = counters;
+    }
+
+    public Map<String, Double> getGauges() {
+        return gauges;
+    }
+
+    public void setGauges(Map<String, Double> gauges) {
+        this.gauges = gauges;
+    }
+}
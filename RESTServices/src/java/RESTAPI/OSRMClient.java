@@ -0,0 +1,419 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * OSRM Routing Client
+ *
+ * Handles all communication with the external OSRM routing API:
+ * 1. Builds the OSRM route URL from a pair of coordinates
+ * 2. Sends the HTTP request through the shared HttpClient
+ * 3. Parses the JSON response straight from the response stream
+ * 4. Converts distance (m to km) and duration (s to min)
+ *
+ * Single routes can be requested synchronously (route) or concurrently
+ * (routeAsync); both share a RouteCache of recent results
+ *
+ * Failures are reported as OSRMException carrying an error code and the
+ * HTTP status the resource layer should return
+ *
+ * Every OSRM call runs on the DependencyExecutor.OSRM pool (prefetching uses its
+ * own threads, see RoutePrefetcher). When that pool is full, calls fail at once
+ * with ROUTING_BUSY (503) instead of tying up request threads
+ *
+ * OSRM API documentation: https://project-osrm.org/docs/v5.24.0/api/
+ *
+ * @author N1237155
+ */
+public class OSRMClient {
+
+    // Timeout duration for OSRM API requests (30 seconds)
+    public static final int TIMEOUT_SECONDS = 30;
+
+    private static final String ROUTE_URL = "http://router.project-osrm.org/route/v1/driving/";
+    private static final String TABLE_URL = "http://router.project-osrm.org/table/v1/driving/";
+
+    // The public OSRM server rejects table requests with more than 100 coordinates
+    public static final int MAX_TABLE_DESTINATIONS = 99;
+
+    // Shared HttpClient instance for all OSRM API Calls
+    // Creating a new client for every request causes resources exhaustion under load
+    // This singilton client enables connection pooling and efficient resourse usage
+    private static final HttpClient SHARED_HTTP_CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+            .build();
+
+    private static final OSRMClient INSTANCE = new OSRMClient();
+
+    // Recently computed routes (see RouteCache)
+    private final RouteCache cache = new RouteCache();
+
+    private OSRMClient() {
+    }
+
+    /**
+     * Get the shared OSRM client
+     *
+     * @return The single OSRMClient instance
+     */
+    public static OSRMClient getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Calculate driving distance and duration between two points
+     *
+     * Answered from the RouteCache when the same coordinates were routed recently
+     *
+     * @param startLon Starting point longitude
+     * @param startLat Starting point latitude
+     * @param endLon Ending point longitude
+     * @param endLat Ending point latitude
+     * @return RouteResponse with distance in km and duration in minutes
+     * @throws OSRMException if OSRM is unreachable, times out or finds no route
+     */
+    public RouteResponse route(double startLon, double startLat, double endLon, double endLat)
+            throws OSRMException {
+        String key = RouteCache.key(startLon, startLat, endLon, endLat);
+        RouteResponse cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        RouteResponse route = onRoutingPool(() -> fetchRoute(key));
+        cache.put(key, route);
+        return route;
+    }
+
+    /**
+     * Same as route(), but when batching is enabled the OSRM call is shared with
+     * other lookups arriving within a few milliseconds (see RouteBatcher)
+     *
+     * @return RouteResponse with distance in km and duration in minutes
+     * @throws OSRMException if OSRM is unreachable, times out or finds no route
+     */
+    public RouteResponse routeBatched(double startLon, double startLat, double endLon, double endLat)
+            throws OSRMException {
+        if (!RouteBatcher.ENABLED) {
+            return route(startLon, startLat, endLon, endLat);
+        }
+        String key = RouteCache.key(startLon, startLat, endLon, endLat);
+        RouteResponse cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        RouteResponse route = RouteBatcher.getInstance().route(startLon, startLat, endLon, endLat);
+        cache.put(key, route);
+        return route;
+    }
+
+    /**
+     * Release the shared HttpClient's connections (called on undeploy by ServiceLifecycle)
+     *
+     * HttpClient can only be closed on JDK 21+; on older JDKs its threads are
+     * daemon threads that end with the JVM
+     */
+    public static void shutdown() {
+        Object client = SHARED_HTTP_CLIENT;
+        if (client instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) client).close();
+            } catch (Exception e) {
+                System.err.println("Failed to close OSRM HttpClient: " + e.getMessage());
+            }
+        }
+    }
+
+    // Run a blocking OSRM call on the OSRM pool - a full pool or a call past the pool's timeout is reported like any other OSRM failure
+    private static <T> T onRoutingPool(DependencyExecutor.Call<T, OSRMException> call) throws OSRMException {
+        try {
+            return DependencyExecutor.OSRM.call(call);
+        } catch (DependencyBusyException e) {
+            throw routingBusy(e);
+        }
+    }
+
+    static OSRMException routingBusy(DependencyBusyException e) {
+        if (e instanceof DependencyTimeoutException) {
+            return new OSRMException("TIMEOUT", 504, e.getMessage());
+        }
+        return new OSRMException("ROUTING_BUSY", 503, e.getMessage());
+    }
+
+    /**
+     * Fetch a route into the cache ahead of need (see RoutePrefetcher)
+     *
+     * @return true if OSRM was called, false if the route was already cached
+     * @throws OSRMException if OSRM is unreachable, times out or finds no route
+     */
+    public boolean prefetch(double startLon, double startLat, double endLon, double endLat) throws OSRMException {
+        String key = RouteCache.key(startLon, startLat, endLon, endLat);
+        if (cache.contains(key)) {
+            return false;
+        }
+        cache.putPrefetched(key, fetchRoute(key));
+        return true;
+    }
+
+    // Blocking OSRM route call for a RouteCache key (not cached here)
+    private static RouteResponse fetchRoute(String key) throws OSRMException {
+        try {
+            // Read the body as a stream so Jackson parses it without an intermediate String
+            HttpResponse<InputStream> response = SHARED_HTTP_CLIENT.send(routeRequest(key), HttpResponse.BodyHandlers.ofInputStream());
+            return parseRoute(response);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OSRMException("INTERRUPTED", 503,
+                    "Request was interrupted. Please try again.");
+        } catch (IOException e) {
+            throw toOSRMException(e);
+        }
+    }
+
+    /**
+     * Asynchronous version of route() - lets callers route many items concurrently
+     *
+     * The request runs on the OSRM pool (DependencyExecutor.OSRM), so the caller
+     * can start many routes before waiting. Cached routes complete immediately
+     *
+     * @return Future completing with the route, or exceptionally with an OSRMException
+     */
+    public CompletableFuture<RouteResponse> routeAsync(double startLon, double startLat, double endLon, double endLat) {
+        String key = RouteCache.key(startLon, startLat, endLon, endLat);
+        RouteResponse cached = cache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        try {
+            return DependencyExecutor.OSRM.submit(() -> {
+                RouteResponse route = fetchRoute(key);
+                cache.put(key, route);
+                return route;
+            });
+        } catch (DependencyBusyException e) {
+            return CompletableFuture.failedFuture(new CompletionException(routingBusy(e)));
+        }
+    }
+
+    // Build the OSRM route URL from a RouteCache key ("lon,lat;lon,lat")
+    private static HttpRequest routeRequest(String coordinates) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(ROUTE_URL + coordinates + "?overview=false"))
+                .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                .GET()
+                .build();
+    }
+
+    // Check the status code and parse the first route straight from the response stream
+    private static RouteResponse parseRoute(HttpResponse<InputStream> response) throws OSRMException, IOException {
+        try (InputStream body = response.body()) {
+            // Check HTTP status code
+            if (response.statusCode() != 200) {
+                throw new OSRMException("OSRM_ERROR", 502,
+                        "OSRM API returned status code: " + response.statusCode());
+            }
+
+            OSRMResponse osrmResponse = JsonMappers.OSRM_RESPONSE_READER.readValue(body);
+            return toRouteResponse(osrmResponse);
+        }
+    }
+
+    // Map transport and parsing failures to the error codes clients already know
+    private static OSRMException toOSRMException(IOException e) {
+        if (e instanceof HttpTimeoutException) {
+            return new OSRMException("TIMEOUT", 504,
+                    "Request to OSRM API timed out after " + TIMEOUT_SECONDS + " seconds. Please try again.");
+        }
+        if (e instanceof JsonProcessingException) {
+            // OSRM returned something that is not the expected JSON document
+            return new OSRMException("INVALID_RESPONSE", 502,
+                    "Failed to parse response from OSRM API: " + ((JsonProcessingException) e).getOriginalMessage());
+        }
+        return new OSRMException("NETWORK_ERROR", 502,
+                "Network error while contacting OSRM API: " + e.getMessage());
+    }
+
+    /**
+     * Calculate distances from one origin to many destinations in a single OSRM call
+     *
+     * Uses the OSRM table service with the origin as the only source, so one HTTP
+     * request replaces up to MAX_TABLE_DESTINATIONS individual route requests
+     *
+     * @param originLon Origin longitude (e.g. the user's location)
+     * @param originLat Origin latitude
+     * @param destLons Destination longitudes
+     * @param destLats Destination latitudes
+     * @param count Number of destinations to use from the arrays
+     * @return One RouteResponse per destination, or null where OSRM found no route
+     * @throws OSRMException if OSRM is unreachable, times out or rejects the request
+     */
+    public RouteResponse[] table(double originLon, double originLat,
+                                 double[] destLons, double[] destLats, int count) throws OSRMException {
+        if (count > MAX_TABLE_DESTINATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_TABLE_DESTINATIONS + " destinations per table call");
+        }
+
+        StringBuilder url = new StringBuilder(TABLE_URL.length() + 24 * (count + 1));
+        url.append(TABLE_URL).append(coordinate(originLon)).append(',').append(coordinate(originLat));
+        for (int i = 0; i < count; i++) {
+            url.append(';').append(coordinate(destLons[i])).append(',').append(coordinate(destLats[i]));
+        }
+        url.append("?sources=0&annotations=distance,duration");
+
+        HttpRequest request = tableRequest(url);
+        // Column 0 is the origin itself - destinations start at column 1
+        return onRoutingPool(() -> sendTable(request, 1, 1, count)[0]);
+    }
+
+    /**
+     * Calculate the distances between several sources and several destinations in
+     * one blocking OSRM call (used by RouteBatcher, which runs it on the OSRM pool)
+     *
+     * @param sourceLons Source longitudes
+     * @param sourceLats Source latitudes
+     * @param sources Number of sources to use from the arrays
+     * @param destLons Destination longitudes
+     * @param destLats Destination latitudes
+     * @param destinations Number of destinations to use from the arrays
+     * @return routes[source][destination], null where OSRM found no route
+     * @throws OSRMException if OSRM is unreachable, times out or rejects the request
+     */
+    static RouteResponse[][] fetchTable(double[] sourceLons, double[] sourceLats, int sources,
+                                        double[] destLons, double[] destLats, int destinations) throws OSRMException {
+        if (sources + destinations > MAX_TABLE_DESTINATIONS + 1) {
+            throw new IllegalArgumentException("At most " + (MAX_TABLE_DESTINATIONS + 1) + " coordinates per table call");
+        }
+
+        StringBuilder url = new StringBuilder(TABLE_URL.length() + 30 * (sources + destinations));
+        url.append(TABLE_URL);
+        for (int i = 0; i < sources; i++) {
+            url.append(coordinate(sourceLons[i])).append(',').append(coordinate(sourceLats[i])).append(';');
+        }
+        for (int i = 0; i < destinations; i++) {
+            url.append(coordinate(destLons[i])).append(',').append(coordinate(destLats[i])).append(';');
+        }
+        url.setLength(url.length() - 1);
+
+        // Sources are coordinates 0..sources-1, destinations follow them
+        url.append("?sources=");
+        for (int i = 0; i < sources; i++) {
+            url.append(i).append(';');
+        }
+        url.setLength(url.length() - 1);
+        url.append("&destinations=");
+        for (int i = 0; i < destinations; i++) {
+            url.append(sources + i).append(';');
+        }
+        url.setLength(url.length() - 1);
+        url.append("&annotations=distance,duration");
+
+        return sendTable(tableRequest(url), sources, 0, destinations);
+    }
+
+    private static HttpRequest tableRequest(CharSequence url) {
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url.toString()))
+                .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                .GET()
+                .build();
+    }
+
+    // Blocking OSRM table call - parses rows 0..rows-1, columns firstColumn..firstColumn+count-1
+    private static RouteResponse[][] sendTable(HttpRequest request, int rows, int firstColumn, int count)
+            throws OSRMException {
+        try {
+            HttpResponse<InputStream> response = SHARED_HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream());
+
+            try (InputStream body = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new OSRMException("OSRM_ERROR", 502,
+                            "OSRM API returned status code: " + response.statusCode());
+                }
+
+                OSRMTableResponse table = JsonMappers.OSRM_TABLE_READER.readValue(body);
+                if (table.getDistances() == null || table.getDistances().size() < rows
+                        || table.getDurations() == null || table.getDurations().size() < rows) {
+                    throw new OSRMException("INVALID_RESPONSE", 502,
+                            "OSRM table response did not contain a distance matrix");
+                }
+
+                RouteResponse[][] routes = new RouteResponse[rows][count];
+                for (int row = 0; row < rows; row++) {
+                    List<Double> distances = table.getDistances().get(row);
+                    List<Double> durations = table.getDurations().get(row);
+                    for (int i = 0; i < count; i++) {
+                        Double meters = distances.get(firstColumn + i);
+                        Double seconds = durations.get(firstColumn + i);
+                        if (meters != null && seconds != null) {
+                            routes[row][i] = new RouteResponse(meters / 1000.0, seconds / 60.0, "success");
+                        }
+                    }
+                }
+                return routes;
+            }
+
+        } catch (HttpTimeoutException e) {
+            throw new OSRMException("TIMEOUT", 504,
+                    "Request to OSRM API timed out after " + TIMEOUT_SECONDS + " seconds. Please try again.");
+
+        } catch (JsonProcessingException | IndexOutOfBoundsException e) {
+            throw new OSRMException("INVALID_RESPONSE", 502,
+                    "Failed to parse table response from OSRM API: " + e.getMessage());
+
+        } catch (IOException e) {
+            throw new OSRMException("NETWORK_ERROR", 502,
+                    "Network error while contacting OSRM API: " + e.getMessage());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OSRMException("INTERRUPTED", 503,
+                    "Request was interrupted. Please try again.");
+        }
+    }
+
+    /**
+     * Convert OSRM's response into our simplified RouteResponse
+     *
+     * OSRM can return multiple route options, but we just need the first one
+     */
+    private static RouteResponse toRouteResponse(OSRMResponse osrmResponse) throws OSRMException {
+        if (osrmResponse.getRoutes() == null || osrmResponse.getRoutes().isEmpty()) {
+            throw new OSRMException("NO_ROUTE", 404,
+                    "No route found between the specified coordinates");
+        }
+
+        OSRMResponse.RouteInfo firstRoute = osrmResponse.getRoutes().get(0);
+
+        //Convert meters to kilometers(divide by 1000)
+        //Convert seconds to minites(divide by 60)
+        return new RouteResponse(
+                firstRoute.getDistance() / 1000.0,
+                firstRoute.getDuration() / 60.0,
+                "success"
+        );
+    }
+
+    // Format a coordinate for the URL - never in scientific notation (e.g. 1.0E-4)
+    static String coordinate(double value) {
+        return BigDecimal.valueOf(value).toPlainString();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+/**
+ * OSRM Exception - Raised when a route cannot be calculated
+ *
+ * Carries the error code and HTTP status that the resource layer
+ * should send back to the client, so routing failures are no longer
+ * passed around as pre-formatted JSON strings
+ *
+ * Typical Codes:
+ * - OSRM_ERROR / INVALID_RESPONSE / NETWORK_ERROR (502 Bad Gateway)
+ * - TIMEOUT (504 Gateway Timeout)
+ * - NO_ROUTE (404 Not Found)
+ *
+ * @author N1237155
+ */
+public class OSRMException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String errorCode;
+    private final int httpStatus;
+
+    public OSRMException(String errorCode, int httpStatus, String message) {
+        super(message);
+        this.errorCode = errorCode;
+        this.httpStatus = httpStatus;
+    }
+
+    public String getErrorCode() {
+        return errorCode;
+    }
+
+    public int getHttpStatus() {
+        return httpStatus;
+    }
+}
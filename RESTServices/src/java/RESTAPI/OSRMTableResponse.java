@@ -0,0 +1,63 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.util.List;
+
+/**
+ * OSRM Table Response Model - Deserializes JSON from the OSRM table service
+ *
+ * The table service returns a distance/duration matrix between many points in
+ * a single HTTP call, instead of one route request per item
+ *
+ * OSRM Response Structure (one source, three destinations):
+ * {
+ *   "code": "Ok",
+ *   "distances": [[0.0, 5420.3, 812.7, null]],
+ *   "durations": [[0.0, 678.2, 95.1, null]]
+ * }
+ *
+ * Notes:
+ * - Row i is source i, column j is destination j (units: meters, seconds)
+ * - null entries mean OSRM found no route between that pair
+ *
+ * @author N1237155
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class OSRMTableResponse {
+
+    private String code;
+    private List<List<Double>> distances;
+    private List<List<Double>> durations;
+
+    // Empty constructor required by Jackson for deserialization
+    public OSRMTableResponse() {
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    public List<List<Double>> getDistances() {
+        return distances;
+    }
+
+    public void setDistances(List<List<Double>> distances) {
+        this.distances = distances;
+    }
+
+    public List<List<Double>> getDurations() {
+        return durations;
+    }
+
+    public void setDurations(List<List<Double>> durations) {
+        this.durations = durations;
+    }
+}
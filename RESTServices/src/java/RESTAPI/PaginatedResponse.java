@@ -4,6 +4,7 @@
  */
 package RESTAPI;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 
 /**
@@ -28,6 +29,11 @@ import java.util.List;
  * - hasPreviousPage = true if currentPage > 1
  * - These boolean flags help clients build navigation UI
  * 
+ * Snapshot Paging:
+ * - snapshotId identifies the stored result a page was cut from (see PagingSessions)
+ * - Sending it back with the next page keeps every page on the same catalog version
+ * - Left out of the JSON when the endpoint does not use paging sessions
+ * 
  * Used By:
  * - GET /items - Paginated item listing (5 items per page)
  * - Any future endpoints requiring pagination
@@ -50,6 +56,7 @@ public class PaginatedResponse<T> {
     private int totalPages;
     private boolean hasNextPage;
     private boolean hasPreviousPage;
+    private String snapshotId;
     
     public PaginatedResponse(){
     }
@@ -123,6 +130,15 @@ public class PaginatedResponse<T> {
     public void setHasPreviousPage(boolean hasPreviousPage) {
         this.hasPreviousPage = hasPreviousPage;
     }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getSnapshotId() {
+        return snapshotId;
+    }
+
+    public void setSnapshotId(String snapshotId) {
+        this.snapshotId = snapshotId;
+    }
     
     
     
@@ -0,0 +1,282 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Paging Sessions - Snapshot-consistent results for paging through GET /items
+ *
+ * The first page of a query stores its result here and returns the session's
+ * snapshotId. Later pages that send the snapshotId are served from the stored
+ * result, even if the catalog has been refreshed in between, so no item is
+ * shown twice or skipped while a user pages
+ *
+ * A session holds:
+ * - The ItemCatalog snapshot the first page was built from (items are read from it)
+ * - The filter result as an ItemBitmap
+ * - For sort=rate and text searches, the ranked positions of the first
+ *   MAX_RANKED items, so later pages are a plain array slice
+ *
+ * snapshotId:
+ * - Derived from the catalog version and the query (not the page), so clients
+ *   running the same query on the same catalog version share one session
+ * - An unknown or expired snapshotId is not an error: the request is answered
+ *   from the current catalog and a new snapshotId is returned
+ *
+ * Limits:
+ * - At most MAX_SESSIONS sessions and MAX_BYTES of stored results; the least
+ *   recently used session is evicted first
+ * - Sessions expire after IDLE_MS without a request
+ * - A session keeps its catalog snapshot alive, so an old catalog version stays
+ *   in memory until its last session expires. At most MAX_SNAPSHOTS catalog
+ *   versions are pinned; storing a session for another version first evicts the
+ *   least recently used sessions until one version is released
+ *
+ * Concurrency:
+ * - Lookups read a ConcurrentHashMap without locking; only storing a session
+ *   (and the expiry and eviction it triggers) takes the store's lock
+ *
+ * Configuration:
+ * - System property cyclenest.paging.maxSessions (default 1000)
+ * - System property cyclenest.paging.maxBytes (default 64 MB)
+ * - System property cyclenest.paging.idleSeconds (default 300)
+ * - System property cyclenest.paging.maxRanked (default 1000, i.e. 200 pages)
+ * - System property cyclenest.paging.maxSnapshots (default 3)
+ *
+ * Metrics: paging.sessions.hits / misses (requests sending a snapshotId),
+ * paging.sessions.shared (first pages joining an existing session),
+ * paging.sessions.created / evicted / expired, gauges paging.sessions.active,
+ * paging.sessions.bytes, paging.sessions.snapshots and paging.sessions.hitRate
+ *
+ * @author N1237155
+ */
+public final class PagingSessions {
+
+    private static final int MAX_SESSIONS = Math.max(1, Integer.getInteger("cyclenest.paging.maxSessions", 1000));
+    private static final long MAX_BYTES = Long.getLong("cyclenest.paging.maxBytes", 64L * 1024 * 1024);
+    private static final long IDLE_MS = Long.getLong("cyclenest.paging.idleSeconds", 300L) * 1000L;
+    public static final int MAX_RANKED = Integer.getInteger("cyclenest.paging.maxRanked", 1000);
+    private static final int MAX_SNAPSHOTS = Math.max(1, Integer.getInteger("cyclenest.paging.maxSnapshots", 3));
+
+    private static final LongAdder HITS = ServiceMetrics.counter("paging.sessions.hits");
+    private static final LongAdder MISSES = ServiceMetrics.counter("paging.sessions.misses");
+    private static final LongAdder SHARED = ServiceMetrics.counter("paging.sessions.shared");
+    private static final LongAdder CREATED = ServiceMetrics.counter("paging.sessions.created");
+    private static final LongAdder EVICTED = ServiceMetrics.counter("paging.sessions.evicted");
+    private static final LongAdder EXPIRED = ServiceMetrics.counter("paging.sessions.expired");
+
+    private static final PagingSessions INSTANCE = new PagingSessions();
+
+    // Read without locking; changed only while holding the store's lock
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    // Guarded by this: stored bytes and the number of sessions pinning each catalog snapshot
+    private long bytes;
+    private final Map<ItemCatalog.Snapshot, Integer> pinned = new IdentityHashMap<>();
+
+    private PagingSessions() {
+        ServiceMetrics.gauge("paging.sessions.active", () -> size());
+        ServiceMetrics.gauge("paging.sessions.bytes", () -> bytes());
+        ServiceMetrics.gauge("paging.sessions.snapshots", () -> snapshots());
+        ServiceMetrics.gauge("paging.sessions.hitRate", () -> ServiceMetrics.ratio(HITS, MISSES));
+    }
+
+    /**
+     * Get the shared session store
+     *
+     * @return The single PagingSessions instance
+     */
+    public static PagingSessions getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * One stored query result
+     */
+    public static final class Session {
+
+        private final String id;
+        private final String query;
+        private final ItemCatalog.Snapshot catalog;
+        private final ItemBitmap matches;
+        private final int[] ranked;
+        private final long bytes;
+        private volatile long lastUsed;
+
+        /**
+         * @param id snapshotId returned to the client
+         * @param query The query the result belongs to (filters and sort, not the page)
+         * @param catalog Snapshot the result was built from
+         * @param matches Matching positions
+         * @param ranked Positions of the first ranks in result order, or null when
+         *               the order comes from matches or is computed per page
+         */
+        public Session(String id, String query, ItemCatalog.Snapshot catalog, ItemBitmap matches, int[] ranked) {
+            this.id = id;
+            this.query = query;
+            this.catalog = catalog;
+            this.matches = matches;
+            this.ranked = ranked;
+            this.bytes = matches.sizeInBytes() + (ranked != null ? 4L * ranked.length : 0) + 2L * query.length();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public ItemCatalog.Snapshot getCatalog() {
+            return catalog;
+        }
+
+        public ItemBitmap getMatches() {
+            return matches;
+        }
+
+        /**
+         * Positions for a range of ranks, if they were stored
+         *
+         * @return The positions, or null if the range goes past the stored ranks
+         */
+        public int[] ranked(int fromRank, int count) {
+            if (ranked == null) {
+                return null;
+            }
+            int to = Math.min(fromRank + count, matches.cardinality());
+            if (to > ranked.length) {
+                return null;
+            }
+            int[] page = new int[Math.max(0, to - fromRank)];
+            System.arraycopy(ranked, fromRank, page, 0, page.length);
+            return page;
+        }
+    }
+
+    /**
+     * Look up the session of a snapshotId sent by the client
+     *
+     * @param id snapshotId sent by the client
+     * @param query The request's query - a session is only reused for the same query
+     * @return The session, or null if it is unknown, expired or belongs to another query
+     */
+    public Session get(String id, String query) {
+        Session session = find(id, query);
+        (session != null ? HITS : MISSES).increment();
+        return session;
+    }
+
+    /**
+     * Look up a session another request built for the same first page
+     *
+     * Not counted as a hit or miss - most first pages have no session to join
+     *
+     * @param id snapshotId the first page would get
+     * @param query The request's query
+     * @return The session, or null if there is none
+     */
+    public Session join(String id, String query) {
+        Session session = find(id, query);
+        if (session != null) {
+            SHARED.increment();
+        }
+        return session;
+    }
+
+    private Session find(String id, String query) {
+        Session session = sessions.get(id);
+        long now = System.currentTimeMillis();
+        if (session == null || !session.query.equals(query) || now - session.lastUsed > IDLE_MS) {
+            return null; // an idle session is removed by the next put()
+        }
+        session.lastUsed = now;
+        return session;
+    }
+
+    /**
+     * Store a new session (replaces a session with the same id)
+     *
+     * Results larger than a quarter of MAX_BYTES are not stored
+     *
+     * @return true if the session was stored
+     */
+    public synchronized boolean put(Session session) {
+        if (session.bytes > MAX_BYTES / 4) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        expire(now);
+        session.lastUsed = now;
+        Session previous = sessions.get(session.id);
+        if (previous != null) {
+            remove(previous);
+        }
+
+        // Make room: sessions, bytes and pinned catalog versions
+        boolean newSnapshot = !pinned.containsKey(session.catalog);
+        while (sessions.size() >= MAX_SESSIONS || bytes + session.bytes > MAX_BYTES
+                || (newSnapshot && pinned.size() >= MAX_SNAPSHOTS)) {
+            Session eldest = leastRecentlyUsed();
+            if (eldest == null) {
+                break;
+            }
+            remove(eldest);
+            EVICTED.increment();
+            newSnapshot = !pinned.containsKey(session.catalog);
+        }
+
+        sessions.put(session.id, session);
+        bytes += session.bytes;
+        pinned.merge(session.catalog, 1, Integer::sum);
+        CREATED.increment();
+        return true;
+    }
+
+    // Linear scan - only runs when storing a session over a limit, with at most MAX_SESSIONS entries
+    private Session leastRecentlyUsed() {
+        Session eldest = null;
+        for (Session session : sessions.values()) {
+            if (eldest == null || session.lastUsed < eldest.lastUsed) {
+                eldest = session;
+            }
+        }
+        return eldest;
+    }
+
+    private void remove(Session session) {
+        if (!sessions.remove(session.id, session)) {
+            return;
+        }
+        bytes -= session.bytes;
+        pinned.computeIfPresent(session.catalog, (snapshot, count) -> count == 1 ? null : count - 1);
+    }
+
+    // Drop sessions idle for longer than IDLE_MS
+    private void expire(long now) {
+        Iterator<Session> all = sessions.values().iterator();
+        while (all.hasNext()) {
+            Session session = all.next();
+            if (now - session.lastUsed > IDLE_MS) {
+                remove(session);
+                EXPIRED.increment();
+            }
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public synchronized int snapshots() {
+        return pinned.size();
+    }
+
+    public synchronized long bytes() {
+        return bytes;
+    }
+}
@@ -4,13 +4,11 @@
  */
 package RESTAPI;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import java.io.IOException;
-import java.net.http.HttpTimeoutException;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.UriInfo;
-import javax.ws.rs.Consumes;
 import javax.ws.rs.Produces;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
@@ -18,45 +16,98 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.PUT;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.time.Duration;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.Base64;
+import java.nio.charset.StandardCharsets;
+import com.azure.cosmos.CosmosException;
 import javax.ws.rs.POST;
 
 /**
  * CycleNest REST Orchestrator Service
- * 
+ *
  * This service acts as the central orchestrator for the rental platform, handling:
  * - Item search with filtering and pagination
  * - Distance calculations via OSRM API integration
  * - Rental request creation and cancellation
  * - Database interactions with Azure Cosmos DB
- * 
+ *
+ * Responses:
+ * - Every endpoint returns a typed entity (items, RouteResponse, Request, etc.)
+ *   which JsonStreamingWriter streams straight to the HTTP response
+ * - Errors are returned as ErrorResponse with a matching HTTP status code
+ * - JSON by default; CBOR or Smile when the client sends Accept: application/cbor
+ *   or Accept: application/x-jackson-smile
+ *
+ * Conditional GET:
+ * - GET /items and GET /items/{id}/distance read the in-memory ItemCatalog and send a
+ *   strong ETag built from the catalog version, the query and the coordinate bucket
+ * - If-None-Match with the current ETag returns 304 before any Cosmos DB or OSRM work
+ *
  * Base URL: http://localhost:8080/RESTServices/webresources/RESTAPI
- * 
+ *
  * @author N1237155
- * 
+ *
  */
 @Path("RESTAPI")
+@Produces({MediaType.APPLICATION_JSON, JsonMappers.APPLICATION_CBOR, JsonMappers.APPLICATION_SMILE})
 public class RESTServices {
 
     @Context
     private UriInfo context;
+
+    @Context
+    private HttpHeaders headers;
+
+    // Used to evaluate If-None-Match (fully qualified - our Request class is the rental request model)
+    @Context
+    private javax.ws.rs.core.Request httpRequest;
+
+    // Shared OSRM client - owns the pooled HttpClient used for every routing call
+    private final OSRMClient osrm = OSRMClient.getInstance();
+
+    // Background routing of the next distance page (opt-in, see RoutePrefetcher)
+    private final RoutePrefetcher prefetcher = RoutePrefetcher.getInstance();
     
-    // Timeout duration for OSRM API requests (30 seconds)
-    private static final int TIMEOUT_SECONDS = 30;
+    // NDJSON export tuning - items per OSRM table call and items per network flush
+    private static final int EXPORT_DISTANCE_BATCH = 50;
+    private static final int EXPORT_FLUSH_EVERY = 100;
     
-    // Shared HttpClient instance for all OSRM API Calls
-    // Creating a new client for every request causes resources exhaustion under load
-    // This singilton client enables connection pooling and efficient resourse usage
-    private static final HttpClient SHARED_HTTP_CLIENT = HttpClient.newBuilder()
-            .connectTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
-            .build();
+    // Coordinates are rounded to 3 decimal places (~110 m) when building ETags
+    private static final double ETAG_COORDINATE_BUCKET = 1000.0;
+
+    // Clients may cache but must revalidate with If-None-Match every time
+    private static final CacheControl REVALIDATE = CacheControl.valueOf("no-cache");
+
+    // Live values that must never be served from a cache
+    private static final CacheControl NO_STORE = CacheControl.valueOf("no-store");
+
+    // GET /items/nearby result size - default and hard cap for the limit parameter
+    private static final int NEARBY_DEFAULT_LIMIT = 10;
+    private static final int NEARBY_MAX_LIMIT = 100;
+
+    // GET /items/suggest result size cap (matches the completions cached per prefix)
+    private static final int SUGGEST_MAX_LIMIT = 10;
+
+    // Upper bound for GET /items?deadlineMs= (the OSRM pool's timeout - a longer budget could never be used)
+    private static final long DEADLINE_MAX_MS = DependencyExecutor.OSRM.timeoutMillis();
+
+    // GET /users/{user_id}/requests and /items/{item_id}/requests page size - default and hard cap
+    private static final int REQUESTS_DEFAULT_LIMIT = 20;
+    private static final int REQUESTS_MAX_LIMIT = 100;
+
+    // Retry-safe POST /items/{item_id}/request (see IdempotencyCache)
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int IDEMPOTENCY_KEY_MAX_LENGTH = 255;
+
+    // Media type for newline-delimited JSON (one document per line)
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
 
     // Empty constructor required for REST services
     public RESTServices() {
@@ -64,576 +115,1397 @@ public class RESTServices {
 
     /**
      * Endpoint: GET /direct
-     * 
+     *
      * Calculate direct distance between two coordinates using OSRM API
      * Useful for checking distances between any two points
-     * 
+     *
      * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/direct?startLon=-1.15&startLat=52.95&endLon=-0.13&endLat=51.51
-     * 
+     *
      * @param startLon Starting longitude
      * @param startLat Starting latitude
      * @param endLon Ending longitude
      * @param endLat Ending latitude
-     * @return JSON with distance in km and duration in minutes
-     * 
+     * @return RouteResponse with distance in km and duration in minutes
+     *
      * The @GET annotation means this method responds to HTTP GET requests
      * The @Produces annotation tells the client we're sending back JSON data
      */
     @GET
     @Path("/direct")
-    @Produces(MediaType.APPLICATION_JSON)
     // The @QueryParam annotations extract parameters from the URL
-    public String getDirectDistence(@QueryParam("startLon") String startLon,
-                                    @QueryParam("startLat") String startLat,
-                                    @QueryParam("endLon") String endLon,
-                                    @QueryParam("endLat") String endLat) {
-        
+    public Response getDirectDistence(@QueryParam("startLon") String startLon,
+                                      @QueryParam("startLat") String startLat,
+                                      @QueryParam("endLon") String endLon,
+                                      @QueryParam("endLat") String endLat) {
+
         // Validate that all required parameters are provided
         if (startLon == null || startLat == null || endLon == null || endLat == null) {
-            return createErrorResponse("MISSING_PARAMETERS", 
+            return errorResponse(Response.Status.BAD_REQUEST, "MISSING_PARAMETERS",
                 "All parameters are required: startLon, startLat, endLon, endLat");
         }
-        
+
         // Validate coordinate format (basic validation)
+        double fromLon, fromLat, toLon, toLat;
         try {
-            Double.parseDouble(startLon);
-            Double.parseDouble(startLat);
-            Double.parseDouble(endLon);
-            Double.parseDouble(endLat);
+            fromLon = Double.parseDouble(startLon);
+            fromLat = Double.parseDouble(startLat);
+            toLon = Double.parseDouble(endLon);
+            toLat = Double.parseDouble(endLat);
         } catch (NumberFormatException e) {
-            return createErrorResponse("INVALID_COORDINATES","Coordinates must be valid numbers");
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_COORDINATES", "Coordinates must be valid numbers");
         }
-        
+
         //Calculate distance
-        return calculateOSRMDistance(startLon, startLat, endLon, endLat);
+        try {
+            return Response.ok(osrm.route(fromLon, fromLat, toLon, toLat)).build();
+        } catch (OSRMException e) {
+            return errorResponse(e);
+        }
     }
-        
-        /**
-          * Endpoint: GET /items/{item_id}/distance
-          * 
-          * Calculate distance from user location to a specific rental item
-          * Combines item details from database with OSRM distance calculation
-          * 
-          * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/items/i001/distance?userLat=52.95&userLon=-1.15
-          * 
-          * @param itemId The item ID from database (e.g., i001)
-          * @param userLat User's latitude coordinate
-          * @param userLon User's longitude coordinate
-          * @return JSON with item details, distance in km, and duration in minutes
-         */
-        @GET
-        @Path("/items/{item_id}/distance")
-        public String getItemDistance(@PathParam("item_id")String itemId,
-                                        @QueryParam("userLat") String userLat,
-                                        @QueryParam("userLon") String userLon){
-                                    
-            //Validate user coordinates
-            if (userLat == null || userLon == null){
-                return createErrorResponse("MISSING_PARAMETERS", "User coordinates required:userLat, userLon");
-            }
-            
-            try{
-                Double.parseDouble(userLat);
-                Double.parseDouble(userLon);
-            }catch (NumberFormatException e){
-                return createErrorResponse("INVALID_COORDINATES", "User coordinates must be valid numbers");
-            }
-            
-        //Fetch item from database
-        CosmosDBConnection db = null;
-        items item = null;
-        
+
+    /**
+     * Endpoint: GET /items/{item_id}/distance
+     *
+     * Calculate distance from user location to a specific rental item
+     * Combines item details from database with OSRM distance calculation
+     *
+     * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/items/i001/distance?userLat=52.95&userLon=-1.15
+     *
+     * @param itemId The item ID from database (e.g., i001)
+     * @param userLat User's latitude coordinate
+     * @param userLon User's longitude coordinate
+     * @return ItemDistanceResponse with item details, distance in km, and duration in minutes
+     */
+    @GET
+    @Path("/items/{item_id}/distance")
+    public Response getItemDistance(@PathParam("item_id")String itemId,
+                                    @QueryParam("userLat") String userLat,
+                                    @QueryParam("userLon") String userLon){
+
+        //Validate user coordinates
+        if (userLat == null || userLon == null){
+            return errorResponse(Response.Status.BAD_REQUEST, "MISSING_PARAMETERS", "User coordinates required:userLat, userLon");
+        }
+
+        double lat, lon;
+        try{
+            lat = Double.parseDouble(userLat);
+            lon = Double.parseDouble(userLon);
+        }catch (NumberFormatException e){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_COORDINATES", "User coordinates must be valid numbers");
+        }
+
+        //Fetch item from the in-memory catalog
+        ItemCatalog.Snapshot catalog;
         try {
-            db = CosmosDBConnection.getInstance();
-            item = db.getItemById(itemId);
-            
-            if (item == null) {
-                return createErrorResponse("ITEM_NOT_FOUND", 
-                    "Item with ID '" + itemId + "' not found");
-            }
-            
+            catalog = ItemCatalog.getInstance().current();
         } catch (Exception e) {
-            return createErrorResponse("DATABASE_ERROR", 
+            return errorResponse(Response.Status.SERVICE_UNAVAILABLE, "DATABASE_ERROR",
                 "Database connection failed: " + e.getMessage());
-        } finally {
-            if (db != null) {
-            }
         }
-        
-        //Get item coordinates from database
-        String itemLon = String.valueOf(item.getLongitude());
-        String itemLat = String.valueOf(item.getLatitude());
-        
-        //Calculate distance using OSRM
-        String osrmResult = calculateOSRMDistance(userLon, userLat, itemLon, itemLat);
-        
-        //Combine item info with distance
+
+        // Client already has this exact response - skip OSRM entirely
+        EntityTag etag = catalogETag(catalog, "distance", itemId, coordinateBucket(lat), coordinateBucket(lon));
+        Response.ResponseBuilder notModified = httpRequest.evaluatePreconditions(etag);
+        if (notModified != null) {
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+
+        items item = catalog.getById(itemId);
+        if (item == null) {
+            return errorResponse(Response.Status.NOT_FOUND, "ITEM_NOT_FOUND",
+                "Item with ID '" + itemId + "' not found");
+        }
+
+        //Calculate distance using OSRM and combine item info with distance
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            RouteResponse routeResponse = mapper.readValue(osrmResult, RouteResponse.class);
-            
-            // Create enhanced response
-            ItemDistanceResponse response = new ItemDistanceResponse(
-            item.getId(),
-           item.getName(),
-           item.getCategory(),
-          item.getDailyRate(),
-              item.getCity(),
-          item.getCondition(),
-         item.getDescription(),
-           routeResponse.getDistanceKm(),
-           routeResponse.getDurationMinutes(),
-            "success"
-            );
-            
-            return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(response);
-            
-        } catch (JsonProcessingException e) {
-            // If OSRM returned an error, just return it
-            return osrmResult;
+            RouteResponse routeResponse = osrm.routeBatched(lon, lat, item.getLongitude(), item.getLatitude());
+            return Response.ok(ItemDistanceResponse.of(item, routeResponse))
+                    .tag(etag)
+                    .cacheControl(REVALIDATE)
+                    .build();
+        } catch (OSRMException e) {
+            return errorResponse(e);
         }
     }
-        
-       /**
-        * Endpoint: GET /items
-        * 
-        * Retrieve all items with optional filtering, pagination, and distance calculation
-        * 
-        * Filtering options:
-        * - category: Filter by item category (e.g., Sports, Camping)
-        * - city: Filter by city location (case-insensitive)
-        * - condition: Filter by item condition (e.g., Excellent, Good)
-        * 
-        * Pagination:
-        * - page: Page number (default: 1)
-        * - pageSize: Fixed at 5 items per page
-        * 
-        * Distance calculation (optional):
-        * - userLat, userLon: Calculate distance from user to each item
-        * 
-        * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/items?category=Sports&city=London&page=2&userLat=51.5&userLon=-0.1
-        * 
-        * @param userLat Optional user latitude for distance calculation
-        * @param userLon Optional user longitude for distance calculation
-        * @param pageParam Page number (default: 1)
-        * @param category Filter by category
-        * @param city Filter by city
-        * @param condition Filter by condition
-        * @return Paginated JSON response with items and metadata
-        */
-
-        @GET
-        @Path("/items")
-        @Produces(MediaType.APPLICATION_JSON)
-        public String getAllItems(@QueryParam("userLat")String userLat,
-                                  @QueryParam("userLon")String userLon,
-                                  @QueryParam("page")String pageParam,
-                                  @QueryParam("category")String category,
-                                  @QueryParam("city")String city,
-                                  @QueryParam("condition")String condition){
-            
-            CosmosDBConnection db = null;
-            List<items>allItems = null;
-            
-            int page = 1;
-            int pageSize = 5;  // Fixed page size of 5 items per page to increase the efficiency
-            
-            try{
-                if (pageParam != null && !pageParam.isEmpty()){
-                    page = Integer.parseInt(pageParam);
-                    if (page < 1){
-                        return createErrorResponse("INVALID_PAGE", "Page number must be greater than 0");
-                    }
+
+    /**
+     * Endpoint: GET /items
+     *
+     * Retrieve all items with optional filtering, pagination, and distance calculation
+     *
+     * Filtering options:
+     * - category: Filter by item category (e.g., Sports, Camping)
+     * - city: Filter by city location (case-insensitive)
+     * - condition: Filter by item condition (e.g., Excellent, Good)
+     *
+     * Pagination:
+     * - page: Page number (default: 1)
+     * - pageSize: Fixed at 5 items per page
+     *
+     * Distance calculation (optional):
+     * - userLat, userLon: Calculate distance from user to each item
+     * - Items OSRM cannot route keep their place with the straight-line distance
+     *   and status "estimated"
+     * - deadlineMs: Answer within this many milliseconds. Items whose route is not
+     *   ready by then carry the straight-line distance and status "pending"; their
+     *   routes are still computed in the background for the next request. With
+     *   sort=distance the deadline also ends the OSRM refinement of the ranking
+     *
+     * Text search (optional):
+     * - q: Words that must all appear in the item name or description; results are
+     *   ordered by relevance (BM25) unless sort is given
+     *
+     * Price range (optional):
+     * - minRate, maxRate: Inclusive bounds on the daily rate
+     *
+     * Map area (optional):
+     * - bbox=minLon,minLat,maxLon,maxLat: Only items located inside the box, e.g. the
+     *   visible map area (minLon > maxLon for a box across the date line)
+     *
+     * Sorting (optional):
+     * - sort=distance: Order all matching items by distance from the user (requires
+     *   userLat/userLon). Ranked by straight-line distance, with the nearest items
+     *   refined by OSRM road distance (see DistanceRanking). Items without a
+     *   location are left out
+     * - sort=rate / sort=-rate: Cheapest / most expensive first (see RateIndex)
+     *
+     * Paging sessions:
+     * - Every response carries a snapshotId; sending it with the next page serves
+     *   that page from the same stored result and catalog version (see PagingSessions),
+     *   so a catalog refresh between pages cannot duplicate or skip items
+     *
+     * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/items?category=Sports&city=London&page=2&userLat=51.5&userLon=-0.1
+     *
+     * @param userLat Optional user latitude for distance calculation
+     * @param userLon Optional user longitude for distance calculation
+     * @param pageParam Page number (default: 1)
+     * @param category Filter by category
+     * @param city Filter by city
+     * @param condition Filter by condition
+     * @param q Optional full-text query
+     * @param minRate Optional minimum daily rate
+     * @param maxRate Optional maximum daily rate
+     * @param bbox Optional bounding box "minLon,minLat,maxLon,maxLat"
+     * @param sort Optional sort order ("distance", "rate" or "-rate")
+     * @param snapshotId Optional snapshotId from an earlier page of the same query
+     * @param deadlineMs Optional time budget for the page's routes in milliseconds
+     * @return Paginated response with items and metadata
+     */
+    @GET
+    @Path("/items")
+    public Response getAllItems(@QueryParam("userLat")String userLat,
+                                @QueryParam("userLon")String userLon,
+                                @QueryParam("page")String pageParam,
+                                @QueryParam("category")String category,
+                                @QueryParam("city")String city,
+                                @QueryParam("condition")String condition,
+                                @QueryParam("q")String q,
+                                @QueryParam("minRate")String minRate,
+                                @QueryParam("maxRate")String maxRate,
+                                @QueryParam("bbox")String bbox,
+                                @QueryParam("sort")String sort,
+                                @QueryParam("snapshotId")String snapshotId,
+                                @QueryParam("deadlineMs")String deadlineMs){
+
+        int page = 1;
+        int pageSize = 5;  // Fixed page size of 5 items per page to increase the efficiency
+
+        try{
+            if (pageParam != null && !pageParam.isEmpty()){
+                page = Integer.parseInt(pageParam);
+                if (page < 1){
+                    return errorResponse(Response.Status.BAD_REQUEST, "INVALID_PAGE", "Page number must be greater than 0");
                 }
+            }
+        }catch(NumberFormatException e){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_PAGEPARAM","Page must be a valid number");
+        }
+
+        // Validate user coordinates up front so no database work is wasted on a bad request
+        double lat = 0, lon = 0;
+        boolean withDistance = userLat != null && userLon != null;
+        if (withDistance){
+            try{
+                lat = Double.parseDouble(userLat);
+                lon = Double.parseDouble(userLon);
             }catch(NumberFormatException e){
-                return createErrorResponse("INVALID_PAGEPARAM","Page must be a valid number");
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_COORDINATES", "User coordinates must be valid");
             }
-            
+        }
+
+        // Time budget for routing the page - by default every route is waited for
+        long deadlineNanos = Long.MAX_VALUE;
+        if (deadlineMs != null && !deadlineMs.isEmpty()){
+            long budget;
             try{
-                db = CosmosDBConnection.getInstance();
-                allItems = db.getAllItems();
-                
-                if (allItems == null || allItems.isEmpty()){
-                    return createErrorResponse("NO_ITEMS_FOUND","No Items Available In The Database");
-                }
-                
-                // Each filter checks both user input and item data for null values to prevent NullPointerException
-                // Filters are applied sequentially, narrowing results with each criterion
-                if (category != null && !category.isEmpty()){
-                    allItems = allItems.stream()
-                            .filter(item -> item.getCategory() != null && item.getCategory().equalsIgnoreCase(category))
-                            .collect(java.util.stream.Collectors.toList());
-                }
-                
-                if (city != null && !city.isEmpty()){
-                    allItems = allItems.stream()
-                            .filter(item -> item.getCity()!= null && item.getCity().equalsIgnoreCase(city))
-                            .collect(java.util.stream.Collectors.toList());
+                budget = Long.parseLong(deadlineMs);
+            }catch(NumberFormatException e){
+                budget = 0;
+            }
+            if (budget < 1 || budget > DEADLINE_MAX_MS){
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_DEADLINE", "deadlineMs must be between 1 and " + DEADLINE_MAX_MS);
+            }
+            deadlineNanos = System.nanoTime() + budget * 1_000_000L;
+        }
+
+        boolean sortByDistance = false;
+        boolean sortByRate = false;
+        boolean rateDescending = false;
+        if (sort != null && !sort.isEmpty()){
+            if ("distance".equalsIgnoreCase(sort)){
+                if (!withDistance){
+                    return errorResponse(Response.Status.BAD_REQUEST, "MISSING_PARAMETERS", "sort=distance requires userLat and userLon");
                 }
-                
-                if (condition != null && !condition.isEmpty()){
-                    allItems = allItems.stream()
-                            .filter(item -> item.getCondition()!= null && item.getCondition().equalsIgnoreCase(condition))
-                            .collect(java.util.stream.Collectors.toList());
+                sortByDistance = true;
+            }else if ("rate".equalsIgnoreCase(sort) || "-rate".equalsIgnoreCase(sort)){
+                sortByRate = true;
+                rateDescending = sort.startsWith("-");
+            }else{
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_SORT", "sort must be one of: distance, rate, -rate");
+            }
+        }
+
+        // Daily rate bounds (inclusive) - absent bounds are open-ended
+        double lowestRate = Double.NEGATIVE_INFINITY;
+        double highestRate = Double.POSITIVE_INFINITY;
+        boolean rateFilter = false;
+        try{
+            if (minRate != null && !minRate.isEmpty()){
+                lowestRate = Double.parseDouble(minRate);
+                rateFilter = true;
+            }
+            if (maxRate != null && !maxRate.isEmpty()){
+                highestRate = Double.parseDouble(maxRate);
+                rateFilter = true;
+            }
+        }catch(NumberFormatException e){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_RATE", "minRate and maxRate must be valid numbers");
+        }
+        if (Double.isNaN(lowestRate) || Double.isNaN(highestRate) || lowestRate > highestRate){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_RATE", "minRate must not be greater than maxRate");
+        }
+
+        boolean textSearch = q != null && !q.trim().isEmpty();
+        if (textSearch && TextIndex.tokenize(q).isEmpty()){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_QUERY", "q must contain at least one letter or digit");
+        }
+
+        double[] box = null;
+        if (bbox != null && !bbox.isEmpty()){
+            box = parseBoundingBox(bbox);
+            if (box == null){
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_BBOX", "bbox must be minLon,minLat,maxLon,maxLat with valid coordinates");
+            }
+        }
+
+        // The result a paging session stores depends on the filters and sort, not the page or coordinates
+        String query = String.join("|", nullToEmpty(category), nullToEmpty(city), nullToEmpty(condition),
+                textSearch ? q.trim() : "", nullToEmpty(minRate), nullToEmpty(maxRate),
+                box != null ? bbox : "", nullToEmpty(sort)).toLowerCase();
+        PagingSessions sessions = PagingSessions.getInstance();
+
+        // Later pages stay on the stored result and catalog version of the first page
+        boolean pinned = snapshotId != null && !snapshotId.isEmpty();
+        PagingSessions.Session session = pinned ? sessions.get(snapshotId, query) : null;
+
+        ItemCatalog.Snapshot catalog;
+        if (session != null){
+            catalog = session.getCatalog();
+        }else{
+            try{
+                catalog = ItemCatalog.getInstance().current();
+            }catch(Exception e){
+                return errorResponse(Response.Status.SERVICE_UNAVAILABLE, "DATABASE_ERROR","Failed to retrive items: "+e.getMessage());
+            }
+            // A first page can join a session another request built for the same query and catalog version
+            if (!pinned){
+                session = sessions.join(pagingSessionId(catalog, query), query);
+            }
+        }
+
+        // Client already has this exact page - skip filtering and OSRM entirely
+        EntityTag etag = catalogETag(catalog, "items", String.valueOf(page), category, city, condition,
+                withDistance ? coordinateBucket(lat) : null, withDistance ? coordinateBucket(lon) : null,
+                sort, textSearch ? q : null, minRate, maxRate, box != null ? bbox : null);
+        Response.ResponseBuilder notModified = httpRequest.evaluatePreconditions(etag);
+        if (notModified != null){
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+
+        ItemBitmap matches;
+        TextIndex.Result textMatches = null;
+        if (session != null){
+            matches = session.getMatches();
+        }else{
+            // Resolve all filters with the catalog's bitmap index (no per-item string comparisons)
+            matches = catalog.getIndex().match(category, city, condition);
+
+            // Text matches are intersected with the attribute filters the same way
+            if (textSearch){
+                textMatches = catalog.search(q);
+                matches = matches.and(textMatches.toBitmap(catalog.getIndex().size()));
+            }
+            if (rateFilter){
+                matches = matches.and(catalog.getRateIndex().range(lowestRate, highestRate));
+            }
+            if (box != null){
+                matches = matches.and(catalog.getColumns().withinBox(box[1], box[3], box[0], box[2]));
+            }
+            // Items without a location have no distance to sort by
+            if (sortByDistance){
+                matches = matches.and(catalog.getColumns().locatedItems());
+            }
+        }
+        int totalItems = matches.cardinality();
+
+        if (catalog.size() == 0){
+            return errorResponse(Response.Status.NOT_FOUND, "NO_ITEMS_FOUND","No Items Available In The Database");
+        }
+
+        // Return error message if filters produced no results
+        if(totalItems == 0){
+            String message = "No items found matching filters: ";
+            List<String> appliedFilters = new ArrayList<>();
+
+            if (category != null && !category.isEmpty()){
+                appliedFilters.add("category="+ category);
+            }
+
+            if (city != null && !city.isEmpty()){
+                appliedFilters.add("city="+ city);
+            }
+
+            if (condition != null && !condition.isEmpty()){
+                appliedFilters.add("condition="+ condition);
+            }
+
+            if (textSearch){
+                appliedFilters.add("q="+ q);
+            }
+
+            if (minRate != null && !minRate.isEmpty()){
+                appliedFilters.add("minRate="+ minRate);
+            }
+
+            if (maxRate != null && !maxRate.isEmpty()){
+                appliedFilters.add("maxRate="+ maxRate);
+            }
+
+            if (box != null){
+                appliedFilters.add("bbox="+ bbox);
+            }
+
+            return errorResponse(Response.Status.NOT_FOUND, "NO_MATCHES",message + String.join(", ", appliedFilters)+". Check spelling or try different filters.");
+        }
+
+        // Calculate pagination metadata
+        int totalPages = (int)Math.ceil((double)totalItems / pageSize);
+        int startIndex = (page - 1) * pageSize;
+
+        if (startIndex >= totalItems){
+            return errorResponse(Response.Status.NOT_FOUND, "PAGE_OUT_OF_RANGE","page " + page +" does not exist. Total pages: "+ totalPages);
+        }
+
+        // First page of a query - store the result (and its leading ranks) for the pages that follow
+        if (session == null){
+            int[] ranked = null;
+            int rankedCount = Math.min(totalItems, PagingSessions.MAX_RANKED);
+            if (sortByRate){
+                ranked = catalog.getRateIndex().page(matches, lowestRate, highestRate, 0, rankedCount, rateDescending);
+            }else if (textSearch && !sortByDistance){
+                ranked = textMatches.top(matches, 0, rankedCount);
+            }
+            session = new PagingSessions.Session(pagingSessionId(catalog, query), query, catalog, matches, ranked);
+            if (!sessions.put(session)){
+                session = null;
+            }
+        }
+        String pagingId = session != null ? session.getId() : null;
+
+        // Global distance order - straight-line ranking refined by OSRM for the nearest items
+        if (sortByDistance){
+            List<ItemDistanceResponse> sortedPage =
+                    DistanceRanking.page(catalog, matches, lat, lon, startIndex, pageSize, osrm, deadlineNanos);
+            PaginatedResponse<ItemDistanceResponse> body =
+                    new PaginatedResponse<>(sortedPage, page, pageSize, totalItems, totalPages);
+            body.setSnapshotId(pagingId);
+            for (ItemDistanceResponse item : sortedPage){
+                if (DistanceRanking.STATUS_ESTIMATED.equals(item.getStatus())
+                        || DistanceRanking.STATUS_PENDING.equals(item.getStatus())){
+                    // Estimates are temporary - never let a cache or an ETag keep them
+                    return Response.ok(body).cacheControl(NO_STORE).build();
                 }
+            }
+            return Response.ok(body)
+                    .tag(etag)
+                    .cacheControl(REVALIDATE)
+                    .build();
+        }
+
+        // Extract current page's items - a slice of the session's stored ranks when it
+        // has them, otherwise by rate when requested, by relevance for text searches,
+        // or selected by rank straight from the bitmap
+        if (textSearch && textMatches == null && !sortByRate
+                && (session == null || session.ranked(startIndex, pageSize) == null)){
+            textMatches = catalog.search(q);
+        }
+        int[] positions = selectPage(catalog, session, matches, textMatches, sortByRate,
+                lowestRate, highestRate, rateDescending, startIndex, pageSize);
+        List<items> pageItems = new ArrayList<>(pageSize);
+        for (int position : positions){
+            pageItems.add(catalog.itemAt(position));
+        }
+
+        // Calculate distances if user coordinates provided
+        // Only calculate for items on current page (optimization)
+        if(withDistance){
+            List<ItemDistanceResponse> enhancedItems = new ArrayList<>();
+
+            // Route every item on the page concurrently - by the deadline, with straight-line
+            // estimates for items whose route failed or is not ready yet
+            RouteResponse[] routes = DistanceRanking.routeWithin(osrm, catalog, lat, lon, positions, deadlineNanos);
+            boolean complete = true;
+            for (int i = 0; i < routes.length; i++){
+                enhancedItems.add(ItemDistanceResponse.of(pageItems.get(i), routes[i]));
+                complete &= !DistanceRanking.isEstimate(routes[i]);
+            }
+
+            // Optional: route the next page in the background once this page is routed
+            // (a text page past the session's stored ranks would need the search again - skipped)
+            int nextIndex = startIndex + pageSize;
+            if (prefetcher.isEnabled() && nextIndex < totalItems
+                    && (!textSearch || sortByRate || textMatches != null || session.ranked(nextIndex, pageSize) != null)){
+                prefetcher.prefetch(osrm, lat, lon, catalog.getColumns(), selectPage(catalog, session, matches, textMatches,
+                        sortByRate, lowestRate, highestRate, rateDescending, nextIndex, pageSize));
+            }
+
+            // Create paginated response with metadata(for the request with distance calculation)
+            PaginatedResponse<ItemDistanceResponse> body =
+                    new PaginatedResponse<>(enhancedItems, page, pageSize, totalItems, totalPages);
+            body.setSnapshotId(pagingId);
+            if (!complete){
+                // Estimates are temporary - never let a cache or an ETag keep them
+                return Response.ok(body).cacheControl(NO_STORE).build();
+            }
+            return Response.ok(body)
+                    .tag(etag)
+                    .cacheControl(REVALIDATE)
+                    .build();
+        }
+
+        // Create paginated response with metadata(for the request with-out distance calculation)
+        PaginatedResponse<items> body = new PaginatedResponse<>(pageItems, page, pageSize, totalItems, totalPages);
+        body.setSnapshotId(pagingId);
+        return Response.ok(body)
+                .tag(etag)
+                .cacheControl(REVALIDATE)
+                .build();
+    }
+
+    /**
+     * Endpoint: GET /items/nearby
+     *
+     * Find the items closest to the user, nearest first
+     *
+     * How it works:
+     * - Uses the catalog's SpatialIndex (k-d tree), so only the part of the catalog
+     *   near the user is examined instead of routing every item through OSRM
+     * - category/city/condition filters are resolved with the bitmap index and
+     *   applied during the tree search
+     * - distanceKm is the straight-line (great-circle) distance and status is
+     *   "straight_line"; use /items/{item_id}/distance for the road distance
+     *
+     * Parameters:
+     * - userLat, userLon: Required user location
+     * - radiusKm: Optional maximum distance (default: no limit)
+     * - limit: Maximum number of items (default: 10, max: 100)
+     *
+     * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/items/nearby?userLat=52.95&userLon=-1.15&radiusKm=25&limit=5
+     *
+     * @param userLat User's latitude coordinate
+     * @param userLon User's longitude coordinate
+     * @param radiusKm Optional search radius in kilometers
+     * @param limitParam Optional maximum number of results
+     * @param category Filter by category
+     * @param city Filter by city
+     * @param condition Filter by condition
+     * @return Single page of ItemDistanceResponse ordered by distance
+     */
+    @GET
+    @Path("/items/nearby")
+    public Response getNearbyItems(@QueryParam("userLat") String userLat,
+                                   @QueryParam("userLon") String userLon,
+                                   @QueryParam("radiusKm") String radiusKm,
+                                   @QueryParam("limit") String limitParam,
+                                   @QueryParam("category") String category,
+                                   @QueryParam("city") String city,
+                                   @QueryParam("condition") String condition){
+
+        if (userLat == null || userLon == null){
+            return errorResponse(Response.Status.BAD_REQUEST, "MISSING_PARAMETERS", "User coordinates required:userLat, userLon");
+        }
+
+        double lat, lon;
+        try{
+            lat = Double.parseDouble(userLat);
+            lon = Double.parseDouble(userLon);
+        }catch(NumberFormatException e){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_COORDINATES", "User coordinates must be valid numbers");
+        }
+        if (lat < -90 || lat > 90 || lon < -180 || lon > 180){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_COORDINATES", "userLat must be within [-90, 90] and userLon within [-180, 180]");
+        }
+
+        double radius = Double.POSITIVE_INFINITY;
+        if (radiusKm != null && !radiusKm.isEmpty()){
+            try{
+                radius = Double.parseDouble(radiusKm);
+            }catch(NumberFormatException e){
+                radius = Double.NaN;
+            }
+            if (!(radius > 0)){
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_RADIUS", "radiusKm must be a positive number");
+            }
+        }
+
+        int limit = NEARBY_DEFAULT_LIMIT;
+        if (limitParam != null && !limitParam.isEmpty()){
+            try{
+                limit = Integer.parseInt(limitParam);
+            }catch(NumberFormatException e){
+                limit = 0;
+            }
+            if (limit < 1 || limit > NEARBY_MAX_LIMIT){
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_LIMIT", "limit must be between 1 and " + NEARBY_MAX_LIMIT);
+            }
+        }
+
+        ItemCatalog.Snapshot catalog;
+        try{
+            catalog = ItemCatalog.getInstance().current();
+        }catch(Exception e){
+            return errorResponse(Response.Status.SERVICE_UNAVAILABLE, "DATABASE_ERROR","Failed to retrive items: "+e.getMessage());
+        }
+
+        EntityTag etag = catalogETag(catalog, "nearby", coordinateBucket(lat), coordinateBucket(lon),
+                radiusKm, String.valueOf(limit), category, city, condition);
+        Response.ResponseBuilder notModified = httpRequest.evaluatePreconditions(etag);
+        if (notModified != null){
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+
+        // No filters means no mask - the tree search then skips the bitmap lookups
+        ItemBitmap matches = catalog.getIndex().match(category, city, condition);
+        ItemBitmap filter = matches.cardinality() == catalog.getIndex().size() ? null : matches;
+
+        SpatialIndex spatial = catalog.getSpatialIndex();
+        int[] nearest = matches.isEmpty() ? new int[0] : spatial.nearest(lat, lon, limit, radius, filter);
+
+        double[] distances = spatial.distancesKm(nearest, nearest.length, lat, lon);
+        List<ItemDistanceResponse> results = new ArrayList<>(nearest.length);
+        for (int i = 0; i < nearest.length; i++){
+            items item = catalog.itemAt(nearest[i]);
+            double distanceKm = Math.round(distances[i] * 100.0) / 100.0;
+            results.add(ItemDistanceResponse.of(item, new RouteResponse(distanceKm, 0, "straight_line")));
+        }
+
+        return Response.ok(new PaginatedResponse<>(results, 1, limit, results.size(), 1))
+                .tag(etag)
+                .cacheControl(REVALIDATE)
+                .build();
+    }
+
+    /**
+     * Endpoint: GET /items/suggest
+     *
+     * Autocomplete for search boxes - completes the last word of the prefix with
+     * words from item names and descriptions, most common first
+     *
+     * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/items/suggest?prefix=mountain%20bi
+     *
+     * @param prefix What the user has typed so far
+     * @param limitParam Optional maximum number of suggestions (default: 10, max: 10)
+     * @return Single page of Suggestion entries
+     */
+    @GET
+    @Path("/items/suggest")
+    public Response suggestItems(@QueryParam("prefix") String prefix,
+                                 @QueryParam("limit") String limitParam){
+
+        if (prefix == null || TextIndex.tokenize(prefix).isEmpty()){
+            return errorResponse(Response.Status.BAD_REQUEST, "MISSING_PARAMETERS", "prefix must contain at least one letter or digit");
+        }
+
+        int limit = SUGGEST_MAX_LIMIT;
+        if (limitParam != null && !limitParam.isEmpty()){
+            try{
+                limit = Integer.parseInt(limitParam);
+            }catch(NumberFormatException e){
+                limit = 0;
+            }
+            if (limit < 1 || limit > SUGGEST_MAX_LIMIT){
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_LIMIT", "limit must be between 1 and " + SUGGEST_MAX_LIMIT);
+            }
+        }
+
+        ItemCatalog.Snapshot catalog;
+        try{
+            catalog = ItemCatalog.getInstance().current();
+        }catch(Exception e){
+            return errorResponse(Response.Status.SERVICE_UNAVAILABLE, "DATABASE_ERROR","Failed to retrive items: "+e.getMessage());
+        }
+
+        EntityTag etag = catalogETag(catalog, "suggest", prefix, String.valueOf(limit));
+        Response.ResponseBuilder notModified = httpRequest.evaluatePreconditions(etag);
+        if (notModified != null){
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+
+        List<Suggestion> suggestions = catalog.suggest(prefix, limit);
+        return Response.ok(new PaginatedResponse<>(suggestions, 1, limit, suggestions.size(), 1))
+                .tag(etag)
+                .cacheControl(REVALIDATE)
+                .build();
+    }
+
+    /**
+     * Endpoint: GET /items/facets
+     *
+     * Count items per category, city and condition under the current filters,
+     * so the UI can show e.g. "Sports (20)" next to each filter option
+     *
+     * How it works:
+     * - Without filters the pre-built counts of the current catalog version are
+     *   returned as-is (FacetCounts keeps them up to date on every refresh)
+     * - With filters each count is one bitmap AND-cardinality (no item is visited)
+     *
+     * Accepts the same filters as GET /items: category, city, condition, q, minRate, maxRate, bbox
+     *
+     * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/items/facets?city=London
+     *
+     * @param category Filter by category
+     * @param city Filter by city
+     * @param condition Filter by condition
+     * @param q Optional full-text query
+     * @param minRate Optional minimum daily rate
+     * @param maxRate Optional maximum daily rate
+     * @param bbox Optional bounding box "minLon,minLat,maxLon,maxLat"
+     * @return FacetsResponse with the matching total and counts per value
+     */
+    @GET
+    @Path("/items/facets")
+    public Response getFacets(@QueryParam("category") String category,
+                              @QueryParam("city") String city,
+                              @QueryParam("condition") String condition,
+                              @QueryParam("q") String q,
+                              @QueryParam("minRate") String minRate,
+                              @QueryParam("maxRate") String maxRate,
+                              @QueryParam("bbox") String bbox){
+
+        boolean textSearch = q != null && !q.trim().isEmpty();
+        if (textSearch && TextIndex.tokenize(q).isEmpty()){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_QUERY", "q must contain at least one letter or digit");
+        }
+
+        double[] box = null;
+        if (bbox != null && !bbox.isEmpty()){
+            box = parseBoundingBox(bbox);
+            if (box == null){
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_BBOX", "bbox must be minLon,minLat,maxLon,maxLat with valid coordinates");
+            }
+        }
+
+        double lowestRate = Double.NEGATIVE_INFINITY;
+        double highestRate = Double.POSITIVE_INFINITY;
+        try{
+            if (minRate != null && !minRate.isEmpty()){
+                lowestRate = Double.parseDouble(minRate);
+            }
+            if (maxRate != null && !maxRate.isEmpty()){
+                highestRate = Double.parseDouble(maxRate);
+            }
+        }catch(NumberFormatException e){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_RATE", "minRate and maxRate must be valid numbers");
+        }
+        if (Double.isNaN(lowestRate) || Double.isNaN(highestRate) || lowestRate > highestRate){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_RATE", "minRate must not be greater than maxRate");
+        }
+        boolean rateFilter = lowestRate != Double.NEGATIVE_INFINITY || highestRate != Double.POSITIVE_INFINITY;
+
+        ItemCatalog.Snapshot catalog;
+        try{
+            catalog = ItemCatalog.getInstance().current();
+        }catch(Exception e){
+            return errorResponse(Response.Status.SERVICE_UNAVAILABLE, "DATABASE_ERROR","Failed to retrive items: "+e.getMessage());
+        }
+
+        EntityTag etag = catalogETag(catalog, "facets", category, city, condition, textSearch ? q : null, minRate, maxRate,
+                box != null ? bbox : null);
+        Response.ResponseBuilder notModified = httpRequest.evaluatePreconditions(etag);
+        if (notModified != null){
+            return notModified.cacheControl(REVALIDATE).build();
+        }
+
+        boolean filtered = textSearch || rateFilter || box != null
+                || (category != null && !category.isEmpty())
+                || (city != null && !city.isEmpty())
+                || (condition != null && !condition.isEmpty());
+
+        FacetsResponse facets;
+        if (!filtered){
+            facets = catalog.getFacets().unfiltered();
+        }else{
+            ItemBitmap matches = catalog.getIndex().match(category, city, condition);
+            if (textSearch){
+                matches = matches.and(catalog.search(q).toBitmap(catalog.getIndex().size()));
+            }
+            if (rateFilter){
+                matches = matches.and(catalog.getRateIndex().range(lowestRate, highestRate));
+            }
+            if (box != null){
+                matches = matches.and(catalog.getColumns().withinBox(box[1], box[3], box[0], box[2]));
+            }
+            facets = catalog.getFacets().filtered(catalog.getIndex(), matches);
+        }
+
+        return Response.ok(facets)
+                .tag(etag)
+                .cacheControl(REVALIDATE)
+                .build();
+    }
+
+    /**
+     * Endpoint: GET /metrics
+     *
+     * Current service counters and gauges (see ServiceMetrics), e.g. the paging
+     * session hit rate
+     *
+     * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/metrics
+     *
+     * @return MetricsResponse with every counter and gauge
+     */
+    @GET
+    @Path("/metrics")
+    public Response getMetrics(){
+        return Response.ok(ServiceMetrics.snapshot())
+                .cacheControl(NO_STORE)
+                .build();
+    }
+
+    /**
+     * Endpoint: GET /items/export
+     * 
+     * Stream the full catalog as newline-delimited JSON (one item per line)
+     * Intended for analytics and partner sync jobs that need every item
+     * 
+     * How it works:
+     * - Items come from the in-memory ItemCatalog snapshot, filtered through its
+     *   CatalogIndex exactly like GET /items, so the export never scans Cosmos DB on
+     *   the request thread and matches the same items as a listing
+     * - Items are materialized one at a time and output is flushed every
+     *   EXPORT_FLUSH_EVERY items, so memory stays constant regardless of catalog size
+     * - With userLat/userLon, distances are attached in batches of EXPORT_DISTANCE_BATCH
+     *   using one OSRM table call per batch instead of one route call per item
+     * 
+     * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/items/export?category=Sports&userLat=51.5&userLon=-0.1
+     * 
+     * @param category Optional category filter
+     * @param city Optional city filter
+     * @param condition Optional condition filter
+     * @param userLat Optional user latitude for distance calculation
+     * @param userLon Optional user longitude for distance calculation
+     * @return NDJSON stream of items (or ItemDistanceResponse when coordinates are given)
+     */
+    @GET
+    @Path("/items/export")
+    @Produces({APPLICATION_NDJSON, MediaType.APPLICATION_JSON})
+    public Response exportItems(@QueryParam("category") String category,
+                                @QueryParam("city") String city,
+                                @QueryParam("condition") String condition,
+                                @QueryParam("userLat") String userLat,
+                                @QueryParam("userLon") String userLon){
+        
+        // Validate everything before the stream starts - the status cannot change afterwards
+        boolean withDistance = userLat != null && userLon != null;
+        double lat = 0, lon = 0;
+        if (withDistance){
+            try{
+                lat = Double.parseDouble(userLat);
+                lon = Double.parseDouble(userLon);
+            }catch(NumberFormatException e){
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_COORDINATES", "User coordinates must be valid");
+            }
+        }
+        
+        ItemCatalog.Snapshot catalog;
+        try{
+            catalog = ItemCatalog.getInstance().current();
+        }catch(Exception e){
+            return errorResponse(Response.Status.SERVICE_UNAVAILABLE, "DATABASE_ERROR","Failed to retrive items: "+e.getMessage());
+        }
+        int[] positions = catalog.getIndex().match(category, city, condition).toArray();
+        
+        final double originLat = lat;
+        final double originLon = lon;
+        StreamingOutput stream = output -> {
+            ObjectWriter writer = JsonMappers.ndjsonWriterFor(withDistance ? ItemDistanceResponse.class : items.class);
+            
+            try (JsonGenerator generator = writer.createGenerator(output)) {
+                int written = 0;
+                List<items> batch = withDistance ? new ArrayList<>(EXPORT_DISTANCE_BATCH) : null;
                 
-                // Return error message if filters produced no results
-                if(allItems.isEmpty() && (category != null || city != null || condition != null)){
-                    String message = "No items found matching filters: ";
-                    List<String> appliedFilters = new ArrayList<>();
+                for (int position : positions){
+                    items item = catalog.itemAt(position);
                     
-                    if (category != null && !category.isEmpty()){
-                        appliedFilters.add("category="+ category);
-                    }
-                    
-                    if (city != null && !city.isEmpty()){
-                        appliedFilters.add("city="+ city);
+                    if (!withDistance){
+                        writer.writeValue(generator, item);
+                        if (++written % EXPORT_FLUSH_EVERY == 0){
+                            generator.flush();
+                        }
+                        continue;
                     }
                     
-                    if (condition != null && !condition.isEmpty()){
-                        appliedFilters.add("condition="+ condition);
+                    // Collect a batch, route it with one table call, then write it out
+                    batch.add(item);
+                    if (batch.size() == EXPORT_DISTANCE_BATCH){
+                        written += writeDistanceBatch(writer, generator, batch, originLon, originLat);
+                        batch.clear();
+                        generator.flush();
                     }
-                    
-                    return createErrorResponse("NO_MATCHES ",message + String.join(", ", appliedFilters)+". Check spelling or try different filters.");
-                    
                 }
                 
-                // Calculate pagination metadata
-                int totalItems = allItems.size();
-                int totalPages = (int)Math.ceil((double)totalItems / pageSize);
-                int startIndex = (page - 1) * pageSize;
-                int endIndex = Math.min(startIndex + pageSize, totalItems);
-                
-                if (startIndex >= totalItems){
-                    return createErrorResponse("PAGE_OUT_OF_RANGE ","page " + page +" does not exist. Total pages: "+ totalPages);
+                if (withDistance && !batch.isEmpty()){
+                    written += writeDistanceBatch(writer, generator, batch, originLon, originLat);
                 }
                 
-                // Extract current page's items
-                List<items> pageItems = allItems.subList(startIndex, endIndex);
-                
-                ObjectMapper mapper = new ObjectMapper();
-
-                // Calculate distances if user coordinates provided
-                // Only calculate for items on current page (optimization)
-                if(userLat != null && userLon != null){
-                    try{
-                        Double.parseDouble(userLat);
-                        Double.parseDouble(userLon);
-                        
-                        List<ItemDistanceResponse> enhancedItems = new ArrayList<>();
-                        
-                        // Calculate distance for each item on current page
-                        for(items item : pageItems){
-                            String itemLon = String.valueOf(item.getLongitude());
-                            String itemLat = String.valueOf(item.getLatitude());
-                            
-                            String osrmResult = calculateOSRMDistance(userLon, userLat,itemLon,itemLat);
-                            
-                            try{
-                                RouteResponse routeResponse = mapper.readValue(osrmResult, RouteResponse.class);
-                                
-                                ItemDistanceResponse response = new ItemDistanceResponse(
-                                item.getId(),
-                                item.getName(),
-                                item.getCategory(),
-                                item.getDailyRate(),
-                                item.getCity(),
-                                item.getCondition(),
-                                item.getDescription(),
-                                routeResponse.getDistanceKm(),
-                                routeResponse.getDurationMinutes(),
-                                "success"
-                            );
-                                
-                                enhancedItems.add(response);
-                                
-                            }catch(JsonProcessingException e){
-                                System.err.println("Failed to calculate distance for item "+item.getId());
-                            }
-                        }
-                        
-                        // Create paginated response with metadata(for the request with distance calculation)
-                        PaginatedResponse<ItemDistanceResponse> response = new PaginatedResponse<>(
-                           enhancedItems,
-                       page,
-                                pageSize,
-                                totalItems,
-                                totalPages
-                        );
-                        
-                        return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(response);
-                    
-                    }catch(NumberFormatException e){
-                        return createErrorResponse("INVALID_COORDINATES", "User coordinates must be valid");
-                    }
-                }
-                
-                // Create paginated response with metadata(for the request with-out distance calculation)
-                 PaginatedResponse<items> response = new PaginatedResponse<>(
-                           pageItems,
-                       page,
-                                pageSize,
-                                totalItems,
-                                totalPages
-                        );
-                
-                return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(response);
-            
-            }catch(JsonProcessingException e){
-                return createErrorResponse("JSON_PROCESSING_ERROR","Failed to process items data: "+e.getMessage());
-            }catch(Exception e){
-                return createErrorResponse("DATABASE_ERROR","Failed to retrive items: "+e.getMessage());
-            }finally{
-                if(db != null){
+                // Terminate the last line so every document ends with a newline
+                if (written > 0){
+                    generator.writeRaw('\n');
                 }
             }
-        }
+        };
+        
+        return Response.ok(stream, APPLICATION_NDJSON).build();
+    }
     
+    /**
+     * Helper method: Attach distances to a batch of exported items and write them
+     * 
+     * Items OSRM could not route are still exported, with status "no_route"
+     * (no path found) or "routing_failed" (OSRM error for the whole batch)
+     * 
+     * @return Number of lines written
+     */
+    private int writeDistanceBatch(ObjectWriter writer, JsonGenerator generator, List<items> batch,
+                                   double originLon, double originLat) throws IOException {
+        int count = batch.size();
+        double[] lons = new double[count];
+        double[] lats = new double[count];
+        for (int i = 0; i < count; i++){
+            lons[i] = batch.get(i).getLongitude();
+            lats[i] = batch.get(i).getLatitude();
+        }
+        
+        RouteResponse[] routes;
+        String failedStatus;
+        try{
+            routes = osrm.table(originLon, originLat, lons, lats, count);
+            failedStatus = "no_route";
+        }catch(OSRMException e){
+            System.err.println("Export: failed to calculate distances for batch: " + e.getMessage());
+            routes = new RouteResponse[count];
+            failedStatus = "routing_failed";
+        }
         
+        for (int i = 0; i < count; i++){
+            items item = batch.get(i);
+            RouteResponse route = routes[i];
+            writer.writeValue(generator, ItemDistanceResponse.of(item,
+                    route != null ? route : new RouteResponse(0, 0, failedStatus)));
+        }
+        return count;
+    }
+    
     /**
-       * Core method: Calculate distance using OSRM API
-       * 
-       * This method handles the external API integration:
-       * 1. Builds OSRM API URL with coordinates
-       * 2. Sends HTTP request with timeout
-       * 3. Parses JSON response
-       * 4. Converts distance (m→km) and duration (s→min)
-       * 5. Returns simplified JSON response
-       * 
-       * OSRM API documentation: https://project-osrm.org/docs/v5.24.0/api/
-       * 
-       * @param startLon Starting point longitude
-       * @param startLat Starting point latitude
-       * @param endLon Ending point longitude
-       * @param endLat Ending point latitude
-       * @return JSON string with distance and duration or error message
-       */
-        private String calculateOSRMDistance(String startLon, String startLat,String endLon, String endLat) {
-        try {
-            // Build the OSRM API URL using the coordinates provided by the client
-            String osrmUrl = "http://router.project-osrm.org/route/v1/driving/" 
-                           + startLon + "," + startLat + ";" 
-                           + endLon + "," + endLat 
-                           + "?overview=false";
-            
-            // Use the shared HTTP client instead of creating a new one 
-            // The shared client handles connection pooling automatically
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(osrmUrl))
-                    .timeout(Duration.ofSeconds(TIMEOUT_SECONDS))
-                    .GET()
-                    .build();
-            
-            //Send the request to OSRM and get the response as a String
-            HttpResponse<String> response = SHARED_HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
-            
-            // Check HTTP status code
-            if (response.statusCode() != 200) {
-                return createErrorResponse("OSRM_ERROR", 
-                    "OSRM API returned status code: " + response.statusCode());
-            }
-            
-            //Extract the JSON response body from OSRM
-            String jsonResponse = response.body();
-            
-            // Validate that response is JSON
-            if (!jsonResponse.trim().startsWith("{")) {
-                return createErrorResponse("INVALID_RESPONSE", 
-                    "OSRM API returned invalid response format");
+     * Helper method: Parse a bbox parameter ("minLon,minLat,maxLon,maxLat")
+     * 
+     * @return {minLon, minLat, maxLon, maxLat}, or null if the box is not valid
+     */
+    private static double[] parseBoundingBox(String bbox) {
+        String[] parts = bbox.split(",");
+        if (parts.length != 4){
+            return null;
+        }
+        double[] box = new double[4];
+        try{
+            for (int i = 0; i < 4; i++){
+                box[i] = Double.parseDouble(parts[i].trim());
             }
-            
-            //Deserialize OSRM's JSON response into our OSRMResponse Java object
-            //This converts the JSON text into Java objects we can work with
-            ObjectMapper mapper = new ObjectMapper();
-            OSRMResponse osrmResponse = mapper.readValue(jsonResponse, OSRMResponse.class);
-            
-            //Check if OSRM returned any routes
-            //Extract the first route from the list
-            //OSRM can return multiple route options, but we just need the first one
-            if (osrmResponse.getRoutes() != null && !osrmResponse.getRoutes().isEmpty()) {
-                OSRMResponse.RouteInfo firstRoute = osrmResponse.getRoutes().get(0);
-                
-                //Convert units to be more understandable
-                //Convert meters to kilometers(divide by 1000)
-                //Convert seconds to minites(divide by 60)
-                double distanceInKm = firstRoute.getDistance()/1000.0;
-                double durationInMinites = firstRoute.getDuration()/60.0;
-                
-                //Create our simplified response object with Converted Values
-                //This is much cleaner than sending back OSRM's entire complex response
-                RouteResponse routeResponse = new RouteResponse(
-                    distanceInKm,
-                    durationInMinites,
-                    "success"
-                );
-                
-                // Serialize our RouteResponse object back into JSON
-                // This converts our Java object into a JSON string to send to the client
-                return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(routeResponse);
-            } else {
-                // If OSRM didn't return any routes, send an error message
-               return createErrorResponse("NO_ROUTE", 
-                    "No route found between the specified coordinates");
+        }catch(NumberFormatException e){
+            return null;
+        }
+        boolean lonValid = Math.abs(box[0]) <= 180 && Math.abs(box[2]) <= 180;
+        boolean latValid = Math.abs(box[1]) <= 90 && Math.abs(box[3]) <= 90 && box[1] <= box[3];
+        return lonValid && latValid ? box : null;
+    }
+    
+    /**
+     * Helper method: Build a strong ETag for a catalog-backed response
+     * 
+     * The tag changes whenever any input to the response body changes:
+     * - The catalog version (the content fingerprint - changes only when item data
+     *   changes, and is the same after a restart and on every instance)
+     * - The endpoint and its parameters (page, filters, coordinate bucket)
+     * - The negotiated representation (Accept, pretty, Content-Encoding)
+     * 
+     * @param catalog The catalog snapshot the response is built from
+     * @param parts Endpoint name and request parameters (null for absent parameters)
+     * @return Strong entity tag, e.g. "5e1b7c0d2a94f3e6-9f2c4e1a7b05d6e8"
+     */
+    private EntityTag catalogETag(ItemCatalog.Snapshot catalog, String... parts) {
+        long hash = fnv1a(0xcbf29ce484222325L, Long.toString(catalog.getVersion()));
+        for (String part : parts){
+            hash = fnv1a(hash, part != null ? part.toLowerCase() : null);
+        }
+        hash = fnv1a(hash, headers.getHeaderString(HttpHeaders.ACCEPT));
+        hash = fnv1a(hash, context.getQueryParameters().getFirst("pretty"));
+        hash = fnv1a(hash, CompressionInterceptor.negotiateEncoding(headers));
+        return new EntityTag(Long.toHexString(catalog.getVersion()) + "-" + Long.toHexString(hash));
+    }
+    
+    // 64-bit FNV-1a over the characters of one ETag component, followed by a separator
+    private static long fnv1a(long hash, String value) {
+        if (value != null){
+            for (int i = 0; i < value.length(); i++){
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
             }
-            
-          
-        } catch (HttpTimeoutException e) {
-            // Handle timeout specifically - could retry or suggest alternative
-            return createErrorResponse("TIMEOUT", 
-                "Request to OSRM API timed out after " + TIMEOUT_SECONDS + " seconds. Please try again.");
-            
-        } catch (JsonProcessingException e) {
-            // Handle JSON parsing errors
-            return createErrorResponse("JSON_PARSE_ERROR", 
-                "Failed to parse response from OSRM API: " + e.getMessage());
-            
-        } catch (IOException e) {
-            // Handle network/IO errors
-            return createErrorResponse("NETWORK_ERROR", 
-                "Network error while contacting OSRM API: " + e.getMessage());
-            
-        } catch (InterruptedException e) {
-            // Handle thread interruption
-            Thread.currentThread().interrupt();
-            return createErrorResponse("INTERRUPTED", 
-                "Request was interrupted. Please try again.");
-            
-        } catch (Exception e) {
-            // Catch any other unexpected errors
-            return createErrorResponse("UNKNOWN_ERROR", 
-                "An unexpected error occurred: " + e.getMessage());
         }
+        hash ^= '|';
+        return hash * 0x100000001b3L;
     }
-        
+    
     /**
-    * Helper method: Create consistent error responses
+     * Helper method: Select the positions of one GET /items page
+     * 
+     * Uses the session's stored ranks when they cover the page, otherwise orders
+     * by rate (sortByRate), by relevance (textMatches) or by catalog position
      * 
+     * @param textMatches Full-text result, or null when the query has no text search
+     *                    (or the session's stored ranks cover the page)
+     * @return Catalog positions in page order
+     */
+    private static int[] selectPage(ItemCatalog.Snapshot catalog, PagingSessions.Session session, ItemBitmap matches,
+                                    TextIndex.Result textMatches, boolean sortByRate, double lowestRate,
+                                    double highestRate, boolean rateDescending, int startIndex, int pageSize) {
+        int[] positions = session != null ? session.ranked(startIndex, pageSize) : null;
+        if (positions != null){
+            return positions;
+        }
+        if (sortByRate){
+            return catalog.getRateIndex().page(matches, lowestRate, highestRate, startIndex, pageSize, rateDescending);
+        }
+        if (textMatches != null){
+            return textMatches.top(matches, startIndex, pageSize);
+        }
+        return matches.slice(startIndex, pageSize);
+    }
+    
+    // Paging session id: catalog version plus a hash of the query (see PagingSessions)
+    private static String pagingSessionId(ItemCatalog.Snapshot catalog, String query) {
+        return Long.toHexString(catalog.getVersion()) + "-" + Long.toHexString(fnv1a(0xcbf29ce484222325L, query));
+    }
+    
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+    
+    // Nearby user positions share a bucket (and therefore an ETag)
+    private static String coordinateBucket(double coordinate) {
+        return Long.toString(Math.round(coordinate * ETAG_COORDINATE_BUCKET));
+    }
+    
+    /**
+     * Helper method: Create consistent error responses
+     *
      * All errors follow the same JSON format:
      * {"status": "error", "errorCode": "CODE", "message": "description"}
-     * 
+     * and are sent with an HTTP status code that matches the failure
+     *
+     * @param status HTTP status to return (e.g., 404 for ITEM_NOT_FOUND)
      * @param errorCode Specific error code (e.g., ITEM_NOT_FOUND)
      * @param message Human-readable error description
-     * @return JSON formatted error string
+     * @return JAX-RS Response carrying an ErrorResponse entity
      */
-        
-    //Replace double quotes into single quotes in the message
-    //Prevent breaking the JSON if message contain quotes - rare senorio but can happen
-    private String createErrorResponse(String errorCode, String message) {
-        return String.format("{\"status\": \"error\", \"errorCode\": \"%s\", \"message\": \"%s\"}", 
-                             errorCode, message.replace("\"", "'"));
+    private Response errorResponse(Response.Status status, String errorCode, String message) {
+        return Response.status(status).entity(new ErrorResponse(errorCode, message)).build();
     }
-    
+
+    // OSRM failures already carry the HTTP status they map to (502, 504, etc.)
+    private Response errorResponse(OSRMException e) {
+        return Response.status(e.getHttpStatus()).entity(new ErrorResponse(e.getErrorCode(), e.getMessage())).build();
+    }
+
+    // A DependencyExecutor pool is full - the client should back off briefly
+    // (or the call ran past the pool's timeout and was cancelled - 504)
+    private Response busyResponse(DependencyBusyException e) {
+        if (e instanceof DependencyTimeoutException){
+            String code = "cosmos".equals(e.getDependency()) ? "DATABASE_TIMEOUT" : "DEPENDENCY_TIMEOUT";
+            return Response.status(Response.Status.GATEWAY_TIMEOUT)
+                    .entity(new ErrorResponse(code, e.getMessage()))
+                    .build();
+        }
+        String code = "cosmos".equals(e.getDependency()) ? "DATABASE_BUSY" : "DEPENDENCY_BUSY";
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, 1)
+                .entity(new ErrorResponse(code, e.getMessage()))
+                .build();
+    }
+
     /**
      * Endpoint: POST /items/{item_id}/request
-     * 
+     *
      * Create a rental request for a specific item
      * Validates item exists and saves request to Cosmos DB with 'pending' status
-     * 
+     *
+     * Double-booking guard:
+     * - The item must be available and must not already have a pending request
+     * - The item is looked up in the in-memory ItemCatalog (Cosmos DB only for IDs
+     *   the catalog does not know yet)
+     * - ReservationLedger rejects requests for items it knows are taken without a
+     *   database call; otherwise the request and the item's reservation are written
+     *   in one conditional Cosmos DB transaction
+     * - 409 ITEM_UNAVAILABLE / ITEM_ALREADY_REQUESTED when the item cannot be booked
+     *
+     * Idempotency-Key header (optional):
+     * - A retry with the same key (and user) returns the original response with
+     *   the header Idempotent-Replayed: true instead of creating a second request
+     * - Recent keys are answered from IdempotencyCache without a database call;
+     *   older ones from the idempotency record written with the request
+     * - 409 REQUEST_IN_PROGRESS while the first submission is still running,
+     *   422 IDEMPOTENCY_KEY_REUSED if the key was used for another item,
+     *   503 with Retry-After while the cache is full of submissions in progress
+     * - Server errors (5xx) are not remembered, so the retry runs again
+     *
      * Request ID format: REQ-{timestamp}-{random}
      * Example: REQ-1736694123456-7845
-     * 
+     *
      * Example: POST http://localhost:8080/RESTServices/webresources/RESTAPI/items/i001/request?user_id=Alice
-     * 
+     *
      * @param itemId The item to request (path parameter)
      * @param userId The user making the request (query parameter, defaults to DEMO_USER)
-     * @return JSON response with created request details including ID, status, timestamp
+     * @return 201 Created with the request details including ID, status, timestamp
      */
-        
-        @POST
-        @Path("/items/{item_id}/request")
-        @Produces(MediaType.APPLICATION_JSON)
-        public String createItemRequest(@PathParam("item_id") String itemId,
-                                        @QueryParam("user_id") String userId){
-        
+    @POST
+    @Path("/items/{item_id}/request")
+    public Response createItemRequest(@PathParam("item_id") String itemId,
+                                      @QueryParam("user_id") String userId){
+
         //use default user if not provided
         if (userId == null || userId.isEmpty()){
             userId = "DEMO_USER";
         }
-        
-        CosmosDBConnection db = null;
-        
+
+        String idempotencyKey = headers.getHeaderString(IDEMPOTENCY_KEY_HEADER);
+        if (idempotencyKey == null){
+            return submitItemRequest(itemId, userId, null);
+        }
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > IDEMPOTENCY_KEY_MAX_LENGTH){
+            return errorResponse(Response.Status.BAD_REQUEST, "INVALID_IDEMPOTENCY_KEY",
+                                 "Idempotency-Key must be 1 to " + IDEMPOTENCY_KEY_MAX_LENGTH + " characters");
+        }
+
+        IdempotencyCache idempotency = IdempotencyCache.getInstance();
+        IdempotencyCache.Entry previous;
         try{
-            db = CosmosDBConnection.getInstance();
-        
-        //validate item exists before creating request
-        items item = db.getItemById(itemId);
-        if (item == null){
-            return createErrorResponse("ITEM_NOT_FOUND",
-                                       "Item with ID '"+ itemId + "' not found");
+            previous = idempotency.begin(userId, idempotencyKey, itemId);
+        }catch(DependencyBusyException e){
+            return busyResponse(e);
         }
-        
-        //create a unique request ID using timestamps + random number to prevent duplicates
-        String requestId = "REQ-" + System.currentTimeMillis() + "-" + (int)(Math.random() * 10000);
-        
-        //get current timestamps
-        String timestamp = java.time.LocalDateTime.now().toString();
-        
-        //create request object with 'pending' status
-        Request request = new Request(
-                requestId,
-             itemId,
-             userId,
-            "pending",
-          timestamp
-        );
-        
-        //Saved to request container
-        Request savedRequest = db.createRequest(request);
-        
-        if (savedRequest == null){
-            return createErrorResponse("REQUEST_FAILED",
-                 "Failed to create request in database");
+        if (previous != null){
+            if (!previous.getTarget().equals(itemId)){
+                IdempotencyCache.KEY_REUSED.increment();
+                //422 Unprocessable Entity has no Response.Status constant in JAX-RS 2.1
+                return Response.status(422).entity(new ErrorResponse("IDEMPOTENCY_KEY_REUSED",
+                        "Idempotency-Key was already used for item '" + previous.getTarget() + "'")).build();
+            }
+            if (!previous.isComplete()){
+                IdempotencyCache.IN_PROGRESS.increment();
+                return errorResponse(Response.Status.CONFLICT, "REQUEST_IN_PROGRESS",
+                                     "A request with this Idempotency-Key is still being processed");
+            }
+            IdempotencyCache.REPLAYED.increment();
+            return Response.status(previous.getStatus()).entity(previous.getEntity())
+                    .header(IDEMPOTENT_REPLAYED_HEADER, "true")
+                    .build();
         }
-        
-        ObjectMapper mapper = new ObjectMapper();
-        return mapper.writerWithDefaultPrettyPrinter()
-                     .writeValueAsString(savedRequest);
-        
+
+        Response response = submitItemRequest(itemId, userId, idempotencyKey);
+        if (response.getStatus() >= 500){
+            idempotency.abandon(userId, idempotencyKey);
+        }else{
+            idempotency.complete(userId, idempotencyKey, response.getStatus(), response.getEntity());
+        }
+        return response;
+    }
+
+    // Validates the item and creates the request - the body of createItemRequest
+    private Response submitItemRequest(String itemId, String userId, String idempotencyKey){
+        try{
+            CosmosDBConnection db = CosmosDBConnection.getInstance();
+
+            //validate item exists before creating request - catalog first, database for newer items
+            items item = null;
+            try{
+                item = ItemCatalog.getInstance().current().getById(itemId);
+            }catch(Exception e){
+                System.err.println("Catalog unavailable, reading item from database: " + e.getMessage());
+            }
+            if (item == null){
+                item = DependencyExecutor.COSMOS.call(() -> db.getItemById(itemId));
+            }
+            if (item == null){
+                return errorResponse(Response.Status.NOT_FOUND, "ITEM_NOT_FOUND",
+                                     "Item with ID '"+ itemId + "' not found");
+            }
+            if (!item.isAvailable()){
+                return errorResponse(Response.Status.CONFLICT, "ITEM_UNAVAILABLE",
+                                     "Item with ID '"+ itemId + "' is not available for rent");
+            }
+
+            //create a unique request ID using timestamps + random number to prevent duplicates
+            String requestId = "REQ-" + System.currentTimeMillis() + "-" + (int)(Math.random() * 10000);
+
+            //get current timestamps
+            String timestamp = java.time.LocalDateTime.now().toString();
+
+            //create request object with 'pending' status
+            Request request = new Request(
+                    requestId,
+                    itemId,
+                    userId,
+                    "pending",
+                    timestamp
+            );
+
+            //Reserve the item and save to request container
+            ReservationLedger.Outcome outcome = DependencyExecutor.COSMOS.call(
+                    () -> ReservationLedger.getInstance().reserve(request, idempotencyKey, db));
+
+            if (outcome != ReservationLedger.Outcome.RESERVED && outcome != ReservationLedger.Outcome.FAILED
+                    && idempotencyKey != null){
+                //the conflict may be our own earlier submission (another instance or before a restart)
+                Request original = null;
+                try{
+                    original = DependencyExecutor.COSMOS.call(() -> db.findIdempotentRequest(itemId, userId, idempotencyKey));
+                }catch(Exception e){
+                    System.err.println("Idempotency record lookup failed: " + e.getMessage());
+                }
+                if (original != null){
+                    IdempotencyCache.RECOVERED.increment();
+                    return Response.status(Response.Status.CREATED).entity(original)
+                            .header(IDEMPOTENT_REPLAYED_HEADER, "true")
+                            .build();
+                }
+            }
+            if (outcome == ReservationLedger.Outcome.CONFLICT){
+                return errorResponse(Response.Status.CONFLICT, "ITEM_ALREADY_REQUESTED",
+                     "Item with ID '"+ itemId + "' already has a pending request");
+            }
+            if (outcome == ReservationLedger.Outcome.DUPLICATE){
+                return errorResponse(Response.Status.CONFLICT, "IDEMPOTENCY_KEY_CONFLICT",
+                     "Idempotency-Key was already used for item '" + itemId + "'");
+            }
+            if (outcome == ReservationLedger.Outcome.FAILED){
+                return errorResponse(Response.Status.INTERNAL_SERVER_ERROR, "REQUEST_FAILED",
+                     "Failed to create request in database");
+            }
+
+            return Response.status(Response.Status.CREATED).entity(request).build();
+
+        }catch(DependencyBusyException e){
+            return busyResponse(e);
         }catch(Exception e){
-            return createErrorResponse("SERVER_ERROR","Failed to process request: " + e.getMessage());
-        }finally{
-         if(db != null){  
+            return errorResponse(Response.Status.INTERNAL_SERVER_ERROR, "SERVER_ERROR","Failed to process request: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Endpoint: PUT /requests/{request_id}/cancel
+     *
+     * Cancel an existing rental request by updating its status to 'cancelled'
+     * Request must exist in database
+     *
+     * Example: PUT http://localhost:8080/RESTServices/webresources/RESTAPI/requests/REQ-1736694123456-xxxx/cancel
+     *
+     * @param requestId The unique request ID to cancel
+     * @return Updated request showing 'cancelled' status
+     */
+    @PUT
+    @Path("/requests/{request_id}/cancel")
+    public Response cancelRequest(@PathParam("request_id") String requestId){
+
+        try{
+            Request cancelledRequest = DependencyExecutor.COSMOS.call(() -> CosmosDBConnection.getInstance().cancelRequest(requestId));
+
+            if (cancelledRequest == null){
+                return errorResponse(Response.Status.NOT_FOUND, "REQUEST_NOT_FOUND", "Request with ID '" + requestId +"' not found");
             }
-        }  
+            ReservationLedger.getInstance().release(cancelledRequest.getItem_id());
+
+            return Response.ok(cancelledRequest).build();
+
+        }catch(DependencyBusyException e){
+            return busyResponse(e);
+        }catch(DatabaseWriteException e){
+            return cancelFailure(e.getStatusCode(), e.getMessage());
+        }catch(CosmosException e){
+            return cancelFailure(e.getStatusCode(), e.getMessage());
+        }catch(Exception e){
+            return errorResponse(Response.Status.INTERNAL_SERVER_ERROR, "CANCEL_FAILED", "Failed to cancel the request: " + e.getMessage());
+        }
     }
-        
-        /**
-        * Endpoint: PUT /requests/{request_id}/cancel
-        * 
-        * Cancel an existing rental request by updating its status to 'cancelled'
-        * Request must exist in database
-        * 
-        * Example: PUT http://localhost:8080/RESTServices/webresources/RESTAPI/requests/REQ-1736694123456-xxxx/cancel
-        * 
-        * @param requestId The unique request ID to cancel
-        * @return JSON response with updated request showing 'cancelled' status
-         */
-        @PUT
-        @Path("/requests/{request_id}/cancel")
-        @Produces(MediaType.APPLICATION_JSON)
-        public String cancelRequest(@PathParam("request_id") String requestId){
-            
-            CosmosDBConnection db = null;
-            
+
+    // A request that exists but could not be cancelled - never reported as not found
+    private Response cancelFailure(int statusCode, String message){
+        if (statusCode == 409 || statusCode == 412){
+            return errorResponse(Response.Status.CONFLICT, "CANCEL_CONFLICT",
+                    "The request changed while it was being cancelled - please retry");
+        }
+        if (statusCode == 429){
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, 1)
+                    .entity(new ErrorResponse("DATABASE_BUSY", "Database is busy - retry shortly"))
+                    .build();
+        }
+        return errorResponse(Response.Status.SERVICE_UNAVAILABLE, "DATABASE_ERROR", "Failed to cancel the request: " + message);
+    }
+
+    /**
+     * Endpoint: GET /users/{user_id}/requests
+     *
+     * A user's rental requests, newest first, one page at a time
+     *
+     * How it works:
+     * - Read from the UserRequests container, which is partitioned by user_id, so
+     *   the query touches one partition instead of scanning every item's requests
+     * - UserRequests is filled from the Requests change feed (see RequestViewSync):
+     *   it is eventually consistent, a new or cancelled request appears within a
+     *   few seconds
+     * - Cursor pagination: pass nextCursor from the previous page as ?cursor=
+     *
+     * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/users/Alice/requests?limit=20
+     *
+     * @param userId The user whose requests are listed
+     * @param cursor Optional nextCursor of the previous page
+     * @param limitParam Optional page size (default: 20, max: 100)
+     * @return RequestListResponse with the page and the cursor of the next page
+     */
+    @GET
+    @Path("/users/{user_id}/requests")
+    public Response getUserRequests(@PathParam("user_id") String userId,
+                                    @QueryParam("cursor") String cursor,
+                                    @QueryParam("limit") String limitParam){
+        return requestListResponse("user:" + userId, cursor, limitParam,
+                (continuation, limit) -> CosmosDBConnection.getInstance().getUserRequests(userId, continuation, limit));
+    }
+
+    /**
+     * Endpoint: GET /items/{item_id}/requests
+     *
+     * An item's rental requests, newest first, one page at a time
+     * Requests are partitioned by item_id, so this is a single-partition query
+     * and always up to date
+     *
+     * Example: http://localhost:8080/RESTServices/webresources/RESTAPI/items/i001/requests?limit=20
+     *
+     * @param itemId The item whose requests are listed
+     * @param cursor Optional nextCursor of the previous page
+     * @param limitParam Optional page size (default: 20, max: 100)
+     * @return RequestListResponse with the page and the cursor of the next page
+     */
+    @GET
+    @Path("/items/{item_id}/requests")
+    public Response getItemRequests(@PathParam("item_id") String itemId,
+                                    @QueryParam("cursor") String cursor,
+                                    @QueryParam("limit") String limitParam){
+        return requestListResponse("item:" + itemId, cursor, limitParam,
+                (continuation, limit) -> CosmosDBConnection.getInstance().getItemRequests(itemId, continuation, limit));
+    }
+
+    // Reads one page of requests for the given continuation token and page size
+    private interface RequestPageQuery {
+        RequestListResponse page(String continuation, int limit);
+    }
+
+    /*
+     * Shared part of the request listings - validates limit and cursor, runs the
+     * query and turns the Cosmos continuation into the next cursor
+     *
+     * A cursor is the base64url encoded scope ("user:{id}" / "item:{id}") plus the
+     * Cosmos continuation token, so a cursor from one listing is rejected by another
+     */
+    private Response requestListResponse(String scope, String cursor, String limitParam, RequestPageQuery query){
+        int limit = REQUESTS_DEFAULT_LIMIT;
+        if (limitParam != null && !limitParam.isEmpty()){
             try{
-                db = CosmosDBConnection.getInstance();
-                
-                Request cancelledRequest = db.cancelRequest(requestId);
-                
-                if (cancelledRequest == null){
-                    return createErrorResponse("REQUEST_NOT_FOUND", "Request with ID '" + requestId +"' not found");
-                }
-                
-                ObjectMapper mapper = new ObjectMapper();
-                return mapper.writerWithDefaultPrettyPrinter()
-                             .writeValueAsString(cancelledRequest);
-                
-            }catch(Exception e){
-                return createErrorResponse("CANCEL_FAILED", "Failed to cancel the request: " + e.getMessage());
-                
-            }finally{
-                if(db != null){
+                limit = Integer.parseInt(limitParam);
+            }catch(NumberFormatException e){
+                limit = 0;
+            }
+            if (limit < 1 || limit > REQUESTS_MAX_LIMIT){
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_LIMIT", "limit must be between 1 and " + REQUESTS_MAX_LIMIT);
+            }
+        }
+
+        String continuation = null;
+        if (cursor != null && !cursor.isEmpty()){
+            continuation = decodeCursor(scope, cursor);
+            if (continuation == null){
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_CURSOR", "cursor is not a nextCursor of this listing");
             }
         }
+
+        RequestListResponse page;
+        try{
+            String from = continuation;
+            int size = limit;
+            page = DependencyExecutor.COSMOS.call(() -> query.page(from, size));
+        }catch(DependencyBusyException e){
+            return busyResponse(e);
+        }catch(CosmosException e){
+            if (e.getStatusCode() == 400 && continuation != null){
+                return errorResponse(Response.Status.BAD_REQUEST, "INVALID_CURSOR", "cursor is no longer valid");
+            }
+            return errorResponse(Response.Status.SERVICE_UNAVAILABLE, "DATABASE_ERROR", "Failed to retrieve requests: " + e.getMessage());
+        }catch(Exception e){
+            return errorResponse(Response.Status.SERVICE_UNAVAILABLE, "DATABASE_ERROR", "Failed to retrieve requests: " + e.getMessage());
+        }
+
+        if (page.getNextCursor() != null){
+            page.setNextCursor(encodeCursor(scope, page.getNextCursor()));
+        }
+        return Response.ok(page).cacheControl(NO_STORE).build();
+    }
+
+    private static String encodeCursor(String scope, String continuation){
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((scope + "\n" + continuation).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The continuation token inside a cursor, or null if the cursor is malformed or from another listing
+    private static String decodeCursor(String scope, String cursor){
+        String decoded;
+        try{
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        }catch(IllegalArgumentException e){
+            return null;
+        }
+        String prefix = scope + "\n";
+        if (!decoded.startsWith(prefix) || decoded.length() == prefix.length()){
+            return null;
+        }
+        return decoded.substring(prefix.length());
     }
 }
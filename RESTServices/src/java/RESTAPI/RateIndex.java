@@ -0,0 +1,158 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+/**
+ * Rate Index - Items ordered by daily rate
+ *
+ * Built once per ItemCatalog snapshot for the minRate/maxRate filter and
+ * sort=rate on GET /items
+ *
+ * Storage:
+ * - rates: double[] sorted ascending
+ * - positions: int[] catalog positions in the same order (ties by position)
+ * - Both are primitive arrays, so a price range is two binary searches and
+ *   walking a rate-ordered page allocates nothing per item
+ *
+ * @author N1237155
+ */
+public final class RateIndex {
+
+    private final double[] rates;
+    private final int[] positions;
+    private final int universe;
+
+    /**
+     * Build the index for a snapshot's columns
+     *
+     * @param columns The snapshot's items
+     */
+    public RateIndex(CatalogColumns columns) {
+        int n = columns.size();
+        double[] byPosition = new double[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            byPosition[i] = columns.rate(i);
+            order[i] = i;
+        }
+        sort(order, byPosition, new int[n], 0, n);
+
+        this.universe = n;
+        this.positions = order;
+        this.rates = new double[n];
+        for (int i = 0; i < n; i++) {
+            rates[i] = byPosition[order[i]];
+        }
+    }
+
+    // Stable merge sort of positions by rate (positions start ascending, so ties keep catalog order)
+    private static void sort(int[] order, double[] rate, int[] scratch, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sort(order, rate, scratch, from, mid);
+        sort(order, rate, scratch, mid, to);
+        if (Double.compare(rate[order[mid - 1]], rate[order[mid]]) <= 0) {
+            return; // halves already in order
+        }
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && Double.compare(rate[scratch[left]], rate[scratch[right]]) <= 0)) {
+                order[i] = scratch[left++];
+            } else {
+                order[i] = scratch[right++];
+            }
+        }
+    }
+
+    /**
+     * First index whose rate is >= minRate
+     */
+    public int lowerBound(double minRate) {
+        int low = 0;
+        int high = rates.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rates[mid] < minRate) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * First index whose rate is > maxRate
+     */
+    public int upperBound(double maxRate) {
+        int low = 0;
+        int high = rates.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (rates[mid] <= maxRate) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Items whose daily rate is within [minRate, maxRate]
+     *
+     * @param minRate Lowest rate (Double.NEGATIVE_INFINITY for no lower limit)
+     * @param maxRate Highest rate (Double.POSITIVE_INFINITY for no upper limit)
+     * @return Matching positions, ready to AND with the other filters
+     */
+    public ItemBitmap range(double minRate, double maxRate) {
+        int from = lowerBound(minRate);
+        int to = upperBound(maxRate);
+        if (from >= to) {
+            return ItemBitmap.empty(universe);
+        }
+        if (from == 0 && to == rates.length) {
+            return ItemBitmap.all(universe);
+        }
+        int[] slice = new int[to - from];
+        System.arraycopy(positions, from, slice, 0, slice.length);
+        return ItemBitmap.ofUnsorted(slice, slice.length, universe);
+    }
+
+    /**
+     * Select a page of matching positions ordered by rate
+     *
+     * Only the [minRate, maxRate] slice of the index is walked
+     *
+     * @param matches Positions allowed in the result (already includes the rate range)
+     * @param minRate Lowest rate of the range
+     * @param maxRate Highest rate of the range
+     * @param fromRank Rank of the first position to return
+     * @param count Maximum number of positions to return
+     * @param descending true for the most expensive items first
+     * @return Positions in rate order
+     */
+    public int[] page(ItemBitmap matches, double minRate, double maxRate,
+                      int fromRank, int count, boolean descending) {
+        int from = lowerBound(minRate);
+        int to = upperBound(maxRate);
+        int size = Math.max(0, Math.min(count, matches.cardinality() - fromRank));
+        int[] result = new int[size];
+        int rank = 0;
+        int filled = 0;
+        for (int i = from; i < to && filled < size; i++) {
+            // Descending walks the slice backwards; ties then come last-position-first
+            int position = positions[descending ? to - 1 - (i - from) : i];
+            if (matches.contains(position) && rank++ >= fromRank) {
+                result[filled++] = position;
+            }
+        }
+        return result;
+    }
+}
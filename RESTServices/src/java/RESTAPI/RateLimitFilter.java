@@ -0,0 +1,147 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Rate Limit Filter - Per-client request limits in front of every endpoint
+ *
+ * One client paging distance listings could otherwise use up the Cosmos DB
+ * throughput and the OSRM allowance for everybody. Each client gets a token
+ * bucket per cost tier (see TokenBucketLimiter); a request without a token is
+ * answered 429 RATE_LIMITED with a Retry-After header before it reaches
+ * RESTServices
+ *
+ * Clients:
+ * - Keyed by the client address (the first X-Forwarded-For entry if
+ *   trustForwardedFor is set, e.g. behind the Azure App Service front end),
+ *   narrowed by the user_id query parameter when present, so users behind one
+ *   address (NAT, office proxy) do not share a bucket
+ * - user_id is not authenticated, so every request also takes a token from its
+ *   address's bucket, which allows a few users' worth of requests. A client
+ *   rotating user_id gets a fresh per-user bucket each time but is still held
+ *   to its address's limit
+ *
+ * Tiers (see EndpointCost):
+ * - expensive: calls OSRM or queries/writes Cosmos DB per request (ROUTING, DATABASE)
+ * - cheap: served from the in-memory catalog (CATALOG)
+ *
+ * Configuration:
+ * - System property cyclenest.rateLimit.enabled (default true)
+ * - System property cyclenest.rateLimit.cheap.perSecond / .burst (default 20 / 40)
+ * - System property cyclenest.rateLimit.expensive.perSecond / .burst (default 2 / 10)
+ * - System property cyclenest.rateLimit.cheap.address.perSecond / .burst (default 100 / 200)
+ * - System property cyclenest.rateLimit.expensive.address.perSecond / .burst (default 10 / 30)
+ * - System property cyclenest.rateLimit.trustForwardedFor (default false)
+ *
+ * Metrics: rateLimit.limited.cheap, rateLimit.limited.expensive; gauge rateLimit.clients
+ *
+ * Registered in ApplicationConfig
+ *
+ * @author N1237155
+ */
+@Provider
+public class RateLimitFilter implements ContainerRequestFilter {
+
+    private static final boolean ENABLED =
+            Boolean.parseBoolean(System.getProperty("cyclenest.rateLimit.enabled", "true"));
+    private static final boolean TRUST_FORWARDED_FOR = Boolean.getBoolean("cyclenest.rateLimit.trustForwardedFor");
+
+    private static final TokenBucketLimiter CHEAP = new TokenBucketLimiter(
+            doubleProperty("cyclenest.rateLimit.cheap.perSecond", 20),
+            doubleProperty("cyclenest.rateLimit.cheap.burst", 40));
+    private static final TokenBucketLimiter EXPENSIVE = new TokenBucketLimiter(
+            doubleProperty("cyclenest.rateLimit.expensive.perSecond", 2),
+            doubleProperty("cyclenest.rateLimit.expensive.burst", 10));
+    private static final TokenBucketLimiter CHEAP_ADDRESS = new TokenBucketLimiter(
+            doubleProperty("cyclenest.rateLimit.cheap.address.perSecond", 100),
+            doubleProperty("cyclenest.rateLimit.cheap.address.burst", 200));
+    private static final TokenBucketLimiter EXPENSIVE_ADDRESS = new TokenBucketLimiter(
+            doubleProperty("cyclenest.rateLimit.expensive.address.perSecond", 10),
+            doubleProperty("cyclenest.rateLimit.expensive.address.burst", 30));
+
+    private static final LongAdder LIMITED_CHEAP = ServiceMetrics.counter("rateLimit.limited.cheap");
+    private static final LongAdder LIMITED_EXPENSIVE = ServiceMetrics.counter("rateLimit.limited.expensive");
+
+    static {
+        ServiceMetrics.gauge("rateLimit.clients", () -> CHEAP.size() + EXPENSIVE.size());
+    }
+
+    @Context
+    private HttpServletRequest servletRequest;
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Ignoring invalid " + name + "=" + value);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        if (!ENABLED) {
+            return;
+        }
+        boolean expensive = EndpointCost.of(request) != EndpointCost.CATALOG;
+        long waitNanos = tryAcquire(expensive ? EXPENSIVE : CHEAP, expensive ? EXPENSIVE_ADDRESS : CHEAP_ADDRESS,
+                clientAddress(request), request.getUriInfo().getQueryParameters().getFirst("user_id"));
+        if (waitNanos == 0) {
+            return;
+        }
+
+        (expensive ? LIMITED_EXPENSIVE : LIMITED_CHEAP).increment();
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        request.abortWith(Response.status(Response.Status.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .entity(new ErrorResponse("RATE_LIMITED",
+                        "Too many requests - retry after " + retryAfterSeconds + " second(s)"))
+                .build());
+    }
+
+    /**
+     * Take a token for one request from its client's bucket and its address's bucket
+     *
+     * @param perClient Limiter keyed by address and user
+     * @param perAddress Limiter keyed by address only
+     * @param address Client address
+     * @param userId user_id query parameter (may be null)
+     * @return 0 if the request may proceed, otherwise the nanoseconds to wait
+     */
+    static long tryAcquire(TokenBucketLimiter perClient, TokenBucketLimiter perAddress, String address, String userId) {
+        String client = userId == null || userId.isEmpty() ? address : address + "\n" + userId;
+        long waitNanos = perClient.tryAcquire(client);
+        if (waitNanos != 0) {
+            return waitNanos; // the address's token is kept for its other users
+        }
+        return perAddress.tryAcquire(address);
+    }
+
+    private String clientAddress(ContainerRequestContext request) {
+        if (TRUST_FORWARDED_FOR) {
+            String forwardedFor = request.getHeaderString("X-Forwarded-For");
+            if (forwardedFor != null && !forwardedFor.isEmpty()) {
+                int comma = forwardedFor.indexOf(',');
+                return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+            }
+        }
+        return servletRequest != null ? servletRequest.getRemoteAddr() : "unknown";
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.List;
+
+/**
+ * Request List Response Model - One page of rental requests (cursor pagination)
+ *
+ * Returned by GET /users/{user_id}/requests and GET /items/{item_id}/requests,
+ * newest request first
+ *
+ * JSON Format:
+ * {"requests": [...], "limit": 20, "hasMore": true, "nextCursor": "dXNlcjpB..."}
+ *
+ * Cursor Pagination:
+ * - nextCursor is passed back as ?cursor= to get the following page
+ * - It continues the underlying Cosmos DB query where the last page stopped, so
+ *   later pages cost the same as the first (no offset to skip)
+ * - nextCursor is null on the last page
+ *
+ * @author N1237155
+ */
+public class RequestListResponse {
+
+    private List<Request> requests;
+    private int limit;
+    private boolean hasMore;
+    private String nextCursor;
+
+    // Empty constructor for Jackson
+    public RequestListResponse() {
+    }
+
+    public RequestListResponse(List<Request> requests, int limit, String nextCursor) {
+        this.requests = requests;
+        this.limit = limit;
+        this.nextCursor = nextCursor;
+        this.hasMore = nextCursor != null;
+    }
+
+    public List<Request> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<Request> requests) {
+        this.requests = requests;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import com.azure.cosmos.CosmosException;
+import com.azure.cosmos.models.CosmosChangeFeedRequestOptions;
+import com.azure.cosmos.models.CosmosItemRequestOptions;
+import com.azure.cosmos.models.FeedRange;
+import com.azure.cosmos.models.FeedResponse;
+import com.azure.cosmos.models.PartitionKey;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request View Sync - Keeps the UserRequests container in step with Requests
+ *
+ * Requests is partitioned by item_id, so listing one user's requests there would
+ * be a cross-partition scan. UserRequests holds a copy of every request
+ * partitioned by user_id; GET /users/{user_id}/requests reads only that copy
+ *
+ * How it works:
+ * - Started on deploy and stopped on undeploy by ServiceLifecycle (never from
+ *   a request, so a request finishing during undeploy cannot restart it)
+ * - One background thread reads the Requests change feed every POLL_MS
+ * - Every created or updated request (e.g. a cancellation) is upserted into
+ *   UserRequests under the same id; reservation markers are skipped
+ * - After each page the change feed continuation is saved as a checkpoint
+ *   document in UserRequests (partition "__sync__"), so a restarted service
+ *   continues where it stopped instead of copying everything again
+ * - Upserts are idempotent, so a page that is applied twice (e.g. after a crash
+ *   before the checkpoint) does no harm
+ *
+ * Consistency:
+ * - The user view is eventually consistent: a new or cancelled request shows up
+ *   after the next poll (a few seconds). Requests stays the source of truth
+ * - A failed poll is retried from the last checkpoint on the next poll
+ *
+ * Configuration:
+ * - System property cyclenest.userView.pollMillis (default 2000)
+ *
+ * Metrics: userView.synced (requests copied), userView.polls, userView.failures;
+ * gauge userView.secondsSinceSync (time since the last successful poll)
+ *
+ * @author N1237155
+ */
+public final class RequestViewSync {
+
+    private static final long POLL_MS = Math.max(100L, Long.getLong("cyclenest.userView.pollMillis", 2000L));
+    private static final String CHECKPOINT_ID = "requests-changefeed";
+    private static final String CHECKPOINT_PARTITION = "__sync__";
+
+    private static final LongAdder SYNCED = ServiceMetrics.counter("userView.synced");
+    private static final LongAdder POLLS = ServiceMetrics.counter("userView.polls");
+    private static final LongAdder FAILURES = ServiceMetrics.counter("userView.failures");
+
+    private static final RequestViewSync INSTANCE = new RequestViewSync();
+
+    private ScheduledExecutorService scheduler;
+    private String continuation;      // change feed position, null until the checkpoint was read
+    private boolean checkpointLoaded;
+    private volatile long lastSyncAt; // 0 until the first successful poll
+
+    private RequestViewSync() {
+        ServiceMetrics.gauge("userView.secondsSinceSync",
+                () -> lastSyncAt == 0 ? -1.0 : (System.currentTimeMillis() - lastSyncAt) / 1000.0);
+    }
+
+    /**
+     * Get the shared sync
+     *
+     * @return The single RequestViewSync instance
+     */
+    public static RequestViewSync getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start polling the change feed (does nothing if already running)
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "user-view-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, 0, POLL_MS, TimeUnit.MILLISECONDS);
+        System.out.println("UserRequests sync started (every " + POLL_MS + " ms)");
+    }
+
+    /**
+     * Stop polling - a poll in progress is interrupted
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    // Runs on the sync thread only
+    private void poll() {
+        POLLS.increment();
+        try {
+            CosmosDBConnection db = CosmosDBConnection.getInstance();
+            if (!checkpointLoaded) {
+                continuation = readCheckpoint(db);
+                checkpointLoaded = true;
+            }
+
+            CosmosChangeFeedRequestOptions options = continuation == null
+                    ? CosmosChangeFeedRequestOptions.createForProcessingFromBeginning(FeedRange.forFullRange())
+                    : CosmosChangeFeedRequestOptions.createForProcessingFromContinuation(continuation);
+
+            for (FeedResponse<JsonNode> page : db.requestsContainer.queryChangeFeed(options, JsonNode.class).iterableByPage()) {
+                for (JsonNode change : page.getResults()) {
+                    copy(db, change);
+                }
+                String next = page.getContinuationToken();
+                if (next != null && !next.equals(continuation)) {
+                    continuation = next;
+                    writeCheckpoint(db, next);
+                }
+                if (page.getResults().isEmpty() || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+            }
+            lastSyncAt = System.currentTimeMillis();
+        } catch (RuntimeException e) {
+            // Keep the thread alive - the next poll starts again from the last checkpoint
+            FAILURES.increment();
+            System.err.println("UserRequests sync failed: " + e.getMessage());
+        }
+    }
+
+    // Upsert one changed Requests document into the user's partition
+    private void copy(CosmosDBConnection db, JsonNode change) {
+        String userId = change.path("user_id").asText(null);
+        if (change.has("type") || userId == null || userId.isEmpty() || !(change instanceof ObjectNode)) {
+            return; // reservation marker or not a request
+        }
+        ObjectNode request = ((ObjectNode) change).deepCopy();
+        // System properties (_rid, _etag, _ts, _lsn...) belong to the source document
+        List<String> system = new ArrayList<>();
+        for (Iterator<String> names = request.fieldNames(); names.hasNext();) {
+            String name = names.next();
+            if (name.startsWith("_")) {
+                system.add(name);
+            }
+        }
+        request.remove(system);
+        db.userRequestsContainer.upsertItem(request, new PartitionKey(userId), new CosmosItemRequestOptions());
+        SYNCED.increment();
+    }
+
+    private static String readCheckpoint(CosmosDBConnection db) {
+        try {
+            return db.userRequestsContainer.readItem(CHECKPOINT_ID, new PartitionKey(CHECKPOINT_PARTITION), JsonNode.class)
+                    .getItem().path("continuation").asText(null);
+        } catch (CosmosException e) {
+            if (e.getStatusCode() == 404) {
+                return null; // first run - copy the whole feed
+            }
+            throw e;
+        }
+    }
+
+    private static void writeCheckpoint(CosmosDBConnection db, String continuation) {
+        Map<String, Object> checkpoint = new LinkedHashMap<>();
+        checkpoint.put("id", CHECKPOINT_ID);
+        checkpoint.put("user_id", CHECKPOINT_PARTITION);
+        checkpoint.put("type", "checkpoint");
+        checkpoint.put("continuation", continuation);
+        db.userRequestsContainer.upsertItem(checkpoint, new PartitionKey(CHECKPOINT_PARTITION), new CosmosItemRequestOptions());
+    }
+}
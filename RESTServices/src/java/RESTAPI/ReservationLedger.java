@@ -0,0 +1,175 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reservation Ledger - In-memory guard against double-booking an item
+ *
+ * An item can have at most one pending rental request. Cosmos DB enforces this
+ * (see CosmosDBConnection.createReservedRequest); the ledger remembers which
+ * items are already taken, so conflicting POSTs are rejected without a database
+ * round trip
+ *
+ * How it works:
+ * - One entry per reserved item_id in a ConcurrentHashMap
+ * - A new request claims its item with putIfAbsent (compare-and-set), so two
+ *   threads racing for the same item can never both reach Cosmos DB; requests
+ *   for different items never wait for each other
+ * - The winner writes the request and the reservation marker in one Cosmos
+ *   transaction and the claim becomes the item's entry. If Cosmos reports the
+ *   item's marker as taken (e.g. by another service instance) that is recorded
+ *   instead. If only the Idempotency-Key record conflicted, the item is not
+ *   known to be taken and the claim is simply dropped
+ * - Cancelling a request removes the entry
+ *
+ * Staleness:
+ * - Another instance may cancel a request this ledger still holds. Entries
+ *   older than VERIFY_MS are therefore confirmed with one point read before a
+ *   request is rejected because of them
+ * - Dropping an entry is always safe: Cosmos DB stays the source of truth
+ *
+ * Configuration:
+ * - System property cyclenest.ledger.verifySeconds (default 30)
+ *
+ * Metrics: ledger.reserved, ledger.rejected (answered from memory),
+ * ledger.dbConflicts (rejected by Cosmos), ledger.verified, ledger.failed; gauge ledger.entries
+ *
+ * @author N1237155
+ */
+public final class ReservationLedger {
+
+    private static final long VERIFY_MS = Long.getLong("cyclenest.ledger.verifySeconds", 30L) * 1000L;
+
+    private static final LongAdder RESERVED = ServiceMetrics.counter("ledger.reserved");
+    private static final LongAdder REJECTED = ServiceMetrics.counter("ledger.rejected");
+    private static final LongAdder DB_CONFLICTS = ServiceMetrics.counter("ledger.dbConflicts");
+    private static final LongAdder VERIFIED = ServiceMetrics.counter("ledger.verified");
+    private static final LongAdder FAILED = ServiceMetrics.counter("ledger.failed");
+
+    private static final ReservationLedger INSTANCE = new ReservationLedger();
+
+    private final ConcurrentHashMap<String, Holder> reserved = new ConcurrentHashMap<>();
+
+    /**
+     * Result of a reservation attempt
+     */
+    public enum Outcome {
+        RESERVED,  // request created and item reserved
+        CONFLICT,  // item already has a pending request
+        DUPLICATE, // the Idempotency-Key was already used for this item - nothing was written
+        FAILED     // database write failed - nothing was reserved
+    }
+
+    // Who holds an item, and when that was last confirmed
+    private static final class Holder {
+        final String requestId; // null if the holder is not known (reserved by another instance)
+        final long confirmedAt;
+        final boolean inFlight; // claim of a request still being written
+
+        Holder(String requestId, long confirmedAt, boolean inFlight) {
+            this.requestId = requestId;
+            this.confirmedAt = confirmedAt;
+            this.inFlight = inFlight;
+        }
+    }
+
+    private ReservationLedger() {
+        ServiceMetrics.gauge("ledger.entries", () -> reserved.size());
+    }
+
+    /**
+     * Get the shared ledger
+     *
+     * @return The single ReservationLedger instance
+     */
+    public static ReservationLedger getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reserve an item and create the request for it
+     *
+     * @param request New request with status "pending"
+     * @param db Connection used for the conditional write
+     * @return RESERVED, CONFLICT or FAILED
+     */
+    public Outcome reserve(Request request, CosmosDBConnection db) {
+        return reserve(request, null, db);
+    }
+
+    /**
+     * Reserve an item and create the request for it, recording an Idempotency-Key
+     *
+     * @param request New request with status "pending"
+     * @param idempotencyKey Idempotency-Key header value, or null
+     * @param db Connection used for the conditional write
+     * @return RESERVED, CONFLICT, DUPLICATE or FAILED
+     */
+    public Outcome reserve(Request request, String idempotencyKey, CosmosDBConnection db) {
+        String itemId = request.getItem_id();
+        long now = System.currentTimeMillis();
+        Holder claim = new Holder(request.getId(), now, true);
+
+        Holder current = reserved.putIfAbsent(itemId, claim);
+        if (current != null) {
+            if (current.inFlight || now - current.confirmedAt < VERIFY_MS) {
+                REJECTED.increment();
+                return Outcome.CONFLICT;
+            }
+            // Old entry - the item may have been released elsewhere, ask Cosmos once
+            VERIFIED.increment();
+            String holder;
+            try {
+                holder = db.findReservation(itemId);
+            } catch (RuntimeException e) {
+                FAILED.increment();
+                System.err.println("Reservation check failed for item " + itemId + ": " + e.getMessage());
+                return Outcome.FAILED;
+            }
+            if (holder != null) {
+                reserved.replace(itemId, current, new Holder(holder, now, false));
+                REJECTED.increment();
+                return Outcome.CONFLICT;
+            }
+            if (!reserved.replace(itemId, current, claim)) {
+                // Another request claimed the item in the meantime
+                REJECTED.increment();
+                return Outcome.CONFLICT;
+            }
+        }
+
+        CosmosDBConnection.ReservationResult result = db.createReservedRequest(request, idempotencyKey);
+        if (result == CosmosDBConnection.ReservationResult.CREATED) {
+            reserved.replace(itemId, claim, new Holder(request.getId(), System.currentTimeMillis(), false));
+            RESERVED.increment();
+            return Outcome.RESERVED;
+        }
+        if (result == CosmosDBConnection.ReservationResult.ITEM_RESERVED) {
+            reserved.replace(itemId, claim, new Holder(null, System.currentTimeMillis(), false));
+            DB_CONFLICTS.increment();
+            return Outcome.CONFLICT;
+        }
+        reserved.remove(itemId, claim);
+        if (result == CosmosDBConnection.ReservationResult.KEY_USED) {
+            return Outcome.DUPLICATE;
+        }
+        FAILED.increment();
+        return Outcome.FAILED;
+    }
+
+    /**
+     * Forget an item's reservation after its request was cancelled
+     *
+     * A claim that is still being written is left alone
+     *
+     * @param itemId The item that was released
+     */
+    public void release(String itemId) {
+        reserved.computeIfPresent(itemId, (id, holder) -> holder.inFlight ? holder : null);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.io.IOException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Response Timing Filter - Detects the first fast response after a deploy
+ *
+ * Times requests until one successful response takes at most FAST_MS, then
+ * reports it to ServiceLifecycle (gauge lifecycle.secondsToFirstFastResponse)
+ * and stops timing - afterwards the filter costs one volatile read per request
+ *
+ * Configuration:
+ * - System property cyclenest.lifecycle.fastMillis (default 50)
+ *
+ * Registered in ApplicationConfig
+ *
+ * @author N1237155
+ */
+@Provider
+public class ResponseTimingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final long FAST_NANOS = Long.getLong("cyclenest.lifecycle.fastMillis", 50L) * 1_000_000L;
+
+    private static final String STARTED_PROPERTY = "cyclenest.timing.started";
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        if (ServiceLifecycle.awaitingFirstFastResponse()) {
+            request.setProperty(STARTED_PROPERTY, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+        Object started = request.getProperty(STARTED_PROPERTY);
+        if (started != null && response.getStatus() < 400) {
+            ServiceLifecycle.responded(System.nanoTime() - (Long) started <= FAST_NANOS);
+        }
+    }
+}
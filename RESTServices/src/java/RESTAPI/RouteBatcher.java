@@ -0,0 +1,271 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Route Batcher - Groups concurrent single-route lookups into OSRM table calls
+ *
+ * GET /items/{item_id}/distance needs one route per request. Under load many of
+ * these arrive within a few milliseconds of each other, and each one used to be
+ * its own OSRM route call. The batcher holds a lookup for at most WINDOW_MS,
+ * collects the lookups arriving meanwhile and sends them as one table call with
+ * every distinct user location as a source and every distinct item location as
+ * a destination. Each caller then gets its own cell of the matrix
+ *
+ * Batches:
+ * - The first lookup of a batch starts the window; the batch is sent when the
+ *   window ends or as soon as it holds MAX_BATCH lookups
+ * - Identical coordinates share one source / destination, so a batch never has
+ *   more than 2 * MAX_BATCH coordinates (OSRM accepts at most 100)
+ * - The table call runs on the OSRM pool (DependencyExecutor.OSRM). A full pool,
+ *   a call past the pool's timeout, a failed call or a missing cell fails the
+ *   callers concerned with the same OSRMException a route call would have given
+ * - Routes are cached by OSRMClient.routeBatched as before, so cached lookups
+ *   never wait for a window
+ *
+ * Configuration:
+ * - System property cyclenest.batching.enabled (default false - opt-in)
+ * - System property cyclenest.batching.windowMillis (default 3)
+ * - System property cyclenest.batching.maxBatch (default 25, at most 50)
+ *
+ * Metrics:
+ * - routeBatcher.lookups: lookups sent through the batcher
+ * - routeBatcher.tableCalls: outbound OSRM table calls; routeBatcher.failed: of which failed
+ * - routeBatcher.fullBatches: batches sent before their window ended
+ * - Gauges routeBatcher.avgBatchSize (lookups per table call) and
+ *   routeBatcher.avgLatencyMillis (lookup submitted to route delivered)
+ *
+ * @author N1237155
+ */
+public final class RouteBatcher {
+
+    public static final boolean ENABLED = Boolean.getBoolean("cyclenest.batching.enabled");
+    private static final long WINDOW_MS = Math.max(1L, Long.getLong("cyclenest.batching.windowMillis", 3L));
+    private static final int MAX_BATCH = Math.max(1, Math.min((OSRMClient.MAX_TABLE_DESTINATIONS + 1) / 2,
+            Integer.getInteger("cyclenest.batching.maxBatch", 25)));
+
+    private static final LongAdder LOOKUPS = ServiceMetrics.counter("routeBatcher.lookups");
+    private static final LongAdder TABLE_CALLS = ServiceMetrics.counter("routeBatcher.tableCalls");
+    private static final LongAdder FAILED = ServiceMetrics.counter("routeBatcher.failed");
+    private static final LongAdder FULL_BATCHES = ServiceMetrics.counter("routeBatcher.fullBatches");
+    private static final LongAdder BATCHED = new LongAdder();
+    private static final LongAdder COMPLETED = new LongAdder();
+    private static final LongAdder LATENCY_NANOS = new LongAdder();
+
+    private static final RouteBatcher INSTANCE = new RouteBatcher();
+
+    // Ends the windows - sending happens on the OSRM pool, so one thread is enough
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "route-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Batch collecting lookups, null while no window is open
+    private List<Lookup> open;
+
+    // One waiting caller
+    private static final class Lookup {
+        final double startLon, startLat, endLon, endLat;
+        final long submittedAt = System.nanoTime();
+        final CompletableFuture<RouteResponse> result = new CompletableFuture<>();
+
+        Lookup(double startLon, double startLat, double endLon, double endLat) {
+            this.startLon = startLon;
+            this.startLat = startLat;
+            this.endLon = endLon;
+            this.endLat = endLat;
+        }
+    }
+
+    private RouteBatcher() {
+        ServiceMetrics.gauge("routeBatcher.avgBatchSize", () -> {
+            long calls = TABLE_CALLS.sum();
+            return calls == 0 ? 0.0 : (double) BATCHED.sum() / calls;
+        });
+        ServiceMetrics.gauge("routeBatcher.avgLatencyMillis", () -> {
+            long count = COMPLETED.sum();
+            return count == 0 ? 0.0 : LATENCY_NANOS.sum() / 1e6 / count;
+        });
+    }
+
+    /**
+     * Get the shared batcher
+     *
+     * @return The single RouteBatcher instance
+     */
+    public static RouteBatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Route one pair of points as part of the next table call and wait for it
+     *
+     * @return RouteResponse with distance in km and duration in minutes
+     * @throws OSRMException if OSRM is unreachable, busy, times out or finds no route
+     */
+    public RouteResponse route(double startLon, double startLat, double endLon, double endLat) throws OSRMException {
+        Lookup lookup = new Lookup(startLon, startLat, endLon, endLat);
+        LOOKUPS.increment();
+
+        List<Lookup> full = null;
+        synchronized (this) {
+            if (open == null) {
+                List<Lookup> batch = new ArrayList<>(MAX_BATCH);
+                try {
+                    timer.schedule(() -> windowEnded(batch), WINDOW_MS, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    // Shut down on undeploy - open no batch that no window would ever send
+                    throw new OSRMException("ROUTING_UNAVAILABLE", 503, "Routing is shutting down. Please try again.");
+                }
+                open = batch;
+            }
+            open.add(lookup);
+            if (open.size() >= MAX_BATCH) {
+                full = open;
+                open = null;
+            }
+        }
+        if (full != null) {
+            FULL_BATCHES.increment();
+            send(full);
+        }
+
+        try {
+            // The table call is cancelled at the OSRM pool's timeout - this only guards against a batch lost on undeploy
+            return lookup.result.get(WINDOW_MS + DependencyExecutor.OSRM.timeoutMillis() + 1000L, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new OSRMException("TIMEOUT", 504,
+                    "No response from osrm within " + DependencyExecutor.OSRM.timeoutMillis() + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OSRMException("INTERRUPTED", 503, "Request was interrupted. Please try again.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OSRMException) {
+                throw (OSRMException) e.getCause();
+            }
+            throw new OSRMException("OSRM_ERROR", 502, "Routing failed: " + e.getCause().getMessage());
+        }
+    }
+
+    // Send the batch unless it already left full
+    private void windowEnded(List<Lookup> batch) {
+        synchronized (this) {
+            if (open != batch) {
+                return;
+            }
+            open = null;
+        }
+        send(batch);
+    }
+
+    private void send(List<Lookup> batch) {
+        try {
+            DependencyExecutor.OSRM.submit(() -> {
+                fetch(batch);
+                return null;
+            }).whenComplete((done, error) -> {
+                if (error instanceof DependencyTimeoutException) {
+                    fail(batch, OSRMClient.routingBusy((DependencyTimeoutException) error));
+                }
+            });
+        } catch (DependencyBusyException e) {
+            fail(batch, OSRMClient.routingBusy(e));
+        }
+    }
+
+    // Blocking table call for a batch, run on the OSRM pool
+    private static void fetch(List<Lookup> batch) {
+        int size = batch.size();
+        double[] sourceLons = new double[size];
+        double[] sourceLats = new double[size];
+        double[] destLons = new double[size];
+        double[] destLats = new double[size];
+        int[] sourceOf = new int[size];
+        int[] destinationOf = new int[size];
+        Map<String, Integer> sourceIndex = new HashMap<>();
+        Map<String, Integer> destinationIndex = new HashMap<>();
+
+        for (int i = 0; i < size; i++) {
+            Lookup lookup = batch.get(i);
+            int source = sourceIndex.size();
+            Integer known = sourceIndex.putIfAbsent(lookup.startLon + "," + lookup.startLat, source);
+            if (known == null) {
+                sourceLons[source] = lookup.startLon;
+                sourceLats[source] = lookup.startLat;
+            }
+            sourceOf[i] = known == null ? source : known;
+
+            int destination = destinationIndex.size();
+            known = destinationIndex.putIfAbsent(lookup.endLon + "," + lookup.endLat, destination);
+            if (known == null) {
+                destLons[destination] = lookup.endLon;
+                destLats[destination] = lookup.endLat;
+            }
+            destinationOf[i] = known == null ? destination : known;
+        }
+
+        TABLE_CALLS.increment();
+        BATCHED.add(size);
+        RouteResponse[][] routes;
+        try {
+            routes = OSRMClient.fetchTable(sourceLons, sourceLats, sourceIndex.size(),
+                    destLons, destLats, destinationIndex.size());
+        } catch (OSRMException e) {
+            FAILED.increment();
+            fail(batch, e);
+            return;
+        } catch (RuntimeException e) {
+            FAILED.increment();
+            fail(batch, new OSRMException("OSRM_ERROR", 502, "Routing failed: " + e.getMessage()));
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            RouteResponse route = routes[sourceOf[i]][destinationOf[i]];
+            if (route == null) {
+                complete(batch.get(i), null, new OSRMException("NO_ROUTE", 404,
+                        "No route found between the specified coordinates"));
+            } else {
+                complete(batch.get(i), route, null);
+            }
+        }
+    }
+
+    private static void fail(List<Lookup> batch, OSRMException error) {
+        for (Lookup lookup : batch) {
+            complete(lookup, null, error);
+        }
+    }
+
+    // Only the first outcome counts - a table call cancelled at the pool's timeout may still fail its lookups afterwards
+    private static void complete(Lookup lookup, RouteResponse route, OSRMException error) {
+        boolean first = error != null ? lookup.result.completeExceptionally(error) : lookup.result.complete(route);
+        if (first) {
+            COMPLETED.increment();
+            LATENCY_NANOS.add(System.nanoTime() - lookup.submittedAt);
+        }
+    }
+
+    /**
+     * Stop the window timer (called on undeploy by ServiceLifecycle)
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Route Cache - Bounded LRU cache of OSRM route results
+ *
+ * Owned by OSRMClient. Keyed by the exact origin and destination coordinates
+ * (as sent to OSRM), so a cached entry never depends on item IDs or catalog versions
+ *
+ * Why:
+ * - sort=distance on /items routes the same candidates again for every page the
+ *   user opens; with the cache only the first page pays for the OSRM calls and
+ *   later pages see exactly the same distances (stable page boundaries)
+ * - Repeated /items/{id}/distance and /direct lookups are answered without a network call
+ *
+ * Limits:
+ * - At most MAX_ENTRIES routes; the least recently used entry is evicted first
+ * - Entries expire after TTL_MS (road networks change rarely, but they do change)
+ * - Only successful routes are cached - failures are always retried
+ *
+ * Prefetched routes (see RoutePrefetcher):
+ * - Stored with a flag; the first lookup that uses one counts as prefetch.hits
+ * - One evicted or expired before any lookup used it counts as prefetch.wasted
+ *
+ * Configuration:
+ * - System property cyclenest.routeCache.maxEntries (default 10000)
+ * - System property cyclenest.routeCache.ttlSeconds (default 3600)
+ *
+ * @author N1237155
+ */
+public class RouteCache {
+
+    private static final int MAX_ENTRIES = Integer.getInteger("cyclenest.routeCache.maxEntries", 10000);
+    private static final long TTL_MS = Long.getLong("cyclenest.routeCache.ttlSeconds", 3600L) * 1000L;
+
+    static final LongAdder PREFETCH_HITS = ServiceMetrics.counter("prefetch.hits");
+    static final LongAdder PREFETCH_WASTED = ServiceMetrics.counter("prefetch.wasted");
+
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > MAX_ENTRIES) {
+                discarded(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private static final class Entry {
+        final RouteResponse route;
+        final long storedAt;
+        boolean prefetched; // stored by RoutePrefetcher and not looked up yet
+
+        Entry(RouteResponse route, long storedAt, boolean prefetched) {
+            this.route = route;
+            this.storedAt = storedAt;
+            this.prefetched = prefetched;
+        }
+    }
+
+    private static void discarded(Entry entry) {
+        if (entry.prefetched) {
+            PREFETCH_WASTED.increment();
+        }
+    }
+
+    /**
+     * Build the cache key for a route request
+     *
+     * @return Key in OSRM's "lon,lat;lon,lat" coordinate format
+     */
+    public static String key(double startLon, double startLat, double endLon, double endLat) {
+        return OSRMClient.coordinate(startLon) + "," + OSRMClient.coordinate(startLat) + ";"
+                + OSRMClient.coordinate(endLon) + "," + OSRMClient.coordinate(endLat);
+    }
+
+    /**
+     * Look up a cached route
+     *
+     * @param key Key from key()
+     * @return The cached route, or null if absent or expired
+     */
+    public synchronized RouteResponse get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.storedAt > TTL_MS) {
+            entries.remove(key);
+            discarded(entry);
+            return null;
+        }
+        if (entry.prefetched) {
+            entry.prefetched = false;
+            PREFETCH_HITS.increment();
+        }
+        return entry.route;
+    }
+
+    /**
+     * Check for a live entry without counting it as a prefetch hit
+     *
+     * The entry still moves to the most recently used end - it is about to be needed
+     */
+    public synchronized boolean contains(String key) {
+        Entry entry = entries.get(key);
+        return entry != null && System.currentTimeMillis() - entry.storedAt <= TTL_MS;
+    }
+
+    /**
+     * Store a successful route
+     *
+     * @param key Key from key()
+     * @param route The route returned by OSRM
+     */
+    public synchronized void put(String key, RouteResponse route) {
+        store(key, new Entry(route, System.currentTimeMillis(), false));
+    }
+
+    /**
+     * Store a route fetched ahead of need (see RoutePrefetcher)
+     */
+    public synchronized void putPrefetched(String key, RouteResponse route) {
+        store(key, new Entry(route, System.currentTimeMillis(), true));
+    }
+
+    private void store(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            discarded(previous);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Route Prefetcher - Routes the next page of a distance listing in the background
+ *
+ * Users scroll GET /items?userLat=&userLon= one page at a time. After page N has
+ * been served, the routes of page N+1 are fetched into the RouteCache, so the
+ * next request finds them there instead of waiting for OSRM
+ *
+ * Executor:
+ * - THREADS daemon threads at minimum priority, so prefetching never competes
+ *   with request threads for CPU
+ * - Bounded queue of QUEUE_CAPACITY pages; when it is full the page is dropped
+ *   (prefetch.rejected) instead of blocking the request that asked for it
+ * - Routes are fetched one at a time on the prefetch thread, so at most THREADS
+ *   OSRM calls are ever in flight for prefetching
+ *
+ * Cancellation under load:
+ * - A page that waited in the queue longer than MAX_WAIT_MS is dropped - the user
+ *   has most likely asked for it already (prefetch.cancelled)
+ * - A page stops between routes once the queue is more than half full, leaving
+ *   the threads to the newest pages
+ * - shutdown() interrupts running OSRM calls and discards the queue
+ *
+ * Metrics:
+ * - prefetch.routed: routes fetched and stored; prefetch.skipped: already cached
+ * - prefetch.hits / prefetch.wasted: prefetched routes later used / evicted unused (see RouteCache)
+ * - Gauges prefetch.hitRatio and prefetch.wasteRatio (both relative to prefetch.routed)
+ *
+ * Configuration:
+ * - System property cyclenest.prefetch.enabled (default false - opt-in)
+ * - System property cyclenest.prefetch.threads (default 2)
+ * - System property cyclenest.prefetch.queue (default 16 pages)
+ * - System property cyclenest.prefetch.maxWaitMillis (default 2000)
+ *
+ * @author N1237155
+ */
+public final class RoutePrefetcher {
+
+    private static final boolean ENABLED = Boolean.getBoolean("cyclenest.prefetch.enabled");
+    private static final int THREADS = Math.max(1, Integer.getInteger("cyclenest.prefetch.threads", 2));
+    private static final int QUEUE_CAPACITY = Math.max(1, Integer.getInteger("cyclenest.prefetch.queue", 16));
+    private static final long MAX_WAIT_MS = Long.getLong("cyclenest.prefetch.maxWaitMillis", 2000L);
+
+    private static final LongAdder SCHEDULED = ServiceMetrics.counter("prefetch.scheduled");
+    private static final LongAdder ROUTED = ServiceMetrics.counter("prefetch.routed");
+    private static final LongAdder SKIPPED = ServiceMetrics.counter("prefetch.skipped");
+    private static final LongAdder FAILED = ServiceMetrics.counter("prefetch.failed");
+    private static final LongAdder REJECTED = ServiceMetrics.counter("prefetch.rejected");
+    private static final LongAdder CANCELLED = ServiceMetrics.counter("prefetch.cancelled");
+
+    private static final RoutePrefetcher INSTANCE = new RoutePrefetcher();
+
+    private final ThreadPoolExecutor executor;
+
+    private RoutePrefetcher() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), task -> {
+                    Thread thread = new Thread(task, "route-prefetch-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+        // Idle threads exit, so an unused prefetcher holds no threads
+        executor.allowCoreThreadTimeOut(true);
+
+        ServiceMetrics.gauge("prefetch.hitRatio", () -> share(RouteCache.PREFETCH_HITS.sum(), ROUTED.sum()));
+        ServiceMetrics.gauge("prefetch.wasteRatio", () -> share(RouteCache.PREFETCH_WASTED.sum(), ROUTED.sum()));
+        ServiceMetrics.gauge("prefetch.queued", () -> executor.getQueue().size());
+    }
+
+    private static double share(long part, long whole) {
+        return whole == 0 ? 0.0 : (double) part / whole;
+    }
+
+    /**
+     * Get the shared prefetcher
+     *
+     * @return The single RoutePrefetcher instance
+     */
+    public static RoutePrefetcher getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return ENABLED && !executor.isShutdown();
+    }
+
+    /**
+     * Queue the routes from a user to a page of items
+     *
+     * Returns immediately; the page is dropped if the queue is full
+     *
+     * @param osrm Client whose RouteCache receives the routes
+     * @param lat User latitude
+     * @param lon User longitude
+     * @param columns Snapshot the positions refer to
+     * @param positions Catalog positions of the page's items
+     */
+    public void prefetch(OSRMClient osrm, double lat, double lon, CatalogColumns columns, int[] positions) {
+        if (!isEnabled() || positions.length == 0) {
+            return;
+        }
+        long queuedAt = System.currentTimeMillis();
+        try {
+            executor.execute(() -> run(osrm, lat, lon, columns, positions, queuedAt));
+            SCHEDULED.add(positions.length);
+        } catch (RejectedExecutionException e) {
+            REJECTED.add(positions.length);
+        }
+    }
+
+    private void run(OSRMClient osrm, double lat, double lon, CatalogColumns columns, int[] positions, long queuedAt) {
+        if (System.currentTimeMillis() - queuedAt > MAX_WAIT_MS) {
+            CANCELLED.add(positions.length);
+            return;
+        }
+        for (int i = 0; i < positions.length; i++) {
+            if (Thread.currentThread().isInterrupted() || executor.getQueue().size() * 2 > QUEUE_CAPACITY) {
+                CANCELLED.add(positions.length - i);
+                return;
+            }
+            int position = positions[i];
+            try {
+                if (osrm.prefetch(lon, lat, columns.longitude(position), columns.latitude(position))) {
+                    ROUTED.increment();
+                } else {
+                    SKIPPED.increment();
+                }
+            } catch (OSRMException e) {
+                FAILED.increment();
+            }
+        }
+    }
+
+    /**
+     * Stop prefetching - running OSRM calls are interrupted and queued pages discarded
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
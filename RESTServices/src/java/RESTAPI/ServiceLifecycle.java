@@ -0,0 +1,249 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Service Lifecycle - Warm-up on deploy and clean shutdown on undeploy
+ *
+ * Without this, the first requests after a deploy pay for creating the Cosmos
+ * client, loading the catalog, building the Jackson writers and JIT-compiling
+ * the hot paths, and the shared clients were never closed on undeploy
+ *
+ * On deploy (contextInitialized):
+ * - JsonMappers (all readers and writers) and the OSRM HttpClient are created
+ *   on the deploying thread
+ * - A background thread ("service-warmup") then connects to Cosmos DB, loads
+ *   the ItemCatalog, starts RequestViewSync and runs the warm-up pass. Deployment
+ *   does not wait for it; requests arriving earlier load lazily as before
+ * - Warm-up pass: WARMUP_ITERATIONS rounds of the in-memory hot paths (filter
+ *   bitmaps, nearest-item search, straight-line distances, text search and JSON
+ *   serialization of a page) against the real catalog, so the JIT has compiled
+ *   them before users arrive. Stops after WARMUP_MAX_MS
+ *
+ * On undeploy (contextDestroyed):
+ * - Tells the warm-up thread to stop (it checks before every step), interrupts
+ *   it and waits up to WARMUP_STOP_WAIT_MS for it to end, so it cannot start
+ *   RequestViewSync or open a Cosmos client after they were shut down. A warm-up
+ *   still blocked in Cosmos DB after that closes what it opened itself
+ * - Stops RequestViewSync, the ItemCatalog refresh thread, RoutePrefetcher and
+ *   RouteBatcher, shuts down the DependencyExecutor pools, closes the Cosmos
+ *   client (only if one was created) and the OSRM HttpClient (JDK 21+)
+ *
+ * Measuring the warm-up (gauges in GET /metrics, seconds since deploy):
+ * - lifecycle.secondsToReady: warm-up finished
+ * - lifecycle.secondsToFirstFastResponse: first response faster than
+ *   cyclenest.lifecycle.fastMillis (see ResponseTimingFilter)
+ * - lifecycle.catalogLoadMillis, lifecycle.warmupMillis
+ *
+ * Configuration:
+ * - System property cyclenest.warmup.enabled (default true)
+ * - System property cyclenest.warmup.iterations (default 5000)
+ * - System property cyclenest.warmup.maxMillis (default 15000)
+ * - System property cyclenest.warmup.stopWaitMillis (default 5000)
+ *
+ * Registered with Tomcat through @WebListener
+ *
+ * @author N1237155
+ */
+@WebListener
+public class ServiceLifecycle implements ServletContextListener {
+
+    private static final boolean WARMUP_ENABLED =
+            Boolean.parseBoolean(System.getProperty("cyclenest.warmup.enabled", "true"));
+    private static final int WARMUP_ITERATIONS = Integer.getInteger("cyclenest.warmup.iterations", 5000);
+    private static final long WARMUP_MAX_MS = Long.getLong("cyclenest.warmup.maxMillis", 15000L);
+    private static final long WARMUP_STOP_WAIT_MS = Long.getLong("cyclenest.warmup.stopWaitMillis", 5000L);
+
+    // Deploy time and milestones (nanoTime, 0 until reached)
+    private static volatile long deployedAt;
+    private static volatile long readyAt;
+    private static volatile long firstFastResponseAt;
+    private static volatile long catalogLoadMillis;
+    private static volatile long warmupMillis;
+
+    private Thread warmup;
+
+    // Set on undeploy, under this object's lock - the warm-up checks it before each step
+    private volatile boolean stopped;
+
+    static {
+        ServiceMetrics.gauge("lifecycle.secondsToReady", () -> sinceDeploy(readyAt));
+        ServiceMetrics.gauge("lifecycle.secondsToFirstFastResponse", () -> sinceDeploy(firstFastResponseAt));
+        ServiceMetrics.gauge("lifecycle.catalogLoadMillis", () -> catalogLoadMillis);
+        ServiceMetrics.gauge("lifecycle.warmupMillis", () -> warmupMillis);
+    }
+
+    // Seconds from deploy to a milestone, -1 while it has not been reached
+    private static double sinceDeploy(long at) {
+        return at == 0 || deployedAt == 0 ? -1.0 : (at - deployedAt) / 1e9;
+    }
+
+    /**
+     * Record a response - the first one faster than the threshold marks the
+     * service as serving at full speed (called by ResponseTimingFilter)
+     *
+     * @param fast true if the response was faster than the threshold
+     */
+    public static void responded(boolean fast) {
+        if (fast && firstFastResponseAt == 0 && deployedAt != 0) {
+            firstFastResponseAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return true while no fast response has been recorded since deploy
+     */
+    public static boolean awaitingFirstFastResponse() {
+        return firstFastResponseAt == 0;
+    }
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        stopped = false;
+        deployedAt = System.nanoTime();
+        readyAt = 0;
+        firstFastResponseAt = 0;
+
+        // Cheap, no network - build readers/writers and the HttpClient now
+        JsonMappers.isRegistered(items.class);
+        OSRMClient.getInstance();
+
+        if (!WARMUP_ENABLED) {
+            RequestViewSync.getInstance().start();
+            readyAt = System.nanoTime();
+            return;
+        }
+        warmup = new Thread(this::warmUp, "service-warmup");
+        warmup.setDaemon(true);
+        warmup.start();
+    }
+
+    private void warmUp() {
+        try {
+            long start = System.nanoTime();
+            if (stopping()) {
+                return;
+            }
+            CosmosDBConnection.getInstance();
+            if (stopping()) {
+                return;
+            }
+            ItemCatalog.Snapshot catalog = ItemCatalog.getInstance().current();
+            catalogLoadMillis = (System.nanoTime() - start) / 1_000_000;
+            if (stopping()) {
+                return;
+            }
+
+            synchronized (this) {
+                if (stopped) {
+                    return;
+                }
+                RequestViewSync.getInstance().start();
+            }
+
+            start = System.nanoTime();
+            int rounds = exercise(catalog, start + WARMUP_MAX_MS * 1_000_000);
+            warmupMillis = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("Warm-up finished: catalog of " + catalog.size() + " items loaded in "
+                    + catalogLoadMillis + " ms, " + rounds + " warm-up rounds in " + warmupMillis + " ms");
+        } catch (RuntimeException e) {
+            // Not fatal - requests load everything lazily
+            System.err.println("Warm-up failed, continuing without it: " + e.getMessage());
+        } finally {
+            readyAt = System.nanoTime();
+            stopping(); // also after a step failed because undeploy interrupted it
+        }
+    }
+
+    // True once undeploy began. The shutdown may already have run while this thread
+    // was blocked in Cosmos DB, so close any client this thread opened since
+    private boolean stopping() {
+        if (!stopped) {
+            return false;
+        }
+        CosmosDBConnection.shutdown();
+        return true;
+    }
+
+    // Run the in-memory request paths against the real catalog; returns the rounds completed
+    private int exercise(ItemCatalog.Snapshot catalog, long deadline) {
+        int size = catalog.size();
+        if (size == 0) {
+            return 0;
+        }
+        CatalogColumns columns = catalog.getColumns();
+        SpatialIndex spatial = catalog.getSpatialIndex();
+        ObjectWriter writer = JsonMappers.writerFor(PaginatedResponse.class, false);
+
+        int round = 0;
+        for (; round < WARMUP_ITERATIONS && !stopped && !Thread.currentThread().isInterrupted(); round++) {
+            if ((round & 63) == 0 && System.nanoTime() > deadline) {
+                break;
+            }
+            int position = round % size;
+            items item = columns.itemAt(position);
+            double lat = columns.latitude(position);
+            double lon = columns.longitude(position);
+
+            ItemBitmap matches = catalog.getIndex().match(item.getCategory(), null, null);
+            int[] nearest = spatial.nearest(lat, lon, 5, Double.POSITIVE_INFINITY,
+                    matches.cardinality() == size ? null : matches);
+            double[] distances = spatial.distancesKm(nearest, nearest.length, lat, lon);
+            if (columns.name(position) != null) {
+                catalog.search(columns.name(position));
+            }
+
+            List<ItemDistanceResponse> page = new ArrayList<>(nearest.length);
+            for (int i = 0; i < nearest.length; i++) {
+                page.add(ItemDistanceResponse.of(catalog.itemAt(nearest[i]),
+                        new RouteResponse(distances[i], 0, "straight_line")));
+            }
+            try {
+                writer.writeValue(OutputStream.nullOutputStream(), new PaginatedResponse<>(page, 1, 5, page.size(), 1));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        return round;
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        synchronized (this) {
+            stopped = true;
+        }
+        if (warmup != null) {
+            warmup.interrupt();
+            try {
+                warmup.join(WARMUP_STOP_WAIT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (warmup.isAlive()) {
+                System.err.println("Warm-up still running after " + WARMUP_STOP_WAIT_MS + " ms, shutting down anyway");
+            }
+        }
+        RequestViewSync.getInstance().stop();
+        ItemCatalog.getInstance().shutdown();
+        RoutePrefetcher.getInstance().shutdown();
+        if (RouteBatcher.ENABLED) {
+            RouteBatcher.getInstance().shutdown();
+        }
+        DependencyExecutor.OSRM.shutdown();
+        DependencyExecutor.COSMOS.shutdown();
+        CosmosDBConnection.shutdown();
+        OSRMClient.shutdown();
+        System.out.println("CycleNest services stopped");
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Service Metrics - In-process counters and gauges, served by GET /metrics
+ *
+ * Counters:
+ * - LongAdder per name, so request threads incrementing the same counter do not
+ *   contend on one memory location
+ * - Components look their counters up once (static fields) and increment them directly
+ *
+ * Gauges:
+ * - Read on demand when /metrics is requested (e.g. cache sizes, hit rates)
+ *
+ * Names are dotted and start with the owning component, e.g. "paging.sessions.hits"
+ *
+ * @author N1237155
+ */
+public final class ServiceMetrics {
+
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+    private static final Map<String, DoubleSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    // Static registry only
+    private ServiceMetrics() {
+    }
+
+    /**
+     * Get (or create) a counter
+     *
+     * @param name Metric name
+     * @return The shared counter for that name
+     */
+    public static LongAdder counter(String name) {
+        return COUNTERS.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Register a gauge (replaces an earlier gauge with the same name)
+     *
+     * @param name Metric name
+     * @param value Read each time metrics are reported
+     */
+    public static void gauge(String name, DoubleSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    /**
+     * Fraction of hits among all lookups (0 when there were none)
+     */
+    public static double ratio(LongAdder hits, LongAdder misses) {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    /**
+     * Current value of every counter and gauge, sorted by name
+     */
+    public static MetricsResponse snapshot() {
+        Map<String, Long> counters = new TreeMap<>();
+        COUNTERS.forEach((name, counter) -> counters.put(name, counter.sum()));
+        Map<String, Double> gauges = new TreeMap<>();
+        GAUGES.forEach((name, gauge) -> gauges.put(name, gauge.getAsDouble()));
+        return new MetricsResponse(counters, gauges);
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.Arrays;
+
+/**
+ * Spatial Index - k-d tree over item locations
+ *
+ * Built once per ItemCatalog snapshot and used by GET /items/nearby to find the
+ * items closest to a user without routing every item through OSRM
+ *
+ * How it works:
+ * - Each latitude/longitude is converted to a point on the unit sphere (x, y, z)
+ * - Straight-line (chord) distance between those points grows with great-circle
+ *   distance, so a plain 3-D k-d tree gives exact nearest neighbours on the globe
+ *   with no special handling for the date line or the poles
+ * - The tree is implicit: a permutation of catalog positions where the middle of
+ *   every range is the splitting node, so it costs 4 bytes per item plus coordinates
+ *
+ * Queries:
+ * - k-nearest, optionally limited to a radius in km
+ * - Optional filter bitmap (category/city/condition) applied during the search
+ * - Items without a location are not in the tree, so they are never returned
+ *
+ * @author N1237155
+ */
+public final class SpatialIndex {
+
+    // Mean Earth radius used for great-circle distances
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    private final double[] xs;
+    private final double[] ys;
+    private final double[] zs;
+    private final int[] tree; // catalog positions of located items in k-d order
+
+    /**
+     * Build the index for a snapshot's columns
+     *
+     * @param columns The snapshot's items
+     */
+    public SpatialIndex(CatalogColumns columns) {
+        int n = columns.size();
+        xs = new double[n];
+        ys = new double[n];
+        zs = new double[n];
+        int[] located = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (!columns.isLocated(i)) {
+                continue;
+            }
+            double lat = Math.toRadians(columns.latitude(i));
+            double lon = Math.toRadians(columns.longitude(i));
+            xs[i] = Math.cos(lat) * Math.cos(lon);
+            ys[i] = Math.cos(lat) * Math.sin(lon);
+            zs[i] = Math.sin(lat);
+            located[count++] = i;
+        }
+        tree = count == n ? located : Arrays.copyOf(located, count);
+        build(0, count, 0);
+    }
+
+    private double coordinate(int position, int axis) {
+        return axis == 0 ? xs[position] : axis == 1 ? ys[position] : zs[position];
+    }
+
+    // Recursively place the median of each range at its middle (quickselect)
+    private void build(int from, int to, int axis) {
+        if (to - from <= 1) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        select(from, to - 1, mid, axis);
+        int next = (axis + 1) % 3;
+        build(from, mid, next);
+        build(mid + 1, to, next);
+    }
+
+    private void select(int left, int right, int k, int axis) {
+        while (right > left) {
+            double pivot = coordinate(tree[(left + right) >>> 1], axis);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinate(tree[i], axis) < pivot) {
+                    i++;
+                }
+                while (coordinate(tree[j], axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = tree[i];
+                    tree[i] = tree[j];
+                    tree[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Find the nearest items to a location
+     *
+     * @param lat User latitude
+     * @param lon User longitude
+     * @param limit Maximum number of results (k)
+     * @param radiusKm Maximum great-circle distance, or Double.POSITIVE_INFINITY for pure k-nearest
+     * @param filter Positions allowed in the result, or null for every item
+     * @return Positions ordered from nearest to farthest (ties by catalog position)
+     */
+    public int[] nearest(double lat, double lon, int limit, double radiusKm, ItemBitmap filter) {
+        double[] query = GeoKernels.unitVector(lat, lon);
+        Search search = new Search(query[0], query[1], query[2], limit,
+                radiusKm >= Math.PI * EARTH_RADIUS_KM ? Double.POSITIVE_INFINITY : GeoKernels.kmToChordSquared(radiusKm),
+                filter);
+        if (limit > 0) {
+            search.visit(0, tree.length, 0);
+        }
+        return search.sortedResults();
+    }
+
+    /**
+     * Great-circle distances between several indexed items and one location
+     *
+     * The location is converted once and the items' vectors are gathered into
+     * contiguous arrays for GeoKernels.chordSquared()
+     *
+     * @param positions Catalog positions of the items
+     * @param count Number of positions to use
+     * @param lat Location latitude
+     * @param lon Location longitude
+     * @return Distances in kilometres, in the order of positions
+     */
+    public double[] distancesKm(int[] positions, int count, double lat, double lon) {
+        double[] query = GeoKernels.unitVector(lat, lon);
+        double[] px = new double[count];
+        double[] py = new double[count];
+        double[] pz = new double[count];
+        for (int i = 0; i < count; i++) {
+            int position = positions[i];
+            px[i] = xs[position];
+            py[i] = ys[position];
+            pz[i] = zs[position];
+        }
+        double[] distances = new double[count];
+        GeoKernels.chordSquared(query[0], query[1], query[2], px, py, pz, count, distances);
+        GeoKernels.chordSquaredToKm(distances, count);
+        return distances;
+    }
+
+    /**
+     * One k-nearest search - bounded max-heap of the best candidates so far
+     */
+    private final class Search {
+
+        private final double qx, qy, qz;
+        private final int limit;
+        private final ItemBitmap filter;
+        private final int[] heap;
+        private final double[] heapDist;
+        private int size;
+        private double bound; // squared chord of the current k-th best (or the radius)
+
+        Search(double qx, double qy, double qz, int limit, double maxChordSquared, ItemBitmap filter) {
+            this.qx = qx;
+            this.qy = qy;
+            this.qz = qz;
+            this.limit = limit;
+            this.filter = filter;
+            this.heap = new int[Math.max(limit, 0)];
+            this.heapDist = new double[Math.max(limit, 0)];
+            this.bound = maxChordSquared;
+        }
+
+        void visit(int from, int to, int axis) {
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                int position = tree[mid];
+
+                double dx = xs[position] - qx;
+                double dy = ys[position] - qy;
+                double dz = zs[position] - qz;
+                double dist = dx * dx + dy * dy + dz * dz;
+                if (dist <= bound && (filter == null || filter.contains(position))) {
+                    offer(position, dist);
+                }
+
+                // Search the query's side first, then the far side only if it can still win
+                double delta = (axis == 0 ? qx : axis == 1 ? qy : qz) - coordinate(position, axis);
+                int next = (axis + 1) % 3;
+                if (delta < 0) {
+                    visit(from, mid, next);
+                    if (delta * delta > bound) {
+                        return;
+                    }
+                    from = mid + 1;
+                } else {
+                    visit(mid + 1, to, next);
+                    if (delta * delta > bound) {
+                        return;
+                    }
+                    to = mid;
+                }
+                axis = next;
+            }
+        }
+
+        private void offer(int position, double dist) {
+            if (size < limit) {
+                heap[size] = position;
+                heapDist[size] = dist;
+                siftUp(size++);
+                if (size == limit) {
+                    bound = Math.min(bound, heapDist[0]);
+                }
+            } else if (farther(0, dist, position)) {
+                heap[0] = position;
+                heapDist[0] = dist;
+                siftDown(0);
+                bound = Math.min(bound, heapDist[0]);
+            }
+        }
+
+        // Ties are broken by catalog position, so results never depend on the limit
+        private boolean farther(int slot, double dist, int position) {
+            return heapDist[slot] > dist || (heapDist[slot] == dist && heap[slot] > position);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!farther(i, heapDist[parent], heap[parent])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int largest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && farther(left, heapDist[largest], heap[largest])) {
+                    largest = left;
+                }
+                if (right < size && farther(right, heapDist[largest], heap[largest])) {
+                    largest = right;
+                }
+                if (largest == i) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int position = heap[a];
+            heap[a] = heap[b];
+            heap[b] = position;
+            double dist = heapDist[a];
+            heapDist[a] = heapDist[b];
+            heapDist[b] = dist;
+        }
+
+        // Drain the max-heap from the back so results come out nearest first
+        int[] sortedResults() {
+            int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = heap[0];
+                heap[0] = heap[size - 1];
+                heapDist[0] = heapDist[size - 1];
+                size--;
+                siftDown(0);
+            }
+            return result;
+        }
+    }
+}
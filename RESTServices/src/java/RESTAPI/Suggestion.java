@@ -0,0 +1,47 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+/**
+ * Suggestion Model - One autocomplete entry for GET /items/suggest
+ *
+ * JSON Format:
+ * {"text": "mountain bike", "count": 12}
+ *
+ * count is the number of items whose name or description contains the
+ * completed word, so clients can show the most useful completions first
+ *
+ * @author N1237155
+ */
+public class Suggestion {
+
+    private String text;
+    private int count;
+
+    // Empty constructor for Jackson
+    public Suggestion() {
+    }
+
+    public Suggestion(String text, int count) {
+        this.text = text;
+        this.count = count;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+}
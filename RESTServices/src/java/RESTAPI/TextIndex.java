@@ -0,0 +1,643 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Text Index - Full-text search and autocomplete over item name and description
+ *
+ * Every ItemCatalog snapshot has its own index. A refresh derives the next index
+ * from the previous one with update(): only items that were added, removed, or
+ * whose name/description changed are re-indexed, and every postings list and
+ * trie node the change does not touch is shared between the two indexes
+ *
+ * Analysis:
+ * - Text is split on anything that is not a letter or digit
+ * - Tokens are case folded and accents are removed ("Vélo" matches "velo")
+ * - Name tokens count NAME_BOOST times, so a match in the name outranks one in the description
+ *
+ * Search:
+ * - Every query token must appear in the item (AND), results ranked by BM25
+ * - Postings are sorted by document number and intersected starting from the
+ *   rarest term, so common words never cost more than the rarest one allows
+ *
+ * Autocomplete:
+ * - Every indexed term sits in an array-backed prefix trie; each node caches its
+ *   most frequent completions until a document containing one of them changes
+ *
+ * Thread Safety:
+ * - An index never changes once update() has returned it, so searches take no
+ *   locks and an older snapshot keeps searching exactly the text it was loaded with
+ * - update() copies a shared postings list or trie node before changing it
+ *   (copy-on-write); the term and document maps are copied once per refresh
+ * - Removed documents are tombstoned and dropped from a postings list once
+ *   more than half of it is dead
+ *
+ * @author N1237155
+ */
+public final class TextIndex {
+
+    // BM25 parameters (standard values)
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final int NAME_BOOST = 2;
+
+    // Completions cached per trie node
+    private static final int SUGGESTION_CACHE = 10;
+
+    private final Map<String, Postings> terms;
+    private final Map<String, Integer> docByItemId;
+    private final BitSet deleted;
+    private TrieNode trie;
+
+    private int[] docLengths;
+    private int docCount;      // document numbers handed out so far
+    private int liveDocs;
+    private long totalLength;  // summed length of live documents
+
+    // Postings lists and trie nodes created by the running update() - all others are
+    // shared with the previous index and copied before they change (null once built)
+    private Set<Object> owned;
+
+    /**
+     * Create an empty index (fill it with update())
+     */
+    public TextIndex() {
+        terms = new HashMap<>();
+        docByItemId = new HashMap<>();
+        deleted = new BitSet();
+        trie = new TrieNode();
+        docLengths = new int[1024];
+    }
+
+    // Next version of an index - shares its postings lists and trie nodes
+    private TextIndex(TextIndex source) {
+        terms = new HashMap<>(source.terms);
+        docByItemId = new HashMap<>(source.docByItemId);
+        deleted = (BitSet) source.deleted.clone();
+        trie = source.trie;
+        docLengths = source.docLengths.clone();
+        docCount = source.docCount;
+        liveDocs = source.liveDocs;
+        totalLength = source.totalLength;
+    }
+
+    /**
+     * Postings list - ascending document numbers with term frequencies
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+        int live;
+
+        void append(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+            live++;
+        }
+
+        // Drop tombstoned documents in place
+        void compact(BitSet deleted) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!deleted.get(docs[i])) {
+                    docs[kept] = docs[i];
+                    freqs[kept] = freqs[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        Postings copy() {
+            Postings copy = new Postings();
+            copy.docs = Arrays.copyOf(docs, Math.max(4, size));
+            copy.freqs = Arrays.copyOf(freqs, Math.max(4, size));
+            copy.size = size;
+            copy.live = live;
+            return copy;
+        }
+    }
+
+    /**
+     * Trie node - children kept in parallel arrays sorted by character
+     */
+    private static final class TrieNode {
+        char[] keys = new char[0];
+        TrieNode[] children = new TrieNode[0];
+        String term; // set when a term ends here
+        volatile List<Suggestion> cached;
+
+        TrieNode copy() {
+            TrieNode copy = new TrieNode();
+            copy.keys = keys;
+            copy.children = children.clone();
+            copy.term = term;
+            return copy;
+        }
+
+        TrieNode child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        TrieNode childOrCreate(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int at = -i - 1;
+            char[] newKeys = new char[keys.length + 1];
+            TrieNode[] newChildren = new TrieNode[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, at);
+            System.arraycopy(children, 0, newChildren, 0, at);
+            System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+            System.arraycopy(children, at, newChildren, at + 1, children.length - at);
+            newKeys[at] = c;
+            newChildren[at] = new TrieNode();
+            keys = newKeys;
+            children = newChildren;
+            return newChildren[at];
+        }
+    }
+
+    /**
+     * Search result - matching catalog positions (in index order) with BM25 scores
+     */
+    public static final class Result {
+
+        private final int[] positions;
+        private final double[] scores;
+
+        private Result(int[] positions, double[] scores) {
+            this.positions = positions;
+            this.scores = scores;
+        }
+
+        public int size() {
+            return positions.length;
+        }
+
+        /**
+         * Matching positions as a bitmap, for combining with the attribute filters
+         */
+        public ItemBitmap toBitmap(int universe) {
+            return ItemBitmap.ofUnsorted(positions, positions.length, universe);
+        }
+
+        /**
+         * Select a page of positions by relevance (ties by catalog position)
+         *
+         * Only the first fromRank + count results are ordered (bounded heap)
+         *
+         * @param filter Positions allowed in the result, or null for every match
+         * @param fromRank Rank of the first position to return
+         * @param count Maximum number of positions to return
+         * @return Positions, best first
+         */
+        public int[] top(ItemBitmap filter, int fromRank, int count) {
+            int limit = fromRank + count;
+            int[] heap = new int[Math.max(limit, 0)]; // indexes into positions, worst on top
+            int size = 0;
+            for (int i = 0; i < positions.length; i++) {
+                if (filter != null && !filter.contains(positions[i])) {
+                    continue;
+                }
+                if (size < limit) {
+                    heap[size] = i;
+                    siftUp(heap, size++);
+                } else if (limit > 0 && better(i, heap[0])) {
+                    heap[0] = i;
+                    siftDown(heap, size, 0);
+                }
+            }
+
+            int[] ordered = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                ordered[i] = positions[heap[0]];
+                heap[0] = heap[i];
+                siftDown(heap, i, 0);
+            }
+            return fromRank >= size ? new int[0] : Arrays.copyOfRange(ordered, fromRank, size);
+        }
+
+        private boolean better(int a, int b) {
+            return scores[a] > scores[b] || (scores[a] == scores[b] && positions[a] < positions[b]);
+        }
+
+        private void siftUp(int[] heap, int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!better(heap[parent], heap[i])) {
+                    return;
+                }
+                int swap = heap[i];
+                heap[i] = heap[parent];
+                heap[parent] = swap;
+                i = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int size, int i) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && better(heap[worst], heap[left])) {
+                    worst = left;
+                }
+                if (right < size && better(heap[worst], heap[right])) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                int swap = heap[i];
+                heap[i] = heap[worst];
+                heap[worst] = swap;
+                i = worst;
+            }
+        }
+    }
+
+    /**
+     * Split text into case-folded, accent-free tokens
+     *
+     * @param text Item text or query (may be null)
+     * @return Tokens in order of appearance
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+        String folded = text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7F) {
+                folded = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+                break;
+            }
+        }
+
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    // Term frequencies for one item (name tokens boosted)
+    private static Map<String, Integer> analyze(String name, String description) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokenize(name)) {
+            frequencies.merge(token, NAME_BOOST, Integer::sum);
+        }
+        for (String token : tokenize(description)) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        return frequencies;
+    }
+
+    /**
+     * Build the index of the next catalog version by applying the difference
+     * between two catalog versions - this index is not changed
+     *
+     * @param previous Columns this index was built for (null on first load)
+     * @param current Columns of the new snapshot
+     * @return Index for the new snapshot
+     */
+    public TextIndex update(CatalogColumns previous, CatalogColumns current) {
+        TextIndex next = new TextIndex(this);
+        next.owned = Collections.newSetFromMap(new IdentityHashMap<>());
+        next.apply(previous, current);
+        next.owned = null;
+        return next;
+    }
+
+    private void apply(CatalogColumns previous, CatalogColumns current) {
+        for (int position = 0; position < current.size(); position++) {
+            String id = current.id(position);
+            if (id == null || current.positionOf(id) != position) {
+                continue; // duplicate IDs keep their first occurrence
+            }
+            int old = previous == null ? -1 : previous.positionOf(id);
+            if (old < 0 || !docByItemId.containsKey(id)) {
+                add(id, current.name(position), current.description(position));
+            } else if (!Objects.equals(previous.name(old), current.name(position))
+                    || !Objects.equals(previous.description(old), current.description(position))) {
+                remove(id, previous.name(old), previous.description(old));
+                add(id, current.name(position), current.description(position));
+            }
+        }
+        if (previous != null) {
+            for (int old = 0; old < previous.size(); old++) {
+                String id = previous.id(old);
+                if (id != null && current.positionOf(id) < 0 && previous.positionOf(id) == old) {
+                    remove(id, previous.name(old), previous.description(old));
+                }
+            }
+        }
+    }
+
+    private void add(String itemId, String name, String description) {
+        int doc = docCount++;
+        if (doc == docLengths.length) {
+            docLengths = Arrays.copyOf(docLengths, doc * 2);
+        }
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : analyze(name, description).entrySet()) {
+            Postings postings = ownPostings(entry.getKey());
+            if (postings == null) {
+                postings = new Postings();
+                owned.add(postings);
+                terms.put(entry.getKey(), postings);
+                insertTerm(entry.getKey());
+            }
+            postings.append(doc, entry.getValue());
+            length += entry.getValue();
+            invalidateSuggestions(entry.getKey());
+        }
+
+        docLengths[doc] = length;
+        docByItemId.put(itemId, doc);
+        liveDocs++;
+        totalLength += length;
+    }
+
+    // Tokens are recomputed from the previous version of the item, so no per-document term list is kept
+    private void remove(String itemId, String name, String description) {
+        Integer doc = docByItemId.remove(itemId);
+        if (doc == null) {
+            return;
+        }
+        deleted.set(doc);
+        liveDocs--;
+        totalLength -= docLengths[doc];
+
+        for (String term : analyze(name, description).keySet()) {
+            Postings postings = ownPostings(term);
+            if (postings == null) {
+                continue;
+            }
+            postings.live--;
+            if (postings.live * 2 < postings.size) {
+                postings.compact(deleted);
+            }
+            invalidateSuggestions(term);
+        }
+    }
+
+    // A term's postings list, copied first if the previous index shares it (null for a new term)
+    private Postings ownPostings(String term) {
+        Postings postings = terms.get(term);
+        if (postings != null && !owned.contains(postings)) {
+            postings = postings.copy();
+            owned.add(postings);
+            terms.put(term, postings);
+        }
+        return postings;
+    }
+
+    private void insertTerm(String term) {
+        ownPath(term, true).term = term;
+    }
+
+    // A document frequency changed - every node on the term's path may rank it differently,
+    // so the path is copied (copies start without cached suggestions)
+    private void invalidateSuggestions(String term) {
+        ownPath(term, false);
+    }
+
+    // Copy the shared nodes on a term's path (creating missing ones if create is set)
+    private TrieNode ownPath(String term, boolean create) {
+        trie = ownNode(trie);
+        TrieNode node = trie;
+        for (int i = 0; i < term.length(); i++) {
+            int at = Arrays.binarySearch(node.keys, term.charAt(i));
+            if (at >= 0) {
+                node.children[at] = ownNode(node.children[at]);
+                node = node.children[at];
+            } else if (create) {
+                node = node.childOrCreate(term.charAt(i));
+                owned.add(node);
+            } else {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private TrieNode ownNode(TrieNode node) {
+        if (owned.contains(node)) {
+            return node;
+        }
+        TrieNode copy = node.copy();
+        owned.add(copy);
+        return copy;
+    }
+
+    /**
+     * Search item name and description
+     *
+     * @param query Free text; every token must match
+     * @param docPositions Catalog position of each document in the caller's snapshot (-1 if absent)
+     * @return Matching positions with BM25 scores
+     */
+    public Result search(String query, int[] docPositions) {
+        List<String> tokens = tokenize(query);
+        // Rarest term first - it bounds the number of candidates
+        List<Postings> lists = new ArrayList<>();
+        for (String token : new LinkedHashSet<>(tokens)) {
+            Postings postings = terms.get(token);
+            if (postings == null || postings.live == 0) {
+                return new Result(new int[0], new double[0]);
+            }
+            lists.add(postings);
+        }
+        if (lists.isEmpty()) {
+            return new Result(new int[0], new double[0]);
+        }
+        lists.sort((a, b) -> Integer.compare(a.live, b.live));
+
+        double averageLength = liveDocs == 0 ? 1 : (double) totalLength / liveDocs;
+        double[] idf = new double[lists.size()];
+        for (int t = 0; t < lists.size(); t++) {
+            double df = lists.get(t).live;
+            idf[t] = Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+        }
+
+        Postings rarest = lists.get(0);
+        int[] cursors = new int[lists.size()];
+        int[] positions = new int[rarest.size];
+        double[] scores = new double[rarest.size];
+        int count = 0;
+
+        candidates:
+        for (int i = 0; i < rarest.size; i++) {
+            int doc = rarest.docs[i];
+            if (deleted.get(doc)) {
+                continue;
+            }
+            double norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+            double score = idf[0] * rarest.freqs[i] * (K1 + 1) / (rarest.freqs[i] + norm);
+
+            for (int t = 1; t < lists.size(); t++) {
+                Postings other = lists.get(t);
+                int at = advance(other, cursors[t], doc);
+                cursors[t] = at;
+                if (at >= other.size || other.docs[at] != doc) {
+                    continue candidates;
+                }
+                score += idf[t] * other.freqs[at] * (K1 + 1) / (other.freqs[at] + norm);
+            }
+
+            int position = doc < docPositions.length ? docPositions[doc] : -1;
+            if (position >= 0) {
+                positions[count] = position;
+                scores[count] = score;
+                count++;
+            }
+        }
+
+        return new Result(Arrays.copyOf(positions, count), Arrays.copyOf(scores, count));
+    }
+
+    // Galloping search for the first entry >= doc, starting at from
+    private static int advance(Postings postings, int from, int doc) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < postings.size && postings.docs[high] < doc) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, postings.size - 1);
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (postings.docs[mid] < doc) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Autocomplete the last word of a prefix
+     *
+     * @param prefix What the user has typed so far
+     * @param limit Maximum number of suggestions
+     * @return Completions ordered by the number of items containing the completed word
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        List<String> tokens = tokenize(prefix);
+        if (tokens.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String last = tokens.get(tokens.size() - 1);
+        String lead = String.join(" ", tokens.subList(0, tokens.size() - 1));
+
+        TrieNode node = trie;
+        for (int i = 0; i < last.length() && node != null; i++) {
+            node = node.child(last.charAt(i));
+        }
+        if (node == null) {
+            return new ArrayList<>();
+        }
+
+        List<Suggestion> completions = node.cached;
+        if (completions == null) {
+            completions = topCompletions(node);
+            node.cached = completions;
+        }
+
+        List<Suggestion> result = new ArrayList<>(Math.min(limit, completions.size()));
+        for (Suggestion completion : completions) {
+            if (result.size() == limit) {
+                break;
+            }
+            String text = lead.isEmpty() ? completion.getText() : lead + " " + completion.getText();
+            result.add(new Suggestion(text, completion.getCount()));
+        }
+        return result;
+    }
+
+    // Walk the subtree once and keep the SUGGESTION_CACHE most frequent live terms
+    private List<Suggestion> topCompletions(TrieNode root) {
+        List<Suggestion> best = new ArrayList<>(SUGGESTION_CACHE + 1);
+        List<TrieNode> stack = new ArrayList<>();
+        stack.add(root);
+        while (!stack.isEmpty()) {
+            TrieNode node = stack.remove(stack.size() - 1);
+            if (node.term != null) {
+                int df = terms.get(node.term).live;
+                if (df > 0 && (best.size() < SUGGESTION_CACHE || df >= best.get(best.size() - 1).getCount())) {
+                    int at = 0;
+                    while (at < best.size() && (best.get(at).getCount() > df
+                            || (best.get(at).getCount() == df && best.get(at).getText().compareTo(node.term) < 0))) {
+                        at++;
+                    }
+                    best.add(at, new Suggestion(node.term, df));
+                    if (best.size() > SUGGESTION_CACHE) {
+                        best.remove(best.size() - 1);
+                    }
+                }
+            }
+            for (TrieNode child : node.children) {
+                stack.add(child);
+            }
+        }
+        return Collections.unmodifiableList(best);
+    }
+
+    /**
+     * Map document numbers to positions in a snapshot
+     *
+     * @param columns The snapshot's items
+     * @return Array indexed by document number (-1 for documents not in the snapshot)
+     */
+    public int[] positionsOf(CatalogColumns columns) {
+        int[] positions = new int[docCount];
+        Arrays.fill(positions, -1);
+        for (int position = 0; position < columns.size(); position++) {
+            Integer doc = docByItemId.get(columns.id(position));
+            if (doc != null && positions[doc] < 0) {
+                positions[doc] = position;
+            }
+        }
+        return positions;
+    }
+}
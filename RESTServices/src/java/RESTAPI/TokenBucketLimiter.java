@@ -0,0 +1,131 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token Bucket Limiter - Per-client request rate limit
+ *
+ * Every client key (user or address) has a bucket holding up to burst tokens
+ * that refills at perSecond tokens per second. A request takes one token;
+ * without a token it is rejected and told how long to wait
+ *
+ * Memory:
+ * - One bucket per active client: a double and a long, nothing per request
+ * - A bucket that has been idle long enough to refill completely is identical
+ *   to a new one, so sweeping it away loses nothing. Each stripe sweeps its idle
+ *   buckets at most once per SWEEP_MS
+ *
+ * Concurrency:
+ * - Buckets are spread over STRIPES independently locked hash maps (by key
+ *   hash), so requests from different clients rarely wait for the same lock
+ * - A lock is held for a map lookup and a few arithmetic operations only
+ *
+ * Used by RateLimitFilter, one limiter per endpoint cost tier
+ *
+ * @author N1237155
+ */
+public final class TokenBucketLimiter {
+
+    private static final int STRIPES = 64; // power of two
+    private static final long SWEEP_MS = 60_000L;
+
+    private final double perNano;
+    private final double burst;
+    private final long idleNanos; // time after which an unused bucket is full again
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private static final class Stripe {
+        final HashMap<String, Bucket> buckets = new HashMap<>();
+        long lastSweep = System.nanoTime();
+    }
+
+    private static final class Bucket {
+        double tokens;
+        long updatedAt;
+
+        Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    /**
+     * @param perSecond Sustained requests per second per client
+     * @param burst Requests a client may send at once after being idle
+     */
+    public TokenBucketLimiter(double perSecond, double burst) {
+        if (!(perSecond > 0) || !(burst >= 1)) {
+            throw new IllegalArgumentException("perSecond must be > 0 and burst >= 1");
+        }
+        this.perNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.idleNanos = (long) Math.ceil(burst / perNano);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Take a token for one request
+     *
+     * @param key Client key
+     * @return 0 if the request may proceed, otherwise the nanoseconds until the
+     *         client's next token
+     */
+    public long tryAcquire(String key) {
+        long now = System.nanoTime();
+        Stripe stripe = stripes[spread(key.hashCode()) & (STRIPES - 1)];
+        synchronized (stripe) {
+            if (now - stripe.lastSweep > TimeUnit.MILLISECONDS.toNanos(SWEEP_MS)) {
+                sweep(stripe, now);
+            }
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                stripe.buckets.put(key, new Bucket(burst - 1, now));
+                return 0;
+            }
+            bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.updatedAt) * perNano);
+            bucket.updatedAt = now;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) / perNano);
+        }
+    }
+
+    // Drop buckets that have refilled completely - called with the stripe locked
+    private void sweep(Stripe stripe, long now) {
+        stripe.lastSweep = now;
+        Iterator<Bucket> buckets = stripe.buckets.values().iterator();
+        while (buckets.hasNext()) {
+            if (now - buckets.next().updatedAt >= idleNanos) {
+                buckets.remove();
+            }
+        }
+    }
+
+    // Fold the high bits into the low bits that pick the stripe
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return Number of clients currently holding a bucket
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual Threads - Opt-in virtual threads on JDK 21+
+ *
+ * The OSRM and Cosmos DB code is written in a plain blocking style. On a
+ * virtual thread a blocking call parks the virtual thread and frees its
+ * carrier, so thousands of blocked calls cost memory instead of platform threads.
+ * The project is compiled for Java 17, so the JDK 21 API is looked up by
+ * reflection; on older JDKs (or when not enabled) callers keep their
+ * platform-thread behaviour
+ *
+ * Used for:
+ * - The DependencyExecutor pools, which run the OSRM calls (including the
+ *   routing fan-out of distance listings) and request-path Cosmos DB calls as
+ *   blocking calls. Each call gets its own virtual thread
+ *   (Executors.newThreadPerTaskExecutor) and a semaphore bounds the calls in
+ *   flight - pooling virtual threads would only add a queue in front of them
+ * - Request handling itself runs on Tomcat's threads; enable virtual threads on
+ *   the Tomcat connector for that (see README)
+ *
+ * Pinning:
+ * - Before JDK 24 a virtual thread that blocks while holding a monitor
+ *   (synchronized) pins its carrier thread. Code that can block on I/O while
+ *   holding a lock (CosmosDBConnection.getInstance, the first catalog load)
+ *   uses ReentrantLock instead; the remaining synchronized blocks only guard
+ *   in-memory updates
+ *
+ * Configuration:
+ * - System property cyclenest.virtualThreads.enabled (default false - opt-in)
+ *
+ * @author N1237155
+ */
+public final class VirtualThreads {
+
+    private static final boolean ENABLED = Boolean.getBoolean("cyclenest.virtualThreads.enabled");
+
+    // Static helpers only
+    private VirtualThreads() {
+    }
+
+    /**
+     * Create an executor that starts a named virtual thread for every task
+     *
+     * @param name Thread name prefix (threads are numbered)
+     * @return The executor, or null if virtual threads are not enabled or the
+     *         JDK has none - callers then keep their platform-thread behaviour
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String name) {
+        if (!ENABLED) {
+            return null;
+        }
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, name + "-", 0L);
+            ThreadFactory factory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            ExecutorService executor = (ExecutorService) Executors.class
+                    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+            System.out.println("Virtual threads enabled for " + name);
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            System.err.println("Virtual threads need JDK 21 or later (running "
+                    + System.getProperty("java.version") + "), using platform threads for " + name);
+            return null;
+        }
+    }
+}
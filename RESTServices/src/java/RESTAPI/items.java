@@ -131,7 +131,7 @@ public class items {
     }
 
     public void setAvailable(boolean availability) {
-        this.available = available;
+        this.available = availability;
     }
 
     public String getCondition() {
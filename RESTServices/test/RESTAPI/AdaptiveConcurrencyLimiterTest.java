@@ -0,0 +1,79 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * AdaptiveConcurrencyLimiter - admission, multiplicative decrease and additive increase
+ *
+ * @author N1237155
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void rejectsBeyondTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 10, 2.0);
+
+        long first = limiter.tryAcquire();
+        long second = limiter.tryAcquire();
+        assertTrue(first >= 0 && second >= 0);
+        assertEquals(-1, limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release(first, false);
+        assertTrue(limiter.tryAcquire() >= 0);
+    }
+
+    @Test
+    public void oneBurstOfFailuresDecreasesOnce() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 20, 1, 20, 2.0);
+        Thread.sleep(1); // requests must start after the (initial) last decrease
+        long[] started = new long[5];
+        for (int i = 0; i < started.length; i++) {
+            started[i] = limiter.tryAcquire();
+        }
+        for (long startedAt : started) {
+            limiter.release(startedAt, true);
+        }
+        assertEquals(18, limiter.getLimit()); // 20 x 0.9, once
+
+        // A request started after the decrease can decrease again
+        Thread.sleep(1);
+        limiter.release(limiter.tryAcquire(), true);
+        assertEquals(16, limiter.getLimit()); // 18 x 0.9 = 16.2
+    }
+
+    @Test
+    public void neverDropsBelowTheMinimum() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 3, 2, 10, 2.0);
+        for (int i = 0; i < 20; i++) {
+            Thread.sleep(1);
+            limiter.release(limiter.tryAcquire(), true);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void fastResponsesUnderLoadRaiseTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 4, 1, 5, 2.0);
+        for (int round = 0; round < 20; round++) {
+            long[] started = new long[limiter.getLimit()];
+            for (int i = 0; i < started.length; i++) {
+                started[i] = limiter.tryAcquire();
+            }
+            for (long startedAt : started) {
+                limiter.release(startedAt, false);
+            }
+        }
+        assertEquals(5, limiter.getLimit()); // capped at the maximum
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidLimits() {
+        new AdaptiveConcurrencyLimiter("test", 5, 10, 5, 2.0);
+    }
+}
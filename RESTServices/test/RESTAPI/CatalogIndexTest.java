@@ -0,0 +1,63 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * CatalogIndex - filters resolve to the same items as the old case-insensitive
+ * stream filters
+ *
+ * @author N1237155
+ */
+public class CatalogIndexTest {
+
+    static items item(String id, String category, String city, String condition) {
+        return new items(id, "owner-" + id, "Item " + id, category,
+                city == null ? null : new Location(city, -0.1276, 51.5074), 10.0, true, condition, "");
+    }
+
+    private final CatalogIndex index = new CatalogIndex(new CatalogColumns(Arrays.asList(
+            item("a", "Bike", "London", "Good"),
+            item("b", "bike", "LONDON", "Fair"),
+            item("c", "Scooter", "Leeds", "Good"),
+            item("d", "BIKE", "Leeds", "good"),
+            item("e", null, null, null))));
+
+    @Test
+    public void filtersIgnoreCase() {
+        assertArrayEquals(new int[]{0, 1, 3}, index.match("bike", null, null).toArray());
+        assertArrayEquals(new int[]{0, 1}, index.match(null, "london", null).toArray());
+        assertArrayEquals(new int[]{0, 2, 3}, index.match(null, null, "GOOD").toArray());
+    }
+
+    @Test
+    public void filtersCombineWithAnd() {
+        assertArrayEquals(new int[]{0, 3}, index.match("Bike", null, "Good").toArray());
+        assertArrayEquals(new int[]{3}, index.match("bike", "leeds", "good").toArray());
+    }
+
+    @Test
+    public void missingFiltersMatchEverything() {
+        assertEquals(5, index.match(null, null, null).cardinality());
+        assertEquals(5, index.match("", "", "").cardinality());
+    }
+
+    @Test
+    public void unknownValuesMatchNothing() {
+        assertTrue(index.match("Canoe", null, null).isEmpty());
+        assertTrue(index.match("bike", "Paris", null).isEmpty());
+    }
+
+    @Test
+    public void itemsWithoutAValueNeverMatch() {
+        for (ItemBitmap values : index.postings(CatalogIndex.Attribute.CATEGORY).values()) {
+            assertFalse(values.contains(4));
+        }
+        assertEquals(2, index.postings(CatalogIndex.Attribute.CATEGORY).size());
+    }
+}
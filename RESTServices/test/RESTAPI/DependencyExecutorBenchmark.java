@@ -0,0 +1,113 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dependency Executor Benchmark - Platform pool against virtual threads (JDK 21+)
+ *
+ * Runs a number of callers on virtual threads, as Tomcat does with
+ * useVirtualThreads, each making blocking calls through one DependencyExecutor
+ * in a loop, and reports throughput, p99 latency, rejections and the peak
+ * number of platform threads. The call sleeps for CALL_MILLIS, standing in for
+ * an OSRM or Cosmos DB round trip. Not a unit test - run it by hand:
+ *
+ * java -cp build/web/WEB-INF/classes:build/test/classes RESTAPI.DependencyExecutorBenchmark platform 1000 5000 10000
+ * java -cp build/web/WEB-INF/classes:build/test/classes RESTAPI.DependencyExecutorBenchmark virtual 1000 5000 10000
+ *
+ * Both modes are sized for the number of callers (threads and queue, or
+ * permits), so the comparison is about the threads, not about rejections
+ *
+ * @author N1237155
+ */
+public final class DependencyExecutorBenchmark {
+
+    private static final long CALL_MILLIS = 50;
+    private static final long RUN_MILLIS = 10_000;
+
+    private final DependencyExecutor executor;
+    private final long[] latencies = new long[4_000_000];
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    private DependencyExecutorBenchmark(DependencyExecutor executor) {
+        this.executor = executor;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("cyclenest.virtualThreads.enabled", "true");
+        ExecutorService callers = VirtualThreads.newThreadPerTaskExecutor("caller");
+        if (callers == null) {
+            throw new IllegalStateException("The benchmark needs JDK 21 or later");
+        }
+        boolean virtual = "virtual".equals(args[0]);
+
+        System.out.println("mode callers calls/s p99ms rejected peakPlatformThreads");
+        for (int i = 1; i < args.length; i++) {
+            int concurrency = Integer.parseInt(args[i]);
+            ExecutorService perTask = virtual ? VirtualThreads.newThreadPerTaskExecutor("bench") : null;
+            DependencyExecutor executor = new DependencyExecutor("bench", concurrency, concurrency,
+                    2 * concurrency, 60_000, perTask);
+            new DependencyExecutorBenchmark(executor).run(args[0], concurrency, callers);
+            executor.shutdown();
+            System.gc();
+            Thread.sleep(2_000); // let the finished threads go before the next run
+        }
+        callers.shutdown();
+    }
+
+    private void run(String mode, int concurrency, ExecutorService callers) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+        CountDownLatch finished = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            callers.execute(() -> {
+                while (System.nanoTime() < end) {
+                    call();
+                }
+                finished.countDown();
+            });
+        }
+        finished.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int count = Math.min(recorded.get(), latencies.length);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double p99 = count == 0 ? 0 : sorted[(int) (count * 0.99)] / 1e6;
+        System.out.printf("%s %d %.0f %.1f %d %d%n", mode, concurrency, recorded.get() / seconds, p99,
+                rejected.sum(), threads.getPeakThreadCount());
+    }
+
+    private void call() {
+        long started = System.nanoTime();
+        try {
+            executor.call(() -> {
+                Thread.sleep(CALL_MILLIS);
+                return null;
+            });
+        } catch (DependencyBusyException e) {
+            rejected.increment();
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        int index = recorded.getAndIncrement();
+        if (index < latencies.length) {
+            latencies[index] = System.nanoTime() - started;
+        }
+    }
+}
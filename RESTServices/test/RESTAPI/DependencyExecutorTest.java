@@ -0,0 +1,137 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * DependencyExecutor - results, rejection and cancelling calls past the timeout
+ *
+ * @author N1237155
+ */
+public class DependencyExecutorTest {
+
+    private final DependencyExecutor pool = new DependencyExecutor("test", 1, 1, 0, 200, null);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        pool.shutdown();
+    }
+
+    // Holds a pool thread until release, or until interrupted
+    private String block() {
+        try {
+            release.await();
+            return "released";
+        } catch (InterruptedException e) {
+            return "interrupted";
+        }
+    }
+
+    @Test
+    public void callReturnsTheResultOrRethrows() {
+        assertEquals("ok", pool.call(() -> "ok"));
+        try {
+            pool.call(() -> {
+                throw new IllegalStateException("failed");
+            });
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void fullPoolRejectsAtOnce() {
+        pool.submit(this::block);   // the only thread
+        pool.submit(this::block);   // the only queue slot
+        try {
+            pool.submit(this::block);
+            fail("Expected DependencyBusyException");
+        } catch (DependencyBusyException e) {
+            assertFalse(e instanceof DependencyTimeoutException);
+            assertEquals("test", e.getDependency());
+        }
+    }
+
+    @Test
+    public void slowCallIsCancelledAndInterrupted() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long started = System.nanoTime();
+        try {
+            pool.call(() -> {
+                try {
+                    Thread.sleep(60_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            });
+            fail("Expected DependencyTimeoutException");
+        } catch (DependencyTimeoutException e) {
+            assertEquals("test", e.getDependency());
+        }
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+
+        // The thread is free again
+        assertEquals("ok", pool.call(() -> "ok"));
+    }
+
+    @Test
+    public void submittedCallsExpireToo() throws Exception {
+        CompletableFuture<String> slow = pool.submit(this::block);
+        try {
+            slow.get(5, TimeUnit.SECONDS);
+            fail("Expected DependencyTimeoutException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof DependencyTimeoutException);
+        }
+        assertEquals("ok", pool.call(() -> "ok"));
+    }
+
+    @Test
+    public void threadPerTaskModeIsBoundedByItsPermits() throws Exception {
+        // Stands in for the virtual-thread executor, which needs JDK 21
+        ExecutorService perTask = Executors.newCachedThreadPool();
+        DependencyExecutor bulkhead = new DependencyExecutor("test", 1, 1, 3, 5_000, perTask);
+        CountDownLatch held = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < 3; i++) {
+                bulkhead.submit(() -> held.await(5, TimeUnit.SECONDS));
+            }
+            try {
+                bulkhead.submit(() -> "one too many");
+                fail("Expected DependencyBusyException");
+            } catch (DependencyBusyException e) {
+                assertEquals("test", e.getDependency());
+            }
+
+            held.countDown();
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    assertEquals("ok", bulkhead.call(() -> "ok"));
+                    break;
+                } catch (DependencyBusyException e) {
+                    assertTrue(attempt < 100); // permits come back as the calls finish
+                    Thread.sleep(10);
+                }
+            }
+        } finally {
+            held.countDown();
+            bulkhead.shutdown();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
+ */
+package RESTAPI;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding Benchmark - Size and serialization time of JSON, CBOR and Smile
+ *
+ * Encodes distance pages (PaginatedResponse of ItemDistanceResponse, as
+ * GET /items returns them) with the shared JsonMappers writers and reports the
+ * raw and gzipped size and the average time per page. Not a unit test - run it
+ * by hand with the jars of web/WEB-INF/lib on the classpath:
+ *
+ * java -cp build/web/WEB-INF/classes:build/test/classes:web/WEB-INF/lib/* RESTAPI.EncodingBenchmark
+ *
+ * @author N1237155
+ */
+public final class EncodingBenchmark {
+
+    private static final String[] CATEGORIES = {"Bike", "E-Bike", "Scooter", "Helmet", "Trailer"};
+    private static final String[] CITIES = {"London", "Manchester", "Leeds", "Bristol", "Nottingham"};
+    private static final String[] CONDITIONS = {"New", "Excellent", "Good", "Fair"};
+
+    private static final int WARMUP = 20_000;
+    private static final int ROUNDS = 50_000;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("items format bytes gzipBytes microsPerPage");
+        for (int size : new int[]{5, 100}) {
+            PaginatedResponse<ItemDistanceResponse> page = page(size);
+            measure(size, "json", JsonMappers.writerFor(PaginatedResponse.class, false), page);
+            measure(size, "cbor", JsonMappers.binaryWriterFor(JsonMappers.APPLICATION_CBOR, PaginatedResponse.class), page);
+            measure(size, "smile", JsonMappers.binaryWriterFor(JsonMappers.APPLICATION_SMILE, PaginatedResponse.class), page);
+        }
+    }
+
+    private static PaginatedResponse<ItemDistanceResponse> page(int size) {
+        List<ItemDistanceResponse> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(new ItemDistanceResponse(String.format("i%03d", i), "Item " + i + " for rent",
+                    CATEGORIES[i % CATEGORIES.length], 5.0 + i % 20, CITIES[i % CITIES.length],
+                    CONDITIONS[i % CONDITIONS.length], "Well kept, collection only, helmet included",
+                    Math.round(i * 137.0 % 4000) / 100.0, Math.round(i * 71.0 % 9000) / 100.0, "success"));
+        }
+        return new PaginatedResponse<>(items, 1, size, 250, (250 + size - 1) / size);
+    }
+
+    private static void measure(int size, String format, ObjectWriter writer, Object page) throws IOException {
+        if (writer == null) {
+            throw new IllegalStateException(format + " is not deployed - add its jar to the classpath");
+        }
+        byte[] encoded = writer.writeValueAsBytes(page);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(encoded);
+        }
+
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += writer.writeValueAsBytes(page).length;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            sink += writer.writeValueAsBytes(page).length;
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / ROUNDS;
+        System.out.printf("%d %s %d %d %.2f%s%n", size, format, encoded.length, gzipped.size(), micros,
+                sink == 0 ? " (empty)" : "");
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * IdempotencyCache - claims, replays and size eviction
+ *
+ * @author N1237155
+ */
+public class IdempotencyCacheTest {
+
+    @Test
+    public void secondSubmissionSeesTheFirst() {
+        IdempotencyCache cache = new IdempotencyCache(10);
+
+        assertNull(cache.begin("alice", "key-1", "i001"));
+        IdempotencyCache.Entry running = cache.begin("alice", "key-1", "i001");
+        assertNotNull(running);
+        assertFalse(running.isComplete());
+
+        cache.complete("alice", "key-1", 201, "created");
+        IdempotencyCache.Entry done = cache.begin("alice", "key-1", "i001");
+        assertTrue(done.isComplete());
+        assertEquals(201, done.getStatus());
+        assertEquals("created", done.getEntity());
+        assertEquals("i001", done.getTarget());
+    }
+
+    @Test
+    public void keysAreScopedPerUser() {
+        IdempotencyCache cache = new IdempotencyCache(10);
+
+        assertNull(cache.begin("alice", "key-1", "i001"));
+        assertNull(cache.begin("bob", "key-1", "i001"));
+    }
+
+    @Test
+    public void abandonedClaimsRunAgain() {
+        IdempotencyCache cache = new IdempotencyCache(10);
+
+        assertNull(cache.begin("alice", "key-1", "i001"));
+        cache.abandon("alice", "key-1");
+        assertNull(cache.begin("alice", "key-1", "i001"));
+
+        // a completed response is never abandoned
+        cache.complete("alice", "key-1", 201, "created");
+        cache.abandon("alice", "key-1");
+        assertNotNull(cache.begin("alice", "key-1", "i001"));
+    }
+
+    @Test
+    public void evictionKeepsClaimsInProgress() {
+        IdempotencyCache cache = new IdempotencyCache(3);
+        cache.begin("alice", "in-flight", "i001");   // oldest, still running
+        cache.begin("alice", "done-1", "i002");
+        cache.complete("alice", "done-1", 201, "created");
+        cache.begin("alice", "done-2", "i003");
+        cache.complete("alice", "done-2", 201, "created");
+
+        assertNull(cache.begin("alice", "new", "i004"));
+        assertEquals(3, cache.size());
+
+        // the retry of the running submission must still see its claim
+        IdempotencyCache.Entry retry = cache.begin("alice", "in-flight", "i001");
+        assertNotNull(retry);
+        assertFalse(retry.isComplete());
+        // the oldest completed key made room
+        assertNull(cache.begin("alice", "done-1", "i002"));
+    }
+
+    @Test
+    public void fullOfClaimsInProgressRefusesNewClaims() {
+        IdempotencyCache cache = new IdempotencyCache(2);
+        cache.begin("alice", "a", "i001");
+        cache.begin("alice", "b", "i002");
+
+        try {
+            cache.begin("alice", "c", "i003");
+            fail("Expected DependencyBusyException");
+        } catch (DependencyBusyException e) {
+            assertEquals("idempotency", e.getDependency());
+        }
+        assertNotNull(cache.begin("alice", "a", "i001"));
+        assertNotNull(cache.begin("alice", "b", "i002"));
+
+        cache.complete("alice", "a", 201, "created");
+        assertNull(cache.begin("alice", "c", "i003"));
+    }
+}
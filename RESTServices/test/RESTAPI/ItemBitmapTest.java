@@ -0,0 +1,89 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * ItemBitmap - set operations must give the same answer in the sparse
+ * (sorted positions) and dense (bit words) representations
+ *
+ * @author N1237155
+ */
+public class ItemBitmapTest {
+
+    private static final int UNIVERSE = 1000;
+
+    // Every position divisible by step - dense for small steps, sparse for large ones
+    private static ItemBitmap multiplesOf(int step) {
+        int[] positions = new int[UNIVERSE / step + 1];
+        int count = 0;
+        for (int p = 0; p < UNIVERSE; p += step) {
+            positions[count++] = p;
+        }
+        return ItemBitmap.of(positions, count, UNIVERSE);
+    }
+
+    @Test
+    public void containsAndCardinalityMatchTheInput() {
+        ItemBitmap dense = multiplesOf(2);
+        ItemBitmap sparse = multiplesOf(100);
+
+        assertEquals(500, dense.cardinality());
+        assertEquals(10, sparse.cardinality());
+        assertTrue(dense.contains(998));
+        assertFalse(dense.contains(999));
+        assertTrue(sparse.contains(900));
+        assertFalse(sparse.contains(901));
+        assertArrayEquals(new int[]{0, 100, 200, 300, 400, 500, 600, 700, 800, 900}, sparse.toArray());
+    }
+
+    @Test
+    public void andIsTheIntersectionInEveryRepresentation() {
+        ItemBitmap twos = multiplesOf(2);
+        ItemBitmap threes = multiplesOf(3);
+        ItemBitmap fifties = multiplesOf(50);
+
+        ItemBitmap sixes = twos.and(threes);
+        assertArrayEquals(multiplesOf(6).toArray(), sixes.toArray());
+        assertEquals(sixes.cardinality(), twos.andCardinality(threes));
+
+        // dense AND sparse, in both orders
+        assertArrayEquals(fifties.toArray(), twos.and(fifties).toArray());
+        assertArrayEquals(fifties.toArray(), fifties.and(twos).toArray());
+        assertEquals(7, threes.andCardinality(fifties)); // 0, 150, ..., 900
+    }
+
+    @Test
+    public void sliceSelectsByRank() {
+        ItemBitmap dense = multiplesOf(2);
+
+        assertArrayEquals(new int[]{200, 202, 204}, dense.slice(100, 3));
+        assertArrayEquals(new int[]{996, 998}, dense.slice(498, 10));
+        assertEquals(0, dense.slice(500, 5).length);
+        assertArrayEquals(new int[]{300, 400}, multiplesOf(100).slice(3, 2));
+    }
+
+    @Test
+    public void unsortedInputIsSorted() {
+        ItemBitmap set = ItemBitmap.ofUnsorted(new int[]{42, 7, 500}, 3, UNIVERSE);
+
+        assertArrayEquals(new int[]{7, 42, 500}, set.toArray());
+    }
+
+    @Test
+    public void allAndEmpty() {
+        ItemBitmap all = ItemBitmap.all(70);
+        ItemBitmap empty = ItemBitmap.empty(70);
+
+        assertEquals(70, all.cardinality());
+        assertTrue(all.contains(69));
+        assertFalse(all.contains(70));
+        assertTrue(empty.isEmpty());
+        assertTrue(all.and(empty).isEmpty());
+        assertEquals(70, all.toArray().length);
+    }
+}
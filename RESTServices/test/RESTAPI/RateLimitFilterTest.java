@@ -0,0 +1,49 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * RateLimitFilter - user_id narrows an address's limit but cannot escape it
+ *
+ * @author N1237155
+ */
+public class RateLimitFilterTest {
+
+    private final TokenBucketLimiter perClient = new TokenBucketLimiter(1, 2);
+    private final TokenBucketLimiter perAddress = new TokenBucketLimiter(1, 5);
+
+    @Test
+    public void rotatingUserIdsIsHeldToTheAddressLimit() {
+        int allowed = 0;
+        for (int i = 0; i < 50; i++) {
+            if (RateLimitFilter.tryAcquire(perClient, perAddress, "203.0.113.7", "random-" + i) == 0) {
+                allowed++;
+            }
+        }
+        assertEquals(5, allowed);
+    }
+
+    @Test
+    public void usersBehindOneAddressHaveTheirOwnBuckets() {
+        assertEquals(0, RateLimitFilter.tryAcquire(perClient, perAddress, "203.0.113.7", "alice"));
+        assertEquals(0, RateLimitFilter.tryAcquire(perClient, perAddress, "203.0.113.7", "alice"));
+        assertTrue(RateLimitFilter.tryAcquire(perClient, perAddress, "203.0.113.7", "alice") > 0);
+
+        // alice being limited did not use up the address's tokens
+        assertEquals(0, RateLimitFilter.tryAcquire(perClient, perAddress, "203.0.113.7", "bob"));
+        assertEquals(0, RateLimitFilter.tryAcquire(perClient, perAddress, "203.0.113.7", "bob"));
+    }
+
+    @Test
+    public void requestsWithoutUserIdUseTheAddress() {
+        assertEquals(0, RateLimitFilter.tryAcquire(perClient, perAddress, "198.51.100.1", null));
+        assertEquals(0, RateLimitFilter.tryAcquire(perClient, perAddress, "198.51.100.1", ""));
+        assertTrue(RateLimitFilter.tryAcquire(perClient, perAddress, "198.51.100.1", null) > 0);
+        assertEquals(0, RateLimitFilter.tryAcquire(perClient, perAddress, "198.51.100.2", null));
+    }
+}
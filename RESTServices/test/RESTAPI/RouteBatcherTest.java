@@ -0,0 +1,34 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * RouteBatcher - lookups after shutdown fail at once instead of joining a batch that is never sent
+ *
+ * @author N1237155
+ */
+public class RouteBatcherTest {
+
+    @Test
+    public void lookupsAfterShutdownFailFast() {
+        RouteBatcher batcher = RouteBatcher.getInstance();
+        batcher.shutdown();
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            long started = System.nanoTime();
+            try {
+                batcher.route(-0.1276, 51.5074, -0.1426, 51.5014);
+                fail("Expected OSRMException");
+            } catch (OSRMException e) {
+                assertEquals(503, e.getHttpStatus());
+                assertEquals("ROUTING_UNAVAILABLE", e.getErrorCode());
+            }
+            assertTrue(System.nanoTime() - started < 1_000_000_000L);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * RouteCache - LRU bounds and prefetch accounting
+ *
+ * @author N1237155
+ */
+public class RouteCacheTest {
+
+    private static final int MAX_ENTRIES = Integer.getInteger("cyclenest.routeCache.maxEntries", 10000);
+
+    @Test
+    public void keyUsesOsrmCoordinateFormat() {
+        assertEquals("-0.1276,51.5074;-1.1581,52.9548", RouteCache.key(-0.1276, 51.5074, -1.1581, 52.9548));
+        assertEquals("0.00000010,1.0;2.0,3.0", RouteCache.key(1e-7, 1, 2, 3)); // never scientific notation
+    }
+
+    @Test
+    public void storedRoutesAreReturned() {
+        RouteCache cache = new RouteCache();
+        RouteResponse route = new RouteResponse(12.5, 20.0, "success");
+        cache.put("a", route);
+
+        assertSame(route, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        RouteCache cache = new RouteCache();
+        for (int i = 0; i < MAX_ENTRIES; i++) {
+            cache.put("k" + i, new RouteResponse(i, i, "success"));
+        }
+        cache.get("k0"); // k1 is now the least recently used
+        cache.put("new", new RouteResponse(0, 0, "success"));
+
+        assertEquals(MAX_ENTRIES, cache.size());
+        assertNotNull(cache.get("k0"));
+        assertNull(cache.get("k1"));
+        assertNotNull(cache.get("new"));
+    }
+
+    @Test
+    public void prefetchedRouteCountsOneHitOrOneWaste() {
+        RouteCache cache = new RouteCache();
+        long hits = RouteCache.PREFETCH_HITS.sum();
+        long wasted = RouteCache.PREFETCH_WASTED.sum();
+
+        cache.putPrefetched("used", new RouteResponse(1, 1, "success"));
+        assertTrue(cache.contains("used")); // contains() is not a hit
+        assertEquals(hits, RouteCache.PREFETCH_HITS.sum());
+        cache.get("used");
+        cache.get("used");
+        assertEquals(hits + 1, RouteCache.PREFETCH_HITS.sum());
+
+        cache.putPrefetched("unused", new RouteResponse(1, 1, "success"));
+        cache.put("unused", new RouteResponse(2, 2, "success"));
+        assertEquals(wasted + 1, RouteCache.PREFETCH_WASTED.sum());
+    }
+}
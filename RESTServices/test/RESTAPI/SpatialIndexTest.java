@@ -0,0 +1,104 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * SpatialIndex - k-nearest and radius searches agree with a brute-force scan
+ *
+ * @author N1237155
+ */
+public class SpatialIndexTest {
+
+    private static items at(String id, double lat, double lon) {
+        return new items(id, "owner", "Item " + id, "Bike", new Location("City", lon, lat), 10.0, true, "Good", "");
+    }
+
+    @Test
+    public void nearestIsOrderedByDistance() {
+        CatalogColumns columns = new CatalogColumns(Arrays.asList(
+                at("nottingham", 52.9548, -1.1581),
+                at("london", 51.5074, -0.1278),
+                at("leeds", 53.8008, -1.5491),
+                at("derby", 52.9225, -1.4746)));
+        SpatialIndex index = new SpatialIndex(columns);
+
+        // From Nottingham: itself, Derby (~21 km), Leeds (~100 km), London (~175 km)
+        assertArrayEquals(new int[]{0, 3, 2, 1}, index.nearest(52.9548, -1.1581, 10, Double.POSITIVE_INFINITY, null));
+        assertArrayEquals(new int[]{0, 3}, index.nearest(52.9548, -1.1581, 2, Double.POSITIVE_INFINITY, null));
+        assertArrayEquals(new int[]{0, 3}, index.nearest(52.9548, -1.1581, 10, 50, null));
+    }
+
+    @Test
+    public void filterRestrictsTheResult() {
+        CatalogColumns columns = new CatalogColumns(Arrays.asList(
+                at("nottingham", 52.9548, -1.1581),
+                at("london", 51.5074, -0.1278),
+                at("derby", 52.9225, -1.4746)));
+        SpatialIndex index = new SpatialIndex(columns);
+        ItemBitmap notDerby = ItemBitmap.of(new int[]{0, 1}, 2, 3);
+
+        assertArrayEquals(new int[]{0, 1}, index.nearest(52.92, -1.47, 5, Double.POSITIVE_INFINITY, notDerby));
+    }
+
+    @Test
+    public void itemsWithoutALocationAreNeverReturned() {
+        List<items> catalog = new ArrayList<>();
+        catalog.add(new items("nowhere", "owner", "Item", "Bike", null, 10.0, true, "Good", ""));
+        catalog.add(at("london", 51.5074, -0.1278));
+        SpatialIndex index = new SpatialIndex(new CatalogColumns(catalog));
+
+        // (0, 0) is where an unlocated item would sit if it were indexed
+        assertArrayEquals(new int[]{1}, index.nearest(0.0, 0.0, 5, Double.POSITIVE_INFINITY, null));
+    }
+
+    @Test
+    public void matchesBruteForce() {
+        Random random = new Random(42);
+        List<items> catalog = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            catalog.add(at("i" + i, 50 + random.nextDouble() * 5, -4 + random.nextDouble() * 5));
+        }
+        CatalogColumns columns = new CatalogColumns(catalog);
+        SpatialIndex index = new SpatialIndex(columns);
+
+        for (int query = 0; query < 20; query++) {
+            double lat = 50 + random.nextDouble() * 5;
+            double lon = -4 + random.nextDouble() * 5;
+            int[] all = new int[catalog.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            double[] distances = index.distancesKm(all, all.length, lat, lon);
+            Integer[] expected = new Integer[all.length];
+            for (int i = 0; i < all.length; i++) {
+                expected[i] = i;
+            }
+            Arrays.sort(expected, (a, b) -> a.equals(b) ? 0
+                    : distances[a] != distances[b] ? Double.compare(distances[a], distances[b]) : a - b);
+
+            int[] nearest = index.nearest(lat, lon, 10, Double.POSITIVE_INFINITY, null);
+            assertEquals(10, nearest.length);
+            for (int k = 0; k < 10; k++) {
+                assertEquals(expected[k].intValue(), nearest[k]);
+            }
+
+            double radius = 30;
+            int inside = 0;
+            for (double distance : distances) {
+                if (distance <= radius) {
+                    inside++;
+                }
+            }
+            assertEquals(inside, index.nearest(lat, lon, all.length, radius, null).length);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * TextIndex - tokenizing, search, suggestions and copy-on-write updates
+ *
+ * @author N1237155
+ */
+public class TextIndexTest {
+
+    private static items item(String id, String name, String description) {
+        return new items(id, "owner", name, "Bike", new Location("London", -0.1276, 51.5074), 10.0, true, "Good", description);
+    }
+
+    private static int[] search(TextIndex index, CatalogColumns columns, String query) {
+        int[] positions = index.search(query, index.positionsOf(columns)).toBitmap(columns.size()).toArray();
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    @Test
+    public void tokenizeFoldsCaseAndAccents() {
+        assertEquals(Arrays.asList("cafe", "creme", "e", "bike", "2"), TextIndex.tokenize("Café CRÈME-e bike #2"));
+        assertTrue(TextIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void everyQueryTermMustMatch() {
+        CatalogColumns columns = new CatalogColumns(Arrays.asList(
+                item("a", "Mountain bike", "Front suspension, 21 gears"),
+                item("b", "Road bike", "Carbon frame"),
+                item("c", "Electric scooter", "Folding, 25 km range")));
+        TextIndex index = new TextIndex().update(null, columns);
+
+        assertArrayEquals(new int[]{0, 1}, search(index, columns, "bike"));
+        assertArrayEquals(new int[]{1}, search(index, columns, "BIKE carbon"));
+        assertArrayEquals(new int[]{2}, search(index, columns, "folding"));
+        assertEquals(0, search(index, columns, "bike folding").length);
+        assertEquals(0, search(index, columns, "tandem").length);
+    }
+
+    @Test
+    public void nameMatchesRankFirst() {
+        CatalogColumns columns = new CatalogColumns(Arrays.asList(
+                item("a", "Helmet", "Fits any bike"),
+                item("b", "Bike", "Hybrid")));
+        TextIndex index = new TextIndex().update(null, columns);
+        TextIndex.Result result = index.search("bike", index.positionsOf(columns));
+
+        assertArrayEquals(new int[]{1, 0}, result.top(null, 0, 2));
+    }
+
+    @Test
+    public void suggestCompletesTheLastWord() {
+        CatalogColumns columns = new CatalogColumns(Arrays.asList(
+                item("a", "Mountain bike", ""),
+                item("b", "Mountain boots", ""),
+                item("c", "Road bike", "")));
+        TextIndex index = new TextIndex().update(null, columns);
+
+        List<String> completions = new ArrayList<>();
+        for (Suggestion suggestion : index.suggest("b", 5)) {
+            completions.add(suggestion.getText());
+        }
+        assertEquals("bike", completions.get(0)); // two items, before "boots" with one
+        assertTrue(completions.contains("boots"));
+        assertTrue(index.suggest("xyz", 5).isEmpty());
+    }
+
+    @Test
+    public void updatesLeaveEarlierVersionsUnchanged() {
+        CatalogColumns first = new CatalogColumns(Arrays.asList(
+                item("a", "Mountain bike", ""),
+                item("b", "Road bike", "")));
+        TextIndex v1 = new TextIndex().update(null, first);
+
+        CatalogColumns second = new CatalogColumns(Arrays.asList(
+                item("a", "Mountain bike", ""),
+                item("c", "Cargo bike", "Long tail")));
+        TextIndex v2 = v1.update(first, second);
+
+        // The new version sees the change
+        assertArrayEquals(new int[]{0, 1}, search(v2, second, "bike"));
+        assertEquals(0, search(v2, second, "road").length);
+        assertArrayEquals(new int[]{1}, search(v2, second, "cargo"));
+
+        // The old version, still used by sessions on the old snapshot, does not
+        assertArrayEquals(new int[]{0, 1}, search(v1, first, "bike"));
+        assertArrayEquals(new int[]{1}, search(v1, first, "road"));
+        assertEquals(0, search(v1, first, "cargo").length);
+        for (Suggestion suggestion : v1.suggest("c", 5)) {
+            assertNotEquals("cargo", suggestion.getText());
+        }
+    }
+}
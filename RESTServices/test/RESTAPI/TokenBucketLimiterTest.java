@@ -0,0 +1,55 @@
+/*
+ * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
+ * Click nbfs://nbhost/SystemFileSystem/Templates/UnitTests/JUnit4TestClass.java to edit this template
+ */
+package RESTAPI;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * TokenBucketLimiter - bursts, refill and per-client isolation
+ *
+ * @author N1237155
+ */
+public class TokenBucketLimiterTest {
+
+    @Test
+    public void burstIsAllowedThenLimited() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 3);
+
+        assertEquals(0, limiter.tryAcquire("client"));
+        assertEquals(0, limiter.tryAcquire("client"));
+        assertEquals(0, limiter.tryAcquire("client"));
+        long wait = limiter.tryAcquire("client");
+        assertTrue(wait > 0);
+        assertTrue(wait <= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void clientsHaveTheirOwnBuckets() {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(1, 1);
+
+        assertEquals(0, limiter.tryAcquire("first"));
+        assertTrue(limiter.tryAcquire("first") > 0);
+        assertEquals(0, limiter.tryAcquire("second"));
+        assertEquals(2, limiter.size());
+    }
+
+    @Test
+    public void tokensRefillOverTime() throws InterruptedException {
+        TokenBucketLimiter limiter = new TokenBucketLimiter(100, 1); // a token every 10 ms
+
+        assertEquals(0, limiter.tryAcquire("client"));
+        long wait = limiter.tryAcquire("client");
+        assertTrue(wait > 0);
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(wait) + 5);
+        assertEquals(0, limiter.tryAcquire("client"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnEmptyBucket() {
+        new TokenBucketLimiter(1, 0.5);
+    }
+}